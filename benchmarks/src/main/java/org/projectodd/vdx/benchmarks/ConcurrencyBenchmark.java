@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.projectodd.vdx.core.ErrorPrinter;
+import org.projectodd.vdx.core.Printer;
+import org.projectodd.vdx.core.ValidationError;
+
+/**
+ * Whole reports for a generated corpus, printed by however many threads JMH is given, to compare
+ * throughput as threads are added: run with -t 1, -t 2, -t 4 and so on. Threads take the documents in
+ * turn, so they mostly share only the global state. {@link ConcurrencyStress} also checks the output.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrencyBenchmark {
+
+    @Setup
+    public void setup() throws IOException {
+        this.dir = Files.createTempDirectory("vdx-concurrency-");
+        this.corpus = new CorpusGenerator(0)
+                .namespaces(8)
+                .entries(1000)
+                .generate(this.dir);
+    }
+
+    @TearDown
+    public void tearDown() {
+        final File[] files = this.dir.toFile().listFiles();
+        if (files != null) {
+            for (File each : files) {
+                each.delete();
+            }
+        }
+        this.dir.toFile().delete();
+    }
+
+    @Benchmark
+    public ErrorPrinter report() throws IOException {
+        final List<CorpusGenerator.Document> documents = this.corpus.documents();
+        final CorpusGenerator.Document document =
+                documents.get(Math.floorMod(this.next.getAndIncrement(), documents.size()));
+        final ErrorPrinter printer = new ErrorPrinter(document.url(), this.corpus.schemas())
+                .printer(SILENT);
+        for (ValidationError each : document.errors().values()) {
+            printer.print(each);
+        }
+
+        return printer;
+    }
+
+    private static final Printer SILENT = new Printer() {
+        @Override
+        public void printlnErr(final String msg) {}
+
+        @Override
+        public void println(final String msg) {}
+    };
+
+    private final AtomicInteger next = new AtomicInteger();
+    private Path dir;
+    private CorpusGenerator.Corpus corpus;
+}
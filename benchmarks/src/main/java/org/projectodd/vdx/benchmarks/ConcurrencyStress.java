@@ -0,0 +1,298 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.projectodd.vdx.core.ErrorPrinter;
+import org.projectodd.vdx.core.ErrorType;
+import org.projectodd.vdx.core.Printer;
+import org.projectodd.vdx.core.ValidationError;
+
+/**
+ * Renders the reports for every error in a generated corpus from several threads at once, checking each
+ * against the same report rendered on a single thread, and measuring reports per second. Each document's
+ * reports are either rendered by a printer of its own per task, sharing only the global state (symbols,
+ * the schema node pool, messages and stringifiers), or by one printer per document that every thread
+ * uses at once, which races the lazy loading inside it as well.
+ *
+ * Usage: ConcurrencyStress dir [max-threads [rounds [entries [namespaces]]]]
+ */
+public class ConcurrencyStress {
+    public ConcurrencyStress(final CorpusGenerator.Corpus corpus) throws IOException {
+        this.corpus = corpus;
+        this.expected = new HashMap<>();
+        for (CorpusGenerator.Document each : corpus.documents()) {
+            this.expected.put(each, render(printer(each), each));
+        }
+    }
+
+    /**
+     * @param sharedPrinters if true, every thread prints through the same printer for a document
+     */
+    public ConcurrencyStress sharedPrinters(final boolean sharedPrinters) {
+        this.sharedPrinters = sharedPrinters;
+
+        return this;
+    }
+
+    /**
+     * @param rounds how many times each document's reports are rendered per run
+     */
+    public ConcurrencyStress rounds(final int rounds) {
+        this.rounds = rounds;
+
+        return this;
+    }
+
+    public Result run(final int threads) throws IOException, InterruptedException {
+        final List<Callable<List<String>>> tasks = this.sharedPrinters ? sharedTasks() : ownTasks();
+        Collections.shuffle(tasks, new Random(threads));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch go = new CountDownLatch(1);
+        try {
+            // start every thread before timing, so they all begin together
+            for (int i = 0; i < threads; i++) {
+                executor.submit(() -> {
+                    ready.countDown();
+                    go.await();
+
+                    return null;
+                });
+            }
+            ready.await();
+            final long start = System.nanoTime();
+            go.countDown();
+            final List<Future<List<String>>> futures = executor.invokeAll(tasks);
+            final long nanos = System.nanoTime() - start;
+
+            final List<String> failures = new ArrayList<>();
+            for (Future<List<String>> each : futures) {
+                try {
+                    failures.addAll(each.get());
+                } catch (ExecutionException e) {
+                    failures.add(String.valueOf(e.getCause()));
+                }
+            }
+
+            return new Result(threads, reports(), nanos, failures);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: ConcurrencyStress dir [max-threads [rounds [entries [namespaces]]]]");
+            System.exit(1);
+        }
+
+        final int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) :
+                Runtime.getRuntime().availableProcessors();
+        final int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        final CorpusGenerator generator = new CorpusGenerator(0)
+                .entries(args.length > 3 ? Integer.parseInt(args[3]) : 1000)
+                .namespaces(args.length > 4 ? Integer.parseInt(args[4]) : 8);
+        final ConcurrencyStress stress = new ConcurrencyStress(generator.generate(Paths.get(args[0]))).rounds(rounds);
+
+        boolean failed = false;
+        for (boolean shared : new boolean[] {false, true}) {
+            stress.sharedPrinters(shared);
+            System.out.println(shared ? "shared printers:" : "a printer per task:");
+            System.out.println(String.format("%8s %10s %14s %10s %10s", "threads", "reports", "reports/s",
+                                             "speedup", "failures"));
+            // one run to warm up, that isn't reported
+            stress.run(maxThreads);
+            Result single = null;
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                final Result result = stress.run(threads);
+                single = single == null ? result : single;
+                System.out.println(String.format("%8d %10d %14.1f %10.2f %10d", threads, result.reports(),
+                                                 result.reportsPerSecond(),
+                                                 result.reportsPerSecond() / single.reportsPerSecond(),
+                                                 result.failures().size()));
+                for (String each : result.failures().subList(0, Math.min(3, result.failures().size()))) {
+                    System.out.println("  " + each);
+                }
+                failed |= !result.failures().isEmpty();
+            }
+            System.out.println();
+        }
+
+        if (failed) {
+            System.exit(2);
+        }
+    }
+
+    private long reports() {
+        long reports = 0;
+        for (CorpusGenerator.Document each : this.corpus.documents()) {
+            reports += each.errors().size();
+        }
+
+        return reports * this.rounds;
+    }
+
+    private List<Callable<List<String>>> ownTasks() {
+        final List<Callable<List<String>>> tasks = new ArrayList<>();
+        for (int i = 0; i < this.rounds; i++) {
+            for (CorpusGenerator.Document each : this.corpus.documents()) {
+                tasks.add(() -> {
+                    final List<String> failures = new ArrayList<>();
+                    compare(each, render(printer(each), each), failures);
+
+                    return failures;
+                });
+            }
+        }
+
+        return tasks;
+    }
+
+    private List<Callable<List<String>>> sharedTasks() throws IOException {
+        final List<Callable<List<String>>> tasks = new ArrayList<>();
+        for (CorpusGenerator.Document each : this.corpus.documents()) {
+            // fresh for each run, so the first reports race to load the document and schemas
+            final ErrorPrinter printer = printer(each);
+            for (int i = 0; i < this.rounds; i++) {
+                for (Map.Entry<ErrorType, ValidationError> error : each.errors().entrySet()) {
+                    tasks.add(() -> {
+                        final List<String> failures = new ArrayList<>();
+                        final String report = print(printer, error.getValue());
+                        if (!report.equals(this.expected.get(each).get(error.getKey()))) {
+                            failures.add(each + " " + error.getKey() + " differs");
+                        }
+
+                        return failures;
+                    });
+                }
+            }
+        }
+
+        return tasks;
+    }
+
+    private void compare(final CorpusGenerator.Document document, final Map<ErrorType, String> reports,
+                         final List<String> failures) {
+        for (Map.Entry<ErrorType, String> each : this.expected.get(document).entrySet()) {
+            if (!each.getValue().equals(reports.get(each.getKey()))) {
+                failures.add(document + " " + each.getKey() + " differs");
+            }
+        }
+    }
+
+    private ErrorPrinter printer(final CorpusGenerator.Document document) throws IOException {
+        return new ErrorPrinter(document.url(), this.corpus.schemas())
+                .printer(OUTPUT);
+    }
+
+    private static Map<ErrorType, String> render(final ErrorPrinter printer, final CorpusGenerator.Document document) {
+        final Map<ErrorType, String> reports = new EnumMap<>(ErrorType.class);
+        for (Map.Entry<ErrorType, ValidationError> each : document.errors().entrySet()) {
+            reports.put(each.getKey(), print(printer, each.getValue()));
+        }
+
+        return reports;
+    }
+
+    private static String print(final ErrorPrinter printer, final ValidationError error) {
+        final StringBuilder out = CAPTURED.get();
+        out.setLength(0);
+        printer.print(error);
+
+        return out.toString();
+    }
+
+    public static class Result {
+        Result(final int threads, final long reports, final long nanos, final List<String> failures) {
+            this.threads = threads;
+            this.reports = reports;
+            this.nanos = nanos;
+            this.failures = Collections.unmodifiableList(failures);
+        }
+
+        public int threads() {
+            return this.threads;
+        }
+
+        public long reports() {
+            return this.reports;
+        }
+
+        public long nanos() {
+            return this.nanos;
+        }
+
+        public double reportsPerSecond() {
+            return this.reports * 1e9 / this.nanos;
+        }
+
+        /**
+         * @return a description of each report that didn't match the single threaded one, or failed
+         */
+        public List<String> failures() {
+            return this.failures;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d threads: %d reports, %.1f/s, %d failures", this.threads, this.reports,
+                                 reportsPerSecond(), this.failures.size());
+        }
+
+        private final int threads;
+        private final long reports;
+        private final long nanos;
+        private final List<String> failures;
+    }
+
+    // each thread captures what it prints, so a printer can be shared
+    private static final ThreadLocal<StringBuilder> CAPTURED = ThreadLocal.withInitial(StringBuilder::new);
+
+    private static final Printer OUTPUT = new Printer() {
+        @Override
+        public void printlnErr(final String msg) {
+            CAPTURED.get().append(msg).append('\n');
+        }
+
+        @Override
+        public void println(final String msg) {
+            CAPTURED.get().append(msg).append('\n');
+        }
+    };
+
+    private final CorpusGenerator.Corpus corpus;
+    private final Map<CorpusGenerator.Document, Map<ErrorType, String>> expected;
+    private boolean sharedPrinters = false;
+    private int rounds = 10;
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectodd.vdx.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.projectodd.vdx.core.ErrorHandler;
+import org.projectodd.vdx.core.ValidationContext;
+import org.projectodd.vdx.core.ValidationError;
+
+/**
+ * A whole report - reading the document and schemas, then handling an error of every type - against a
+ * generated corpus. The larger size is a document of ~40 MB.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CorpusBenchmark {
+    @Param({"100", "10000"})
+    public int entries;
+
+    @Param({"1", "8"})
+    public int namespaces;
+
+    @Setup
+    public void setup() throws IOException {
+        this.dir = Files.createTempDirectory("vdx-corpus-");
+        this.corpus = new CorpusGenerator(0)
+                .namespaces(this.namespaces)
+                .entries(this.entries)
+                .generate(this.dir);
+    }
+
+    @TearDown
+    public void tearDown() {
+        final File[] files = this.dir.toFile().listFiles();
+        if (files != null) {
+            for (File each : files) {
+                each.delete();
+            }
+        }
+        this.dir.toFile().delete();
+    }
+
+    @Benchmark
+    public List<ErrorHandler.HandledResult> report() throws IOException {
+        final CorpusGenerator.Document document = this.corpus.documents().get(0);
+        final ValidationContext context = new ValidationContext(document.url(), this.corpus.schemas());
+        final List<ErrorHandler.HandledResult> results = new ArrayList<>();
+        for (ValidationError each : document.errors().values()) {
+            results.add(context.handle(each));
+        }
+
+        return results;
+    }
+
+    private Path dir;
+    private CorpusGenerator.Corpus corpus;
+}
@@ -0,0 +1,550 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectodd.vdx.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.projectodd.vdx.core.ErrorType;
+import org.projectodd.vdx.core.ValidationError;
+
+/**
+ * Writes a synthetic corpus - a schema per namespace, and a document for each schema with one error of
+ * every {@link ErrorType} injected - that scales from a few KB to hundreds of MB. The same seed and
+ * settings always produce byte-for-byte the same files.
+ *
+ * Each schema has {@link #types(int)} named complex types, extending one another in chains of
+ * {@link #inheritanceDepth(int)} extensions, and each type declares {@link #attributes(int)} attributes
+ * and {@link #children(int)} child elements of its own. A child element reuses an earlier type with
+ * probability {@link #typeReuse(double)}, so the walked schema shares content, and otherwise gets an
+ * inline type of its own. A document is {@link #entries(int)} instances of the schema's last type.
+ *
+ * A validating parser would reject the document with the first error, so the errors are returned with
+ * the corpus instead of being found by one. Duplicating an attribute would make the document malformed,
+ * so the {@link ErrorType#DUPLICATE_ATTRIBUTE} error points at an attribute that is only there once.
+ */
+public class CorpusGenerator {
+
+    public CorpusGenerator(final long seed) {
+        this.seed = seed;
+    }
+
+    public CorpusGenerator namespaces(final int namespaces) {
+        this.namespaces = namespaces;
+
+        return this;
+    }
+
+    public CorpusGenerator types(final int types) {
+        this.types = types;
+
+        return this;
+    }
+
+    public CorpusGenerator children(final int children) {
+        this.children = children;
+
+        return this;
+    }
+
+    public CorpusGenerator attributes(final int attributes) {
+        this.attributes = attributes;
+
+        return this;
+    }
+
+    public CorpusGenerator inheritanceDepth(final int inheritanceDepth) {
+        this.inheritanceDepth = inheritanceDepth;
+
+        return this;
+    }
+
+    public CorpusGenerator typeReuse(final double typeReuse) {
+        this.typeReuse = typeReuse;
+
+        return this;
+    }
+
+    /**
+     * @param entries the number of top level elements in each document; there has to be at least one
+     *                for each error type
+     */
+    public CorpusGenerator entries(final int entries) {
+        this.entries = entries;
+
+        return this;
+    }
+
+    public Corpus generate(final Path dir) throws IOException {
+        if (this.namespaces < 1 || this.types < 1 || this.children < 1) {
+            throw new IllegalArgumentException("a corpus needs at least one namespace, type and child");
+        }
+        if (this.entries < ErrorType.values().length) {
+            throw new IllegalArgumentException("a document needs at least " + ErrorType.values().length +
+                                                       " entries, one for each error type");
+        }
+
+        Files.createDirectories(dir);
+        final Random random = new Random(this.seed);
+        final List<URL> schemas = new ArrayList<>();
+        final List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < this.namespaces; i++) {
+            final String namespace = "urn:vdx:generated:" + i + ":1.0";
+            final List<Type> types = types(random);
+
+            final Path schema = dir.resolve("schema-" + i + ".xsd");
+            writeSchema(schema, namespace, types);
+            schemas.add(schema.toUri().toURL());
+
+            final Path document = dir.resolve("document-" + i + ".xml");
+            final DocumentWriter writer = new DocumentWriter(namespace, random);
+            try (final BufferedWriter out = Files.newBufferedWriter(document, StandardCharsets.UTF_8)) {
+                writer.write(out, types.get(types.size() - 1), this.entries);
+            }
+            documents.add(new Document(document.toUri().toURL(), namespace, writer.errors, writer.elements,
+                                       Files.size(document)));
+        }
+
+        return new Corpus(schemas, documents);
+    }
+
+    /**
+     * Usage: CorpusGenerator dir [entries [namespaces [seed]]]
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: CorpusGenerator dir [entries [namespaces [seed]]]");
+            System.exit(1);
+        }
+
+        final CorpusGenerator generator = new CorpusGenerator(args.length > 3 ? Long.parseLong(args[3]) : 0);
+        if (args.length > 1) {
+            generator.entries(Integer.parseInt(args[1]));
+        }
+        if (args.length > 2) {
+            generator.namespaces(Integer.parseInt(args[2]));
+        }
+
+        final Corpus corpus = generator.generate(Paths.get(args[0]));
+        for (Document each : corpus.documents()) {
+            System.out.println(each);
+        }
+    }
+
+    private List<Type> types(final Random random) {
+        final List<Type> types = new ArrayList<>(this.types);
+        for (int j = 0; j < this.types; j++) {
+            final Type base = j % (this.inheritanceDepth + 1) == 0 ? null : types.get(j - 1);
+            final Type type = new Type("type-" + j, base);
+            if (base == null) {
+                type.ownAttributes.addAll(LEAF_ATTRIBUTES);
+            }
+            for (int a = 0; a < this.attributes; a++) {
+                type.ownAttributes.add("attr-" + j + "-" + a);
+            }
+            for (int c = 0; c < this.children; c++) {
+                Type childType = null;
+                if (j > 0 && random.nextDouble() < this.typeReuse) {
+                    final List<Type> candidates = new ArrayList<>();
+                    for (Type each : types) {
+                        if (each.size <= MAX_REUSED_SIZE) {
+                            candidates.add(each);
+                        }
+                    }
+                    if (!candidates.isEmpty()) {
+                        childType = candidates.get(random.nextInt(candidates.size()));
+                    }
+                }
+                type.ownChildren.add(new Child("item-" + j + "-" + c, childType));
+            }
+
+            type.size = 1;
+            for (Child each : type.children()) {
+                type.size += each.type == null ? 1 : each.type.size;
+            }
+            types.add(type);
+        }
+
+        return types;
+    }
+
+    private static void writeSchema(final Path file, final String namespace, final List<Type> types)
+            throws IOException {
+        try (final BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write("<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" xmlns=\"" + namespace + "\"\n");
+            out.write("           targetNamespace=\"" + namespace + "\"\n");
+            out.write("           elementFormDefault=\"qualified\" attributeFormDefault=\"unqualified\">\n\n");
+            out.write("    <xs:element name=\"config\">\n");
+            out.write("        <xs:complexType>\n");
+            out.write("            <xs:sequence>\n");
+            out.write("                <xs:element name=\"entry\" type=\"" + types.get(types.size() - 1).name +
+                              "\" maxOccurs=\"unbounded\"/>\n");
+            out.write("            </xs:sequence>\n");
+            out.write("        </xs:complexType>\n");
+            out.write("    </xs:element>\n");
+
+            for (Type type : types) {
+                out.write("\n    <xs:complexType name=\"" + type.name + "\">\n");
+                String indent = "        ";
+                if (type.base != null) {
+                    out.write("        <xs:complexContent>\n");
+                    out.write("            <xs:extension base=\"" + type.base.name + "\">\n");
+                    indent = "                ";
+                }
+                out.write(indent + "<xs:sequence>\n");
+                for (Child child : type.ownChildren) {
+                    if (child.type != null) {
+                        out.write(indent + "    <xs:element name=\"" + child.name + "\" type=\"" + child.type.name +
+                                          "\"/>\n");
+                    } else {
+                        out.write(indent + "    <xs:element name=\"" + child.name + "\">\n");
+                        out.write(indent + "        <xs:complexType>\n");
+                        writeAttributes(out, indent + "            ", LEAF_ATTRIBUTES);
+                        out.write(indent + "        </xs:complexType>\n");
+                        out.write(indent + "    </xs:element>\n");
+                    }
+                }
+                out.write(indent + "</xs:sequence>\n");
+                writeAttributes(out, indent, type.ownAttributes);
+                if (type.base != null) {
+                    out.write("            </xs:extension>\n");
+                    out.write("        </xs:complexContent>\n");
+                }
+                out.write("    </xs:complexType>\n");
+            }
+            out.write("</xs:schema>\n");
+        }
+    }
+
+    private static void writeAttributes(final BufferedWriter out, final String indent, final List<String> attributes)
+            throws IOException {
+        for (String each : attributes) {
+            out.write(indent + "<xs:attribute name=\"" + each + "\" type=\"" +
+                              ("count".equals(each) ? "xs:int" : "xs:string") + "\"" +
+                              ("name".equals(each) ? " use=\"required\"" : "") + "/>\n");
+        }
+    }
+
+    public static class Corpus {
+        Corpus(final List<URL> schemas, final List<Document> documents) {
+            this.schemas = Collections.unmodifiableList(schemas);
+            this.documents = Collections.unmodifiableList(documents);
+        }
+
+        public List<URL> schemas() {
+            return this.schemas;
+        }
+
+        public List<Document> documents() {
+            return this.documents;
+        }
+
+        private final List<URL> schemas;
+        private final List<Document> documents;
+    }
+
+    public static class Document {
+        Document(final URL url, final String namespace, final Map<ErrorType, ValidationError> errors,
+                 final long elements, final long bytes) {
+            this.url = url;
+            this.namespace = namespace;
+            this.errors = Collections.unmodifiableMap(errors);
+            this.elements = elements;
+            this.bytes = bytes;
+        }
+
+        public URL url() {
+            return this.url;
+        }
+
+        public String namespace() {
+            return this.namespace;
+        }
+
+        /**
+         * @return the error injected for each type, positioned where a validating parser would report it
+         */
+        public Map<ErrorType, ValidationError> errors() {
+            return this.errors;
+        }
+
+        public long elements() {
+            return this.elements;
+        }
+
+        public long bytes() {
+            return this.bytes;
+        }
+
+        @Override
+        public String toString() {
+            return this.url + ": " + this.elements + " elements, " + this.bytes + " bytes";
+        }
+
+        private final URL url;
+        private final String namespace;
+        private final Map<ErrorType, ValidationError> errors;
+        private final long elements;
+        private final long bytes;
+    }
+
+    private static class Type {
+        Type(final String name, final Type base) {
+            this.name = name;
+            this.base = base;
+        }
+
+        List<String> attributes() {
+            final List<String> ret = this.base == null ? new ArrayList<>() : this.base.attributes();
+            ret.addAll(this.ownAttributes);
+
+            return ret;
+        }
+
+        List<Child> children() {
+            final List<Child> ret = this.base == null ? new ArrayList<>() : this.base.children();
+            ret.addAll(this.ownChildren);
+
+            return ret;
+        }
+
+        final String name;
+        final Type base;
+        final List<String> ownAttributes = new ArrayList<>();
+        final List<Child> ownChildren = new ArrayList<>();
+        // the number of elements in an instance, including itself
+        int size;
+    }
+
+    private static class Child {
+        Child(final String name, final Type type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        final String name;
+        // null for an inline type with only the leaf attributes
+        final Type type;
+    }
+
+    private static class DocumentWriter {
+        DocumentWriter(final String namespace, final Random random) {
+            this.namespace = namespace;
+            this.random = random;
+        }
+
+        void write(final BufferedWriter out, final Type entry, final int entries) throws IOException {
+            final ErrorType[] types = ErrorType.values();
+            final Map<Integer, ErrorType> planned = new HashMap<>();
+            while (planned.size() < types.length) {
+                final int idx = this.random.nextInt(entries);
+                if (!planned.containsKey(idx)) {
+                    planned.put(idx, types[planned.size()]);
+                }
+            }
+
+            this.out = out;
+            line("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            line("<config xmlns=\"" + this.namespace + "\">");
+            this.elements++;
+            for (int i = 0; i < entries; i++) {
+                final ErrorType error = planned.get(i);
+                if (error != null && !ENTRY_ERRORS.contains(error)) {
+                    // somewhere in the entry, not necessarily the entry itself
+                    this.pending = error;
+                    this.target = this.random.nextInt(entry.size);
+                    this.seen = 0;
+                    element("entry", entry, 1, null, null);
+                } else {
+                    element("entry", entry, 1, null, error);
+                }
+            }
+            line("</config>");
+        }
+
+        private void element(final String name, final Type type, final int depth, final String duplicateOf,
+                             final ErrorType entryError) throws IOException {
+            ErrorType error = entryError;
+            if (this.pending != null && this.seen++ == this.target) {
+                error = this.pending;
+                this.pending = null;
+            }
+
+            final String value = duplicateOf != null ? duplicateOf : name + "-" + this.elements;
+            this.elements++;
+            final StringBuilder tag = indent(depth).append('<').append(name);
+            for (String each : type == null ? LEAF_ATTRIBUTES : type.attributes()) {
+                if ("name".equals(each) && error == ErrorType.REQUIRED_ATTRIBUTE_MISSING) {
+                    continue;
+                }
+                tag.append(' ').append(each).append("=\"");
+                if ("name".equals(each)) {
+                    tag.append(value);
+                } else if ("count".equals(each)) {
+                    tag.append(error == ErrorType.INVALID_ATTRIBUTE_VALUE ? INVALID_COUNT : this.elements % 1000);
+                } else {
+                    tag.append('v').append(this.elements % 100);
+                }
+                tag.append('"');
+            }
+            if (error == ErrorType.UNEXPECTED_ATTRIBUTE) {
+                tag.append(" nmae=\"").append(value).append('"');
+            }
+
+            final List<Child> children = type == null ? Collections.emptyList() : type.children();
+            final boolean empty = children.isEmpty() || error == ErrorType.REQUIRED_ELEMENTS_MISSING;
+            tag.append(empty ? "/>" : ">");
+            line(tag.toString());
+            final int col = tag.length() + 1;
+            if (duplicateOf != null) {
+                record(ErrorType.DUPLICATE_ELEMENT, col).element(qname(name))
+                        .attribute(new QName("name")).attributeValue(value);
+            } else if (error != null && error != ErrorType.DUPLICATE_ELEMENT && error != ErrorType.UNEXPECTED_ELEMENT) {
+                record(error, name, value, children, col);
+            }
+            if (empty) {
+
+                return;
+            }
+
+            if (error == ErrorType.UNEXPECTED_ELEMENT) {
+                final String misspelt = children.get(0).name.replaceFirst("-", "");
+                final String bogus = indent(depth + 1).append('<').append(misspelt).append("/>").toString();
+                line(bogus);
+                record(error, bogus.length() + 1).element(qname(misspelt));
+            }
+            for (int i = 0; i < children.size(); i++) {
+                final Child child = children.get(i);
+                if (i == 0 && error == ErrorType.REQUIRED_ELEMENT_MISSING) {
+                    continue;
+                }
+                final String childValue = child.name + "-" + this.elements;
+                element(child.name, child.type, depth + 1, null, null);
+                if (i == 0 && error == ErrorType.DUPLICATE_ELEMENT) {
+                    element(child.name, child.type, depth + 1, childValue, null);
+                }
+            }
+            line(indent(depth).append("</").append(name).append('>').toString());
+        }
+
+        private void record(final ErrorType type, final String name, final String value, final List<Child> children,
+                            final int col) {
+            final ValidationError error = record(type, col).element(qname(name));
+            switch (type) {
+                case DUPLICATE_ATTRIBUTE:
+                    error.attribute(new QName("name"));
+                    break;
+                case INVALID_ATTRIBUTE_VALUE:
+                    error.attribute(new QName("count")).attributeValue(INVALID_COUNT);
+                    break;
+                case REQUIRED_ATTRIBUTE_MISSING:
+                    error.alternatives(Collections.singleton("name"));
+                    break;
+                case REQUIRED_ELEMENT_MISSING:
+                    error.alternatives(Collections.singleton(children.get(0).name));
+                    break;
+                case REQUIRED_ELEMENTS_MISSING:
+                    final Set<String> names = new HashSet<>();
+                    for (Child each : children) {
+                        names.add(each.name);
+                    }
+                    error.alternatives(names);
+                    break;
+                case UNEXPECTED_ATTRIBUTE:
+                    error.attribute(new QName("nmae"));
+                    break;
+                case UNSUPPORTED_ELEMENT:
+                    error.alternatives(Collections.singleton(name + "-replacement"));
+                    break;
+                default:
+            }
+        }
+
+        private ValidationError record(final ErrorType type, final int col) {
+            final ValidationError error = new ValidationError(type, "generated " + type,
+                                                              Fixtures.location(this.line, col));
+            this.errors.put(type, error);
+
+            return error;
+        }
+
+        private QName qname(final String name) {
+            return new QName(this.namespace, name);
+        }
+
+        private void line(final String line) throws IOException {
+            this.out.write(line);
+            this.out.write('\n');
+            this.line++;
+        }
+
+        private static StringBuilder indent(final int depth) {
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < depth; i++) {
+                sb.append("    ");
+            }
+
+            return sb;
+        }
+
+        private final String namespace;
+        private final Random random;
+        private final Map<ErrorType, ValidationError> errors = new EnumMap<>(ErrorType.class);
+        private BufferedWriter out;
+        private int line = 0;
+        private long elements = 0;
+        private ErrorType pending;
+        private int target;
+        private int seen;
+    }
+
+    // the errors that need an element with children, so are put on an entry
+    private static final Set<ErrorType> ENTRY_ERRORS = Collections.unmodifiableSet(new HashSet<>(
+            Arrays.asList(ErrorType.DUPLICATE_ELEMENT, ErrorType.REQUIRED_ELEMENT_MISSING,
+                                    ErrorType.REQUIRED_ELEMENTS_MISSING, ErrorType.UNEXPECTED_ELEMENT)));
+    private static final List<String> LEAF_ATTRIBUTES = Collections.unmodifiableList(
+            Arrays.asList("name", "count"));
+    private static final String INVALID_COUNT = "not-a-number";
+    // keeps instances of reused types from growing exponentially with the number of types
+    private static final int MAX_REUSED_SIZE = 64;
+
+    private final long seed;
+    private int namespaces = 1;
+    private int types = 12;
+    private int children = 3;
+    private int attributes = 4;
+    private int inheritanceDepth = 2;
+    private double typeReuse = 0.5;
+    private int entries = 100;
+}
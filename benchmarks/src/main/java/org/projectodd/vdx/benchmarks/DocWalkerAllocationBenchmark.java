@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.benchmarks;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import org.projectodd.vdx.core.CompactDocument;
+import org.projectodd.vdx.core.DocWalker;
+
+/**
+ * The bytes allocated to walk a document, which the main method reports as gc.alloc.rate.norm (bytes per
+ * walk). The whitespace-heavy documents put blank lines and deep indentation between every element, so
+ * the parser makes many text callbacks per element.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DocWalkerAllocationBenchmark {
+    @Param({"0", "10000"})
+    public int extraBindings;
+
+    @Param({"false", "true"})
+    public boolean whitespace;
+
+    @Setup
+    public void setup() {
+        this.document = this.whitespace ? Fixtures.whitespaceDocument(this.extraBindings) :
+                Fixtures.document(this.extraBindings);
+    }
+
+    @Benchmark
+    public CompactDocument document() {
+        return new DocWalker(this.document).document();
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                           .include(DocWalkerAllocationBenchmark.class.getSimpleName())
+                           .addProfiler(GCProfiler.class)
+                           .build())
+                .run();
+    }
+
+    private URL document;
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectodd.vdx.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.projectodd.vdx.core.ErrorHandler;
+import org.projectodd.vdx.core.ErrorType;
+import org.projectodd.vdx.core.ValidationContext;
+import org.projectodd.vdx.core.ValidationError;
+
+/**
+ * Each handler against a context whose schema is already loaded, so this is the cost of the handler's
+ * queries alone.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ErrorHandlerBenchmark {
+    @Param
+    public ErrorType type;
+
+    @Param({"0", "10000"})
+    public int extraBindings;
+
+    @Setup
+    public void setup() throws IOException {
+        this.context = new ValidationContext(Fixtures.document(this.extraBindings), Fixtures.schemas());
+        this.error = Fixtures.errors().get(this.type);
+        this.context.handle(this.error);
+    }
+
+    @Benchmark
+    public ErrorHandler.HandledResult handle() {
+        return this.context.handle(this.error);
+    }
+
+    private ValidationContext context;
+    private ValidationError error;
+}
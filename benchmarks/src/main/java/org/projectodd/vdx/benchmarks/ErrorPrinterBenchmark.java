@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectodd.vdx.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.projectodd.vdx.core.ErrorPrinter;
+import org.projectodd.vdx.core.ErrorType;
+import org.projectodd.vdx.core.Printer;
+import org.projectodd.vdx.core.ValidationError;
+
+/**
+ * Handling and rendering a report, with the output sent to a blackhole instead of stderr.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ErrorPrinterBenchmark {
+    @Param({"UNEXPECTED_ELEMENT", "UNEXPECTED_ATTRIBUTE", "DUPLICATE_ELEMENT"})
+    public ErrorType type;
+
+    @Setup
+    public void setup(final Blackhole blackhole) throws IOException {
+        this.printer = new ErrorPrinter(Fixtures.document(0), Fixtures.schemas())
+                .printer(new Printer() {
+                    @Override
+                    public void printlnErr(final String msg) {
+                        blackhole.consume(msg);
+                    }
+
+                    @Override
+                    public void println(final String msg) {
+                        blackhole.consume(msg);
+                    }
+                });
+        this.error = Fixtures.errors().get(this.type);
+    }
+
+    @Benchmark
+    public void print() {
+        this.printer.print(this.error);
+    }
+
+    private ErrorPrinter printer;
+    private ValidationError error;
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectodd.vdx.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+
+import org.projectodd.vdx.core.ErrorType;
+import org.projectodd.vdx.core.ValidationError;
+
+/**
+ * The inputs the benchmarks run against: the bundled standalone.xml and wildfly-config_4_2.xsd, and
+ * larger copies of standalone.xml with extra socket bindings, so the document scales while staying valid.
+ * The extra content goes after every element the sample errors point at.
+ */
+public class Fixtures {
+    public static final String NS = "urn:jboss:domain:4.2";
+
+    public static URL schema() {
+        return Fixtures.class.getClassLoader().getResource("wildfly-config_4_2.xsd");
+    }
+
+    public static List<URL> schemas() {
+        return Collections.singletonList(schema());
+    }
+
+    /**
+     * @return standalone.xml, with the given number of extra socket bindings
+     */
+    public static URL document(final int extraBindings) {
+        final URL standalone = Fixtures.class.getClassLoader().getResource("standalone.xml");
+        if (extraBindings == 0) {
+
+            return standalone;
+        }
+
+        return write("vdx-standalone-" + extraBindings + "-", withExtraBindings(extraBindings));
+    }
+
+    /**
+     * @return standalone.xml, with the given number of extra socket bindings, and a blank line and a
+     * deeply indented one after every line, so whitespace outweighs markup
+     */
+    public static URL whitespaceDocument(final int extraBindings) {
+        final StringBuilder padding = new StringBuilder("\n");
+        for (int i = 0; i < 64; i++) {
+            padding.append(' ');
+        }
+        padding.append("\n\n");
+
+        return write("vdx-whitespace-" + extraBindings + "-",
+                     withExtraBindings(extraBindings).replace("\n", padding));
+    }
+
+    private static String withExtraBindings(final int extraBindings) {
+        final URL standalone = Fixtures.class.getClassLoader().getResource("standalone.xml");
+        try (final InputStream in = standalone.openStream()) {
+            final String content = new String(readAll(in), StandardCharsets.UTF_8);
+            final int insertAt = content.indexOf("        <outbound-socket-binding");
+            final StringBuilder sb = new StringBuilder(content.length() + extraBindings * 64);
+            sb.append(content, 0, insertAt);
+            for (int i = 0; i < extraBindings; i++) {
+                sb.append("        <socket-binding name=\"generated-").append(i)
+                        .append("\" port=\"").append(10000 + i).append("\"/>\n");
+            }
+            sb.append(content, insertAt, content.length());
+
+            return sb.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static URL write(final String prefix, final String content) {
+        try {
+            final Path file = Files.createTempFile(prefix, ".xml");
+            file.toFile().deleteOnExit();
+            Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+
+            return file.toUri().toURL();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return an error of each type, positioned on an element in standalone.xml
+     */
+    public static Map<ErrorType, ValidationError> errors() {
+        final Map<ErrorType, ValidationError> errors = new EnumMap<>(ErrorType.class);
+        errors.put(ErrorType.DUPLICATE_ATTRIBUTE,
+                   error(ErrorType.DUPLICATE_ATTRIBUTE, 395, 110).element(qname("socket-binding"))
+                           .attribute(new QName("name")));
+        errors.put(ErrorType.DUPLICATE_ELEMENT,
+                   error(ErrorType.DUPLICATE_ELEMENT, 390, 33).element(qname("interface"))
+                           .attribute(new QName("name")).attributeValue("public"));
+        errors.put(ErrorType.INVALID_ATTRIBUTE_VALUE,
+                   error(ErrorType.INVALID_ATTRIBUTE_VALUE, 397, 65).element(qname("socket-binding"))
+                           .attribute(new QName("port")).attributeValue("bogus"));
+        errors.put(ErrorType.REQUIRED_ATTRIBUTE_MISSING,
+                   error(ErrorType.REQUIRED_ATTRIBUTE_MISSING, 402, 57).element(qname("outbound-socket-binding"))
+                           .alternatives(new HashSet<>(Collections.singletonList("name"))));
+        errors.put(ErrorType.REQUIRED_ELEMENT_MISSING,
+                   error(ErrorType.REQUIRED_ELEMENT_MISSING, 387, 38).element(qname("interface"))
+                           .alternatives(new HashSet<>(Collections.singletonList("inet-address"))));
+        errors.put(ErrorType.REQUIRED_ELEMENTS_MISSING,
+                   error(ErrorType.REQUIRED_ELEMENTS_MISSING, 34, 52).element(qname("security-realm"))
+                           .alternatives(new HashSet<>(Arrays.asList("authentication", "authorization"))));
+        errors.put(ErrorType.UNEXPECTED_ATTRIBUTE,
+                   error(ErrorType.UNEXPECTED_ATTRIBUTE, 398, 61).element(qname("socket-binding"))
+                           .attribute(new QName("prot")));
+        errors.put(ErrorType.UNEXPECTED_ELEMENT,
+                   error(ErrorType.UNEXPECTED_ELEMENT, 388, 79).element(qname("inet-adress")));
+        errors.put(ErrorType.UNKNOWN_ERROR,
+                   error(ErrorType.UNKNOWN_ERROR, 388, 79));
+        errors.put(ErrorType.UNSUPPORTED_ELEMENT,
+                   error(ErrorType.UNSUPPORTED_ELEMENT, 36, 77).element(qname("local"))
+                           .alternatives(new HashSet<>(Collections.singletonList("local-user"))));
+
+        return errors;
+    }
+
+    private static ValidationError error(final ErrorType type, final int line, final int col) {
+        return new ValidationError(type, "benchmark " + type, location(line, col));
+    }
+
+    private static QName qname(final String name) {
+        return new QName(NS, name);
+    }
+
+    static Location location(final int line, final int col) {
+        return new Location() {
+            @Override
+            public int getLineNumber() {
+                return line;
+            }
+
+            @Override
+            public int getColumnNumber() {
+                return col;
+            }
+
+            @Override
+            public int getCharacterOffset() {
+                return -1;
+            }
+
+            @Override
+            public String getPublicId() {
+                return null;
+            }
+
+            @Override
+            public String getSystemId() {
+                return null;
+            }
+        };
+    }
+
+    private static byte[] readAll(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            out.write(buf, 0, n);
+        }
+
+        return out.toByteArray();
+    }
+
+    private Fixtures() {}
+}
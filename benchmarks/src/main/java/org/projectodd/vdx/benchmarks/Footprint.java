@@ -0,0 +1,218 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectodd.vdx.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.openjdk.jol.info.GraphLayout;
+import org.projectodd.vdx.core.CompactDocument;
+import org.projectodd.vdx.core.DocElement;
+import org.projectodd.vdx.core.DocWalker;
+import org.projectodd.vdx.core.SymbolTable;
+import org.projectodd.vdx.core.Tree;
+import org.projectodd.vdx.core.Util;
+import org.projectodd.vdx.core.ValidationContext;
+import org.projectodd.vdx.core.schema.CompactSchema;
+import org.projectodd.vdx.core.schema.SchemaElement;
+import org.projectodd.vdx.core.schema.SchemaNamespaceIndex;
+import org.projectodd.vdx.core.schema.SchemaNodePool;
+import org.projectodd.vdx.core.schema.SchemaWalker;
+
+/**
+ * Measures the heap taken by the schema and document models for a document, by walking their object
+ * graphs: the walked trees, and the compact forms a {@link ValidationContext} keeps. Only the schemas
+ * for the namespaces the document uses are loaded, as a context would. A model's size is everything
+ * reachable from it, names included, and each model gets its own symbol table, so nothing is shared
+ * between them.
+ *
+ * Usage: Footprint document.xml schema-dir-or-xsd... [--classes]
+ */
+public class Footprint {
+
+    public static Footprint measure(final URL document, final List<URL> schemas) throws IOException {
+        final List<String> lines;
+        try (final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(document.openStream(), ValidationContext.detectCharset(document)))) {
+            lines = reader.lines().collect(Collectors.toList());
+        }
+
+        final SchemaNamespaceIndex index = SchemaNamespaceIndex.DEFAULT;
+        final Map<String, List<URL>> byNamespace = new LinkedHashMap<>();
+        for (URL url : index.schemasProviding(Util.extractXMLNS(lines), schemas)) {
+            byNamespace.computeIfAbsent(index.namespace(url), __ -> new ArrayList<>()).add(url);
+        }
+
+        final List<Tree<SchemaElement>> schemaTrees = new ArrayList<>();
+        int schemaTreeNodes = 0;
+        for (List<URL> each : byNamespace.values()) {
+            final Tree<SchemaElement> tree = new SchemaWalker(each, new SymbolTable()).walk();
+            schemaTrees.add(tree);
+            schemaTreeNodes += tree.reduce(0, (count, __) -> count + 1);
+        }
+
+        final SymbolTable symbols = new SymbolTable();
+        final SchemaNodePool pool = new SchemaNodePool();
+        final List<CompactSchema> compactSchemas = new ArrayList<>();
+        int compactSchemaNodes = 0;
+        for (List<URL> each : byNamespace.values()) {
+            final CompactSchema schema = CompactSchema.freeze(new SchemaWalker(each, symbols).walk(), symbols, pool);
+            compactSchemas.add(schema);
+            // less the root, to count the same nodes as the tree
+            compactSchemaNodes += schema.nodeCount() - 1;
+        }
+
+        final Tree<DocElement> docTree = new DocWalker(document, new SymbolTable()).walk();
+        final CompactDocument compactDocument = new DocWalker(document, new SymbolTable()).document();
+
+        return new Footprint(Arrays.asList(
+                new Model("Tree<SchemaElement>", schemaTrees, schemaTreeNodes),
+                new Model("CompactSchema", compactSchemas, compactSchemaNodes),
+                new Model("Tree<DocElement>", docTree, docTree.reduce(0, (count, __) -> count + 1)),
+                new Model("CompactDocument", compactDocument, compactDocument.nodeCount())));
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final List<String> argList = new ArrayList<>(Arrays.asList(args));
+        final boolean classes = argList.remove("--classes");
+        if (argList.size() < 2) {
+            System.err.println("Usage: Footprint document.xml schema-dir-or-xsd... [--classes]");
+            System.exit(1);
+        }
+
+        final List<URL> schemas = new ArrayList<>();
+        for (String each : argList.subList(1, argList.size())) {
+            final File file = new File(each);
+            final File[] xsds = file.isDirectory() ? file.listFiles((__, name) -> name.endsWith(".xsd")) : null;
+            if (xsds != null) {
+                Arrays.sort(xsds);
+                for (File xsd : xsds) {
+                    schemas.add(xsd.toURI().toURL());
+                }
+            } else {
+                schemas.add(file.toURI().toURL());
+            }
+        }
+
+        final Footprint footprint = measure(new File(argList.get(0)).toURI().toURL(), schemas);
+        System.out.println(footprint);
+        if (classes) {
+            for (Model each : footprint.models()) {
+                System.out.println();
+                System.out.println(each.name() + ":");
+                System.out.println(each.classes());
+            }
+        }
+    }
+
+    public List<Model> models() {
+        return this.models;
+    }
+
+    public Model model(final String name) {
+        for (Model each : this.models) {
+            if (each.name().equals(name)) {
+
+                return each;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(String.format("%-22s %12s %10s %10s %14s%n",
+                                                                 "model", "bytes", "objects", "nodes", "bytes/node"));
+        for (Model each : this.models) {
+            sb.append(each).append(String.format("%n"));
+        }
+
+        return sb.toString();
+    }
+
+    Footprint(final List<Model> models) {
+        this.models = Collections.unmodifiableList(models);
+    }
+
+    public static class Model {
+        Model(final String name, final Object root, final long nodes) {
+            final GraphLayout layout = GraphLayout.parseInstance(root);
+            this.name = name;
+            this.bytes = layout.totalSize();
+            this.objects = layout.totalCount();
+            this.nodes = nodes;
+            this.classes = layout.toFootprint();
+        }
+
+        public String name() {
+            return this.name;
+        }
+
+        /**
+         * @return the bytes retained by the model
+         */
+        public long bytes() {
+            return this.bytes;
+        }
+
+        public long objects() {
+            return this.objects;
+        }
+
+        /**
+         * @return the schema nodes or document elements in the model
+         */
+        public long nodes() {
+            return this.nodes;
+        }
+
+        public double bytesPerNode() {
+            return this.nodes == 0 ? 0 : (double)this.bytes / this.nodes;
+        }
+
+        /**
+         * @return the model's object counts and sizes by class, largest first
+         */
+        public String classes() {
+            return this.classes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-22s %12d %10d %10d %14.1f", this.name, this.bytes, this.objects, this.nodes,
+                                 bytesPerNode());
+        }
+
+        private final String name;
+        private final long bytes;
+        private final long objects;
+        private final long nodes;
+        private final String classes;
+    }
+
+    private final List<Model> models;
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projectodd.vdx.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.projectodd.vdx.core.SymbolTable;
+import org.projectodd.vdx.core.Tree;
+import org.projectodd.vdx.core.schema.CompactSchema;
+import org.projectodd.vdx.core.schema.SchemaElement;
+import org.projectodd.vdx.core.schema.SchemaNodePool;
+import org.projectodd.vdx.core.schema.SchemaWalker;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchemaWalkerBenchmark {
+
+    @Benchmark
+    public Tree<SchemaElement> walk() {
+        return new SchemaWalker(Fixtures.schemas()).walk();
+    }
+
+    /**
+     * Walking and freezing into a fresh pool, as loading a schema for the first time does.
+     */
+    @Benchmark
+    public CompactSchema walkAndFreeze() {
+        return CompactSchema.freeze(new SchemaWalker(Fixtures.schemas()).walk(), SymbolTable.DEFAULT,
+                                    new SchemaNodePool());
+    }
+}
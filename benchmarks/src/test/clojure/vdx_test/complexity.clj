@@ -0,0 +1,139 @@
+;; Copyright 2016 Red Hat, Inc, and individual contributors.
+;;
+;; Licensed under the Apache License, Version 2.0 (the "License");
+;; you may not use this file except in compliance with the License.
+;; You may obtain a copy of the License at
+;;
+;; http://www.apache.org/licenses/LICENSE-2.0
+;;
+;; Unless required by applicable law or agreed to in writing, software
+;; distributed under the License is distributed on an "AS IS" BASIS,
+;; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+;; See the License for the specific language governing permissions and
+;; limitations under the License.
+
+;; Each query and walker is timed at doubling input sizes, and fails if its time grows faster than
+;; n log n (with room for noise) between the smallest and largest size. Timings are per operation,
+;; the fastest of several samples, so only the growth ratio matters, not how fast this machine is.
+
+(ns vdx-test.complexity
+  (:require [clojure.test :refer :all])
+  (:import [org.projectodd.vdx.benchmarks CorpusGenerator]
+           [org.projectodd.vdx.core DocWalker ErrorType Position Tree ValidationContext]
+           [org.projectodd.vdx.core.schema CompactSchema SchemaWalker]
+           [java.nio.file Files]
+           [java.nio.file.attribute FileAttribute]
+           [java.util.function Function]
+           [javax.xml.namespace QName]))
+
+(def sizes [1 2 4 8])
+
+;; a linear operation grows by 8 across the sizes, n log n by a little more, quadratic by 64
+(def slack 2.5)
+
+(defn pred [f]
+  (reify Function (apply [_ v] (f v))))
+
+(defn run-for [f ns]
+  (let [start (System/nanoTime)]
+    (loop [n 1]
+      (f)
+      (if (< (- (System/nanoTime) start) ns) (recur (inc n)) n))))
+
+(defn per-op-ns [f]
+  (apply min
+         (for [_ (range 5)]
+           (let [start (System/nanoTime)
+                 n (run-for f 20000000)]
+             (/ (double (- (System/nanoTime) start)) n)))))
+
+(defn n-log-n [n]
+  (* n (/ (Math/log (max n 2)) (Math/log 2))))
+
+(defmacro assert-scales [label inputs size f]
+  `(let [inputs# ~inputs
+         ;; warm up on every size first, so the first isn't slowed by compilation
+         _# (doseq [input# inputs#] (run-for #(~f input#) 100000000))
+         measured# (doall (for [input# inputs#]
+                            [(~size input#) (per-op-ns #(~f input#))]))
+         [[s0# t0#]] measured#
+         [s1# t1#] (last measured#)
+         bound# (* slack (/ (n-log-n s1#) (n-log-n s0#)))]
+     (is (<= (/ t1# t0#) bound#)
+         (format "%s grew %.1fx for %.1fx the input (bound %.1fx): %s"
+                 ~label (/ t1# t0#) (/ (double s1#) s0#) bound# (pr-str measured#)))))
+
+(defn generate [generator]
+  (.generate generator (Files/createTempDirectory "vdx-complexity" (make-array FileAttribute 0))))
+
+;; documents that double in size against the same schema
+(def documents
+  (delay (doall (for [n sizes]
+                  (let [corpus (generate (.entries (CorpusGenerator. 3) (* 100 n)))
+                        doc (first (.documents corpus))]
+                    {:corpus corpus
+                     :doc doc
+                     :ctx (ValidationContext. (.url doc) (.schemas corpus))})))))
+
+;; schemas that double in size, each with a small document. Without type reuse, a schema grows
+;; exactly with the number of children per type.
+(def schemas
+  (delay (doall (for [n sizes]
+                  (let [corpus (generate (-> (CorpusGenerator. 3) (.typeReuse 0) (.children (* 64 n))
+                                             (.entries 10)))
+                        doc (first (.documents corpus))
+                        ctx (ValidationContext. (.url doc) (.schemas corpus))
+                        error (.get (.errors doc) ErrorType/UNEXPECTED_ATTRIBUTE)]
+                    {:corpus corpus
+                     :ctx ctx
+                     :path (.pathToDocElement ctx (.element error) (.position error))
+                     :nodes (.nodeCount (CompactSchema/freeze (.walk (SchemaWalker. (.schemas corpus)))))})))))
+
+(defn elements [{:keys [doc]}]
+  (.elements doc))
+
+(defn schema-bytes [{:keys [corpus]}]
+  (Files/size (.toPath (java.io.File. (.toURI (first (.schemas corpus)))))))
+
+(deftest doc-walker-scales
+  (assert-scales "DocWalker.walk" @documents elements
+                 #(.walk (DocWalker. (.url (:doc %))))))
+
+(deftest schema-walker-scales
+  (assert-scales "SchemaWalker.walk" @schemas schema-bytes
+                 #(.walk (SchemaWalker. (.schemas (:corpus %))))))
+
+(deftest path-to-doc-element-scales
+  ;; the last entry, so the whole document is searched
+  (assert-scales "pathToDocElement" @documents elements
+                 (fn [{:keys [ctx doc]}]
+                   (let [path (.pathToDocElement ctx (QName. (.namespace doc) "entry")
+                                                 (Position. (dec (.documentLineCount ctx)) 5))]
+                     (assert (seq path))
+                     path))))
+
+(deftest doc-element-siblings-scales
+  (assert-scales "docElementSiblings" @documents elements
+                 (fn [{:keys [ctx]}]
+                   (let [entry (.pathToDocElement ctx (pred #(= "entry" (.name %))))]
+                     (.docElementSiblings ctx entry (pred (constantly true)))))))
+
+(deftest alternate-elements-for-attribute-scales
+  (assert-scales "alternateElementsForAttribute" @schemas :nodes
+                 #(.alternateElementsForAttribute (:ctx %) "count")))
+
+(deftest map-doc-path-to-schema-path-scales
+  (assert-scales "mapDocPathToSchemaPath" @schemas :nodes
+                 #(.mapDocPathToSchemaPath (:ctx %) (:path %))))
+
+(deftest paths-to-value-scales-with-depth
+  ;; a chain with a spray of leaves at the bottom, so there are many long paths to build
+  (let [chain (fn [depth]
+                (let [root (Tree.)
+                      bottom (reduce (fn [t i] (.addChild t i)) root (range depth))]
+                  (doseq [i (range 1 51)]
+                    (.addChild bottom (- i)))
+                  {:root root :depth depth}))]
+    (assert-scales "Tree.pathsToValue" (map #(chain (* 250 %)) sizes) :depth
+                   (fn [{:keys [root]}]
+                     (.pathsToValue root true (pred neg?))))))
@@ -0,0 +1,40 @@
+;; Copyright 2016 Red Hat, Inc, and individual contributors.
+;;
+;; Licensed under the Apache License, Version 2.0 (the "License");
+;; you may not use this file except in compliance with the License.
+;; You may obtain a copy of the License at
+;;
+;; http://www.apache.org/licenses/LICENSE-2.0
+;;
+;; Unless required by applicable law or agreed to in writing, software
+;; distributed under the License is distributed on an "AS IS" BASIS,
+;; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+;; See the License for the specific language governing permissions and
+;; limitations under the License.
+
+(ns vdx-test.concurrency
+  (:require [clojure.test :refer :all])
+  (:import [org.projectodd.vdx.benchmarks ConcurrencyStress CorpusGenerator]
+           [org.projectodd.vdx.core ErrorType]
+           [java.nio.file Files]
+           [java.nio.file.attribute FileAttribute]))
+
+(def stress
+  (delay (-> (CorpusGenerator. 7)
+           (.namespaces 4)
+           (.entries 50)
+           (.generate (Files/createTempDirectory "vdx-concurrency" (make-array FileAttribute 0)))
+           (ConcurrencyStress.)
+           (.rounds 4))))
+
+(defn assert-identical [shared?]
+  (doseq [threads [1 2 4 8]]
+    (let [result (.run (.sharedPrinters @stress shared?) threads)]
+      (is (= (* 4 4 (count (ErrorType/values))) (.reports result)))
+      (is (empty? (.failures result)) (str result ": " (take 3 (.failures result)))))))
+
+(deftest reports-are-identical-with-a-printer-per-task
+  (assert-identical false))
+
+(deftest reports-are-identical-with-shared-printers
+  (assert-identical true))
@@ -0,0 +1,56 @@
+;; Copyright 2016 Red Hat, Inc, and individual contributors.
+;;
+;; Licensed under the Apache License, Version 2.0 (the "License");
+;; you may not use this file except in compliance with the License.
+;; You may obtain a copy of the License at
+;;
+;; http://www.apache.org/licenses/LICENSE-2.0
+;;
+;; Unless required by applicable law or agreed to in writing, software
+;; distributed under the License is distributed on an "AS IS" BASIS,
+;; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+;; See the License for the specific language governing permissions and
+;; limitations under the License.
+
+(ns vdx-test.corpus-generator
+  (:require [clojure.test :refer :all]
+            [clojure.java.io :as io])
+  (:import [org.projectodd.vdx.benchmarks CorpusGenerator]
+           [org.projectodd.vdx.core DocWalker ErrorType I18N$Key ValidationContext]
+           [java.nio.file Files]
+           [java.nio.file.attribute FileAttribute]))
+
+(defn generate [generator]
+  (.generate generator (Files/createTempDirectory "vdx-corpus" (make-array FileAttribute 0))))
+
+(defn contents [corpus]
+  (map #(Files/readAllBytes (.toPath (io/file %)))
+       (concat (.schemas corpus) (map #(.url %) (.documents corpus)))))
+
+(deftest the-same-seed-writes-the-same-corpus
+  (let [a (generate (.namespaces (CorpusGenerator. 42) 2))
+        b (generate (.namespaces (CorpusGenerator. 42) 2))
+        c (generate (.namespaces (CorpusGenerator. 43) 2))]
+    (is (= 4 (count (contents a))))
+    (is (every? true? (map #(java.util.Arrays/equals %1 %2) (contents a) (contents b))))
+    (is (not-every? true? (map #(java.util.Arrays/equals %1 %2) (contents a) (contents c))))
+    (is (= (map #(map (juxt key (comp (juxt (memfn position) (memfn element)) val)) (.errors %)) (.documents a))
+           (map #(map (juxt key (comp (juxt (memfn position) (memfn element)) val)) (.errors %)) (.documents b))))))
+
+(deftest every-error-type-is-injected-and-handled
+  (let [corpus (generate (-> (CorpusGenerator. 7) (.namespaces 2) (.typeReuse 0.8)))]
+    (doseq [doc (.documents corpus)]
+      (is (.valid (DocWalker. (.url doc))))
+      (is (= (set (ErrorType/values)) (set (keys (.errors doc)))))
+      (let [ctx (ValidationContext. (.url doc) (.schemas corpus))]
+        (doseq [[type error] (.errors doc)]
+          (let [messages (.primaryMessages (.handle ctx error))]
+            (is (seq messages))
+            (when-not (= ErrorType/UNKNOWN_ERROR type)
+              (is (not= I18N$Key/PASSTHRU (.template (first messages))) (str type)))))))))
+
+(deftest documents-scale-with-entries
+  (let [small (first (.documents (generate (.entries (CorpusGenerator. 1) 10))))
+        large (first (.documents (generate (.entries (CorpusGenerator. 1) 100))))]
+    (is (< (* 5 (.bytes small)) (.bytes large)))
+    (is (< (* 5 (.elements small)) (.elements large)))))
@@ -0,0 +1,49 @@
+;; Copyright 2016 Red Hat, Inc, and individual contributors.
+;;
+;; Licensed under the Apache License, Version 2.0 (the "License");
+;; you may not use this file except in compliance with the License.
+;; You may obtain a copy of the License at
+;;
+;; http://www.apache.org/licenses/LICENSE-2.0
+;;
+;; Unless required by applicable law or agreed to in writing, software
+;; distributed under the License is distributed on an "AS IS" BASIS,
+;; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+;; See the License for the specific language governing permissions and
+;; limitations under the License.
+
+(ns vdx-test.footprint
+  (:require [clojure.test :refer :all]
+            [clojure.java.io :as io])
+  (:import [org.projectodd.vdx.benchmarks CorpusGenerator Footprint]
+           [java.nio.file Files]
+           [java.nio.file.attribute FileAttribute]))
+
+;; bytes per schema node or document element, about 20% over what each model took when these were
+;; set, on a 64-bit JVM with compressed oops. Raise one only when the growth is expected.
+(def budgets
+  {:standalone {"Tree<SchemaElement>" 325
+                "CompactSchema" 240
+                "Tree<DocElement>" 475
+                "CompactDocument" 310}
+   :generated {"Tree<DocElement>" 610
+               "CompactDocument" 155}})
+
+(defn assert-within [footprint budget]
+  (doseq [[model max] budget]
+    (let [m (.model footprint model)]
+      (is (pos? (.nodes m)) model)
+      (is (<= (.bytesPerNode m) max)
+          (format "%s takes %.1f bytes per node, over the budget of %d\n%s"
+                  model (.bytesPerNode m) max footprint)))))
+
+(deftest the-bundled-config-is-within-budget
+  (assert-within (Footprint/measure (io/resource "standalone.xml") [(io/resource "wildfly-config_4_2.xsd")])
+                 (:standalone budgets)))
+
+(deftest a-large-document-is-within-budget
+  (let [corpus (.generate (.entries (CorpusGenerator. 5) 200)
+                          (Files/createTempDirectory "vdx-footprint" (make-array FileAttribute 0)))
+        doc (first (.documents corpus))]
+    (assert-within (Footprint/measure (.url doc) (.schemas corpus))
+                   (:generated budgets))))
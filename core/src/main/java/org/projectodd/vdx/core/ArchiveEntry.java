@@ -0,0 +1,330 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.URLStreamHandler;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A file stored inside an archive (a zip or a schema bundle) at a known offset, either stored as-is or
+ * raw deflated. It can be read without opening the archive as a whole, and can be handed to code that
+ * expects a url - see {@link #toURL()}.
+ */
+public class ArchiveEntry {
+    public static final int STORED = 0;
+    public static final int DEFLATED = 8;
+
+    public ArchiveEntry(final File archive, final String name, final long dataOffset, final int method,
+                        final long compressedSize, final long size) {
+        this.archive = archive;
+        this.name = name;
+        this.dataOffset = dataOffset;
+        this.method = method;
+        this.compressedSize = compressedSize;
+        this.size = size;
+    }
+
+    public File archive() {
+        return this.archive;
+    }
+
+    public String name() {
+        return this.name;
+    }
+
+    public long dataOffset() {
+        return this.dataOffset;
+    }
+
+    public int method() {
+        return this.method;
+    }
+
+    public long compressedSize() {
+        return this.compressedSize;
+    }
+
+    public long size() {
+        return this.size;
+    }
+
+    /**
+     * Maps the given archive, so entries in it are read from the mapping instead of opening the file for
+     * each one. The mapping is dropped if the archive changes.
+     */
+    public static void map(final File archive) throws IOException {
+        try (final FileChannel channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ)) {
+            MAPPED.put(archive.getAbsoluteFile(),
+                       new Mapped(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()),
+                                  archive.lastModified(), channel.size()));
+        }
+    }
+
+    public InputStream open() throws IOException {
+        final Mapped mapped = MAPPED.get(this.archive.getAbsoluteFile());
+        if (mapped != null &&
+                mapped.modified == this.archive.lastModified() &&
+                mapped.size == this.archive.length()) {
+            final ByteBuffer buf = mapped.buffer.duplicate();
+            ((Buffer)buf).position((int)this.dataOffset);
+            ((Buffer)buf).limit((int)(this.dataOffset + this.compressedSize));
+
+            return decompress(new ByteBufferInputStream(buf));
+        }
+
+        final FileChannel channel = FileChannel.open(this.archive.toPath(), StandardOpenOption.READ);
+        channel.position(this.dataOffset);
+
+        return decompress(new BoundedInputStream(Channels.newInputStream(channel), this.compressedSize));
+    }
+
+    private InputStream decompress(final InputStream raw) throws IOException {
+        if (this.method == STORED) {
+
+            return raw;
+        }
+        if (this.method != DEFLATED) {
+            raw.close();
+            throw new IOException("Unsupported compression method " + this.method + " for " + this.name);
+        }
+
+        final Inflater inflater = new Inflater(true);
+
+        return new InflaterInputStream(raw, inflater, 8192) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                inflater.end();
+            }
+        };
+    }
+
+    /**
+     * @return a url that reads this entry when opened. Its external form identifies the entry, so can be
+     * used as a key, and can be turned back into a url with {@link #url(String)}.
+     */
+    public URL toURL() {
+        try {
+            return new URL(PROTOCOL, null, -1,
+                           encode(this.archive.getAbsolutePath()) + "!/" + encode(this.name) +
+                                   "?o=" + this.dataOffset +
+                                   "&m=" + this.method +
+                                   "&c=" + this.compressedSize +
+                                   "&s=" + this.size,
+                           HANDLER);
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static URL url(final String externalForm) throws MalformedURLException {
+        return new URL(null, externalForm, HANDLER);
+    }
+
+    static ArchiveEntry fromURL(final URL url) throws IOException {
+        final String file = url.getPath();
+        final int sep = file.indexOf("!/");
+        if (sep < 0) {
+            throw new MalformedURLException("Not an archive entry url: " + url);
+        }
+
+        final Map<String, String> params = new HashMap<>();
+        if (url.getQuery() != null) {
+            for (String each : url.getQuery().split("&")) {
+                final int eq = each.indexOf('=');
+                if (eq > 0) {
+                    params.put(each.substring(0, eq), each.substring(eq + 1));
+                }
+            }
+        }
+
+        try {
+            return new ArchiveEntry(new File(URLDecoder.decode(file.substring(0, sep), "UTF-8")),
+                                    URLDecoder.decode(file.substring(sep + 2), "UTF-8"),
+                                    Long.parseLong(params.get("o")),
+                                    Integer.parseInt(params.get("m")),
+                                    Long.parseLong(params.get("c")),
+                                    Long.parseLong(params.get("s")));
+        } catch (NumberFormatException e) {
+            throw new MalformedURLException("Not an archive entry url: " + url);
+        }
+    }
+
+    private static String encode(final String name) {
+        try {
+            return URLEncoder.encode(name, "UTF-8").replace("%2F", "/");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.archive + "!/" + this.name;
+    }
+
+    private static class BoundedInputStream extends FilterInputStream {
+        BoundedInputStream(final InputStream in, final long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (this.remaining <= 0) {
+
+                return -1;
+            }
+            final int b = super.read();
+            if (b >= 0) {
+                this.remaining--;
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (this.remaining <= 0) {
+
+                return -1;
+            }
+            final int read = super.read(b, off, (int)Math.min(len, this.remaining));
+            if (read > 0) {
+                this.remaining -= read;
+            }
+
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(Math.min(n, this.remaining));
+            this.remaining -= skipped;
+
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int)Math.min(super.available(), this.remaining);
+        }
+
+        private long remaining;
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        ByteBufferInputStream(final ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return this.buf.hasRemaining() ? this.buf.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (!this.buf.hasRemaining()) {
+
+                return -1;
+            }
+            final int count = Math.min(len, this.buf.remaining());
+            this.buf.get(b, off, count);
+
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return this.buf.remaining();
+        }
+
+        private final ByteBuffer buf;
+    }
+
+    private static class Mapped {
+        Mapped(final ByteBuffer buffer, final long modified, final long size) {
+            this.buffer = buffer;
+            this.modified = modified;
+            this.size = size;
+        }
+
+        final ByteBuffer buffer;
+        final long modified;
+        final long size;
+    }
+
+    private static class Handler extends URLStreamHandler {
+        @Override
+        protected URLConnection openConnection(final URL url) throws IOException {
+            final ArchiveEntry entry = fromURL(url);
+
+            return new URLConnection(url) {
+                @Override
+                public void connect() {
+                    this.connected = true;
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    return entry.open();
+                }
+
+                @Override
+                public long getLastModified() {
+                    return entry.archive.lastModified();
+                }
+
+                @Override
+                public long getContentLengthLong() {
+                    return entry.size;
+                }
+            };
+        }
+    }
+
+    public static final String PROTOCOL = "vdx-archive";
+    private static final URLStreamHandler HANDLER = new Handler();
+    private static final Map<File, Mapped> MAPPED = new ConcurrentHashMap<>();
+
+    private final File archive;
+    private final String name;
+    private final long dataOffset;
+    private final int method;
+    private final long compressedSize;
+    private final long size;
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Support for the on-disk caches, which are only used when the {@value #DIRECTORY_PROPERTY} system
+ * property names a directory. Cache files are keyed by the urls they were built from and their
+ * modification time and size, so a changed schema produces a new key instead of a stale hit.
+ */
+public class Caches {
+    public static final String DIRECTORY_PROPERTY = "org.projectodd.vdx.cacheDir";
+
+    /**
+     * @return the cache directory, or null if caching is disabled
+     */
+    public static Path directory() {
+        final String dir = System.getProperty(DIRECTORY_PROPERTY);
+
+        return dir == null || dir.isEmpty() ? null : Paths.get(dir);
+    }
+
+    public static String key(final List<URL> urls) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        for (URL url : urls) {
+            digest.update(url.toExternalForm().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)0);
+            digest.update(Long.toString(stamp(url)).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)0);
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        final byte[] hash = digest.digest();
+        for (int i = 0; i < 12; i++) {
+            sb.append(String.format("%02x", hash[i]));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * @return a value that changes when the content behind the url (or the archive that contains it)
+     * is modified
+     */
+    public static long stamp(final URL url) throws IOException {
+        final File file = Util.asFile(url);
+        if (file != null) {
+
+            return file.lastModified() * 31 + file.length();
+        }
+
+        final URLConnection connection = url.openConnection();
+        if (connection instanceof JarURLConnection) {
+            final File jar = Util.asFile(((JarURLConnection)connection).getJarFileURL());
+            if (jar != null) {
+
+                return jar.lastModified() * 31 + jar.length();
+            }
+        }
+
+        return connection.getLastModified() * 31 + connection.getContentLengthLong();
+    }
+
+    /**
+     * Writes the given file through a temporary file in the same directory, which is moved into place
+     * once it's complete, so another process sharing the cache never reads a partly written file.
+     */
+    public static void writeAtomically(final Path file, final IOConsumer<OutputStream> content) throws IOException {
+        final Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        final Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (final OutputStream out = Files.newOutputStream(tmp)) {
+                content.accept(out);
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @FunctionalInterface
+    public interface IOConsumer<T> {
+        void accept(T value) throws IOException;
+    }
+}
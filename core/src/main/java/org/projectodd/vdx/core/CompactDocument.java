@@ -0,0 +1,362 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+import javax.xml.namespace.QName;
+
+import org.xml.sax.Attributes;
+
+/**
+ * An array-backed document tree. Node 0 is the (valueless) root, and elements are numbered in document
+ * order. Start and end positions (and the positions of attribute names, when known) are packed into longs
+ * (see {@link #pack(int, int)}), element and attribute
+ * names are {@link SymbolTable} ids, and attribute values are ranges into a single character buffer.
+ * {@link DocElement}s are only created when a caller asks for one.
+ */
+public class CompactDocument {
+
+    public static long pack(final int line, final int col) {
+        return ((long)line << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    public static long pack(final Position position) {
+        return pack(position.line, position.col);
+    }
+
+    public static Position unpack(final long position) {
+        return new Position((int)(position >> 32), (int)position);
+    }
+
+    public int root() {
+        return ROOT;
+    }
+
+    public int nodeCount() {
+        return this.nodeCount;
+    }
+
+    public int parent(final int node) {
+        return this.parent[node];
+    }
+
+    public int firstChild(final int node) {
+        return this.firstChild[node];
+    }
+
+    public int nextSibling(final int node) {
+        return this.nextSibling[node];
+    }
+
+    public SymbolTable symbols() {
+        return this.symbols;
+    }
+
+    public QName qname(final int node) {
+        return this.symbols.qname(this.name[node]);
+    }
+
+    /**
+     * @return the symbol id of the given name, or -1 if it isn't known
+     */
+    public int nameId(final QName name) {
+        return this.symbols.findQNameId(name);
+    }
+
+    public int nameIdOf(final int node) {
+        return this.name[node];
+    }
+
+    public long start(final int node) {
+        return this.start[node];
+    }
+
+    public long end(final int node) {
+        return this.end[node];
+    }
+
+    public boolean encloses(final int node, final long position) {
+        return this.start[node] <= position &&
+                this.end[node] >= position;
+    }
+
+    public String attribute(final int node, final String name) {
+        final int nameId = this.symbols.findNameId(name);
+        for (int attr = this.attributeStart[node]; attr < this.attributeStart[node + 1]; attr++) {
+            if (this.attributeName[attr] == nameId) {
+
+                return attributeValue(attr);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return where the given attribute's name starts, or null if the element doesn't have it, or the
+     * document was parsed without attribute positions
+     */
+    public Position attributePosition(final int node, final String name) {
+        final int nameId = this.symbols.findNameId(name);
+        for (int attr = this.attributeStart[node]; attr < this.attributeStart[node + 1]; attr++) {
+            if (this.attributeName[attr] == nameId) {
+
+                return this.attributePosition[attr] == UNSET ? null : unpack(this.attributePosition[attr]);
+            }
+        }
+
+        return null;
+    }
+
+    public DocElement element(final int node) {
+        final Map<String, String> attrs = new HashMap<>();
+        for (int attr = this.attributeStart[node]; attr < this.attributeStart[node + 1]; attr++) {
+            attrs.put(this.symbols.name(this.attributeName[attr]), attributeValue(attr));
+        }
+
+        return new DocElement(qname(node), attrs)
+                .startPosition(unpack(this.start[node]))
+                .endPosition(unpack(this.end[node]));
+    }
+
+    public List<DocElement> path(final int node, final boolean includeNode) {
+        int depth = 0;
+        for (int n = includeNode ? node : this.parent[node]; n != ROOT; n = this.parent[n]) {
+            depth++;
+        }
+
+        final DocElement[] path = new DocElement[depth];
+        int idx = depth - 1;
+        for (int n = includeNode ? node : this.parent[node]; n != ROOT; n = this.parent[n]) {
+            path[idx--] = element(n);
+        }
+
+        return new ArrayList<>(Arrays.asList(path));
+    }
+
+    /**
+     * Equivalent to {@link Tree#pathsToValue(boolean, java.util.function.Function)}, with the predicate
+     * applied to node ids instead of values.
+     */
+    public List<List<DocElement>> pathsTo(final boolean includeValue, final IntPredicate pred) {
+        final List<List<DocElement>> paths = new ArrayList<>();
+        for (int node = ROOT + 1; node < this.nodeCount; node++) {
+            if (pred.test(node)) {
+                paths.add(path(node, includeValue));
+            }
+        }
+
+        return paths;
+    }
+
+    /**
+     * @return the first node (in document order) that matches the given predicate, or -1
+     */
+    public int find(final IntPredicate pred) {
+        for (int node = ROOT + 1; node < this.nodeCount; node++) {
+            if (pred.test(node)) {
+
+                return node;
+            }
+        }
+
+        return NONE;
+    }
+
+    /**
+     * @return the node the given element was materialized from, or -1
+     */
+    public int nodeFor(final DocElement element) {
+        final int nameId = nameId(element.qname());
+        final long start = pack(element.startPosition());
+        final long end = pack(element.endPosition());
+
+        return find(n -> this.name[n] == nameId &&
+                this.start[n] == start &&
+                this.end[n] == end);
+    }
+
+    public Tree<DocElement> toTree() {
+        final Tree<DocElement> tree = new Tree<>();
+        addChildren(tree, ROOT);
+
+        return tree;
+    }
+
+    private void addChildren(final Tree<DocElement> tree, final int node) {
+        for (int child = this.firstChild[node]; child != NONE; child = this.nextSibling[child]) {
+            addChildren(tree.addChild(element(child)), child);
+        }
+    }
+
+    private String attributeValue(final int attr) {
+        return new String(this.values, this.valueStart[attr], this.valueStart[attr + 1] - this.valueStart[attr]);
+    }
+
+    @Override
+    public String toString() {
+        return "<CompactDocument elements=" + (this.nodeCount - 1) +
+                ", attributes=" + (this.attributeName.length) + ">";
+    }
+
+    private CompactDocument(final Builder builder) {
+        final int count = builder.count;
+        final int attrCount = builder.attributeCount;
+        this.symbols = builder.symbols;
+        this.nodeCount = count;
+        this.parent = Arrays.copyOf(builder.parent, count);
+        this.firstChild = Arrays.copyOf(builder.firstChild, count);
+        this.nextSibling = Arrays.copyOf(builder.nextSibling, count);
+        this.name = Arrays.copyOf(builder.name, count);
+        this.start = Arrays.copyOf(builder.start, count);
+        this.end = Arrays.copyOf(builder.end, count);
+        this.attributeStart = Arrays.copyOf(builder.attributeStart, count + 1);
+        this.attributeStart[count] = attrCount;
+        this.attributeName = Arrays.copyOf(builder.attributeName, attrCount);
+        this.attributePosition = Arrays.copyOf(builder.attributePosition, attrCount);
+        this.valueStart = Arrays.copyOf(builder.valueStart, attrCount + 1);
+        this.valueStart[attrCount] = builder.valueLength;
+        this.values = Arrays.copyOf(builder.values, builder.valueLength);
+    }
+
+    static class Builder {
+        Builder(final SymbolTable symbols) {
+            this.symbols = symbols;
+            addNode(NONE, NONE, UNSET);
+            this.current = ROOT;
+        }
+
+        void startElement(final int qnameId, final Attributes attributes, final long startPosition) {
+            startElement(qnameId, startPosition);
+            for (int i = 0; i < attributes.getLength(); i++) {
+                final String value = attributes.getValue(i);
+                attribute(this.symbols.nameId(attributes.getQName(i)), value.toCharArray(), 0, value.length(), UNSET);
+            }
+        }
+
+        /**
+         * Starts an element, whose attributes are then added with {@link #attribute}.
+         */
+        void startElement(final int qnameId, final long startPosition) {
+            final int node = addNode(this.current, qnameId, startPosition);
+            if (this.lastChild[this.current] == NONE) {
+                this.firstChild[this.current] = node;
+            } else {
+                this.nextSibling[this.lastChild[this.current]] = node;
+            }
+            this.lastChild[this.current] = node;
+            this.current = node;
+        }
+
+        void attribute(final int nameId, final char[] value, final int start, final int length, final long position) {
+            if (this.attributeCount == this.attributeName.length) {
+                final int size = this.attributeName.length * 2;
+                this.attributeName = Arrays.copyOf(this.attributeName, size);
+                this.attributePosition = Arrays.copyOf(this.attributePosition, size);
+                this.valueStart = Arrays.copyOf(this.valueStart, size);
+            }
+            this.attributeName[this.attributeCount] = nameId;
+            this.attributePosition[this.attributeCount] = position;
+            this.valueStart[this.attributeCount] = this.valueLength;
+            this.attributeCount++;
+
+            if (this.valueLength + length > this.values.length) {
+                this.values = Arrays.copyOf(this.values, Math.max(this.values.length * 2, this.valueLength + length));
+            }
+            System.arraycopy(value, start, this.values, this.valueLength, length);
+            this.valueLength += length;
+        }
+
+        void endElement(final long endPosition) {
+            this.end[this.current] = endPosition;
+            this.current = this.parent[this.current];
+        }
+
+        CompactDocument build() {
+            return new CompactDocument(this);
+        }
+
+        private int addNode(final int parentNode, final int nameId, final long startPosition) {
+            if (this.count == this.parent.length) {
+                final int size = this.parent.length * 2;
+                this.parent = Arrays.copyOf(this.parent, size);
+                this.firstChild = Arrays.copyOf(this.firstChild, size);
+                this.lastChild = Arrays.copyOf(this.lastChild, size);
+                this.nextSibling = Arrays.copyOf(this.nextSibling, size);
+                this.name = Arrays.copyOf(this.name, size);
+                this.start = Arrays.copyOf(this.start, size);
+                this.end = Arrays.copyOf(this.end, size);
+                this.attributeStart = Arrays.copyOf(this.attributeStart, size);
+            }
+            final int node = this.count++;
+            this.parent[node] = parentNode;
+            this.firstChild[node] = NONE;
+            this.lastChild[node] = NONE;
+            this.nextSibling[node] = NONE;
+            this.name[node] = nameId;
+            this.start[node] = startPosition;
+            this.end[node] = UNSET;
+            this.attributeStart[node] = this.attributeCount;
+
+            return node;
+        }
+
+        private final SymbolTable symbols;
+        private int current;
+        private int count = 0;
+        private int[] parent = new int[INITIAL_SIZE];
+        private int[] firstChild = new int[INITIAL_SIZE];
+        private int[] lastChild = new int[INITIAL_SIZE];
+        private int[] nextSibling = new int[INITIAL_SIZE];
+        private int[] name = new int[INITIAL_SIZE];
+        private long[] start = new long[INITIAL_SIZE];
+        private long[] end = new long[INITIAL_SIZE];
+        private int[] attributeStart = new int[INITIAL_SIZE];
+        private int attributeCount = 0;
+        private int[] attributeName = new int[INITIAL_SIZE];
+        private long[] attributePosition = new long[INITIAL_SIZE];
+        private int[] valueStart = new int[INITIAL_SIZE];
+        private int valueLength = 0;
+        private char[] values = new char[INITIAL_SIZE * 8];
+
+        private static final int INITIAL_SIZE = 64;
+    }
+
+    public static final int NONE = -1;
+    private static final int ROOT = 0;
+    private static final long UNSET = pack(-1, -1);
+
+    private final SymbolTable symbols;
+    private final int nodeCount;
+    private final int[] parent;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] name;
+    private final long[] start;
+    private final long[] end;
+    private final int[] attributeStart;
+    private final int[] attributeName;
+    private final long[] attributePosition;
+    private final int[] valueStart;
+    private final char[] values;
+}
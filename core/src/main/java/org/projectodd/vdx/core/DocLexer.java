@@ -0,0 +1,875 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * A streaming lexer for the XML that configuration files are written in, reporting exact positions:
+ * where each start and end tag begins and ends, and where each attribute's name and value begin, as
+ * both char offsets into the document and packed line/column positions (see {@link CompactDocument#pack}).
+ * Columns are 1-based, and a tag's end is the position just past its closing '&gt;'.
+ *
+ * Only start and end tags are reported; text, comments, CDATA sections and processing instructions are
+ * checked and skipped. The document is read through a window that only has to hold the current tag, and
+ * nothing is allocated per tag except names missing from a small cache and attribute values that need
+ * normalizing, and the window, the cache and the scratch buffer are handed on to the next lexer opened on
+ * the same thread once this one is closed. Names are checked loosely. Anything it doesn't handle - a
+ * DOCTYPE (and so any entity beyond the predefined ones), or a document that isn't well formed - stops it
+ * with a {@link LexException}, and the caller should fall back to a full parser, which will report the
+ * problem properly.
+ */
+public class DocLexer implements Closeable {
+    public static final int START_ELEMENT = 1;
+    public static final int END_ELEMENT = 2;
+    public static final int END_DOCUMENT = 3;
+
+    public DocLexer(final Reader reader) {
+        this.reader = reader;
+        this.chars = take(SPARE_WINDOW, () -> new char[INITIAL_WINDOW]);
+        this.names = take(SPARE_NAMES, () -> new String[512]);
+        this.scratch = take(SPARE_SCRATCH, () -> new char[256]);
+    }
+
+    /**
+     * Opens the given document, decoded in the charset {@link ValidationContext#detectCharset} finds.
+     * Bytes that aren't valid in that charset are an error, as they would be to a parser.
+     */
+    public static DocLexer forDocument(final URL document) throws IOException {
+        return new DocLexer(new InputStreamReader(document.openStream(),
+                                                  ValidationContext.detectCharset(document).newDecoder()
+                                                          .onMalformedInput(CodingErrorAction.REPORT)
+                                                          .onUnmappableCharacter(CodingErrorAction.REPORT)));
+    }
+
+    /**
+     * Advances to the next tag. An empty element tag is reported as a start element followed by an end
+     * element with the same span. Offsets into {@link #chars()} from the previous tag are invalid after
+     * this is called.
+     *
+     * @return {@link #START_ELEMENT}, {@link #END_ELEMENT} or {@link #END_DOCUMENT}
+     */
+    public int next() throws IOException, LexException {
+        if (this.pendingEnd) {
+            this.pendingEnd = false;
+            this.attributeCount = 0;
+
+            return END_ELEMENT;
+        }
+
+        if (!this.started) {
+            this.started = true;
+            if (available(1) && this.chars[0] == '\uFEFF') {
+                this.pos = 1;
+                this.lineStart = 1;
+                this.documentStart = 1;
+            }
+        }
+
+        while (true) {
+            this.mark = this.pos;
+            if (!available(1)) {
+                break;
+            }
+            if (this.chars[this.pos] != '<') {
+                text();
+            } else if (!available(2)) {
+                throw error("unterminated markup");
+            } else {
+                switch (this.chars[this.pos + 1]) {
+                    case '/':
+                        endTag();
+
+                        return END_ELEMENT;
+                    case '?':
+                        processingInstruction();
+                        break;
+                    case '!':
+                        declaration();
+                        break;
+                    default:
+                        startTag();
+
+                        return START_ELEMENT;
+                }
+            }
+        }
+
+        if (!this.seenRoot || this.depth > 0) {
+            throw error("unexpected end of document");
+        }
+
+        return END_DOCUMENT;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!this.closed) {
+            this.closed = true;
+            // leave the buffers for the next lexer on this thread, unless a huge tag has grown them
+            if (this.chars.length <= MAX_SPARE_WINDOW) {
+                SPARE_WINDOW.set(this.chars);
+            }
+            SPARE_NAMES.set(this.names);
+            if (this.scratch.length <= MAX_SPARE_WINDOW) {
+                SPARE_SCRATCH.set(this.scratch);
+            }
+        }
+        this.reader.close();
+    }
+
+    /**
+     * @return the window the current tag's offsets index into - see {@link #nameStart()}
+     */
+    public char[] chars() {
+        return this.chars;
+    }
+
+    /**
+     * @return the name of the current tag, from a small cache, so repeated names are usually the same
+     * instance
+     */
+    public String name() {
+        return name(this.nameStart, this.nameEnd);
+    }
+
+    public int nameStart() {
+        return this.nameStart;
+    }
+
+    public int nameEnd() {
+        return this.nameEnd;
+    }
+
+    /**
+     * @return the offset in the document of the current tag's '&lt;'
+     */
+    public long startOffset() {
+        return this.base + this.tagStart;
+    }
+
+    /**
+     * @return the offset in the document just past the current tag's '&gt;'
+     */
+    public long endOffset() {
+        return this.base + this.tagEnd;
+    }
+
+    public long start() {
+        return this.startPosition;
+    }
+
+    public long end() {
+        return this.endPosition;
+    }
+
+    public boolean isEmptyElement() {
+        return this.empty;
+    }
+
+    public int attributeCount() {
+        return this.attributeCount;
+    }
+
+    public String attributeName(final int idx) {
+        return name(this.attributeNameStart[idx], this.attributeNameEnd[idx]);
+    }
+
+    /**
+     * @return the offset in the document of the attribute's name
+     */
+    public long attributeNameOffset(final int idx) {
+        return this.base + this.attributeNameStart[idx];
+    }
+
+    public long attributeNamePosition(final int idx) {
+        return this.attributeNamePosition[idx];
+    }
+
+    /**
+     * @return the offset in the document of the attribute's raw value, just inside the quote
+     */
+    public long attributeValueOffset(final int idx) {
+        return this.base + this.attributeValueStart[idx];
+    }
+
+    /**
+     * @return the offset in the document of the attribute's closing quote
+     */
+    public long attributeValueEndOffset(final int idx) {
+        return this.base + this.attributeValueEnd[idx];
+    }
+
+    public long attributeValuePosition(final int idx) {
+        return this.attributeValuePosition[idx];
+    }
+
+    /**
+     * The attribute's value, with references replaced and whitespace normalized, is the
+     * {@link #attributeValueLength} chars from {@link #attributeValueStart} in this array.
+     */
+    public char[] attributeValueChars(final int idx) {
+        return this.normalizedStart[idx] < 0 ? this.chars : this.scratch;
+    }
+
+    public int attributeValueStart(final int idx) {
+        final int start = this.normalizedStart[idx];
+
+        return start < 0 ? this.attributeValueStart[idx] : start;
+    }
+
+    public int attributeValueLength(final int idx) {
+        return this.normalizedStart[idx] < 0 ?
+                this.attributeValueEnd[idx] - this.attributeValueStart[idx] :
+                this.normalizedLength[idx];
+    }
+
+    public String attributeValue(final int idx) {
+        return new String(attributeValueChars(idx), attributeValueStart(idx), attributeValueLength(idx));
+    }
+
+    private void startTag() throws IOException, LexException {
+        if (this.depth == 0 && this.seenRoot) {
+            throw error("content after the root element");
+        }
+        this.tagStart = this.pos;
+        this.startPosition = position(this.pos);
+        this.pos++;
+        this.nameStart = this.pos;
+        scanName();
+        this.nameEnd = this.pos;
+        this.attributeCount = 0;
+        this.scratchLength = 0;
+
+        while (true) {
+            final boolean space = skipSpace();
+            if (!available(1)) {
+                throw error("unterminated start tag");
+            }
+            final char c = this.chars[this.pos];
+            if (c == '>') {
+                this.pos++;
+                this.empty = false;
+                break;
+            } else if (c == '/') {
+                if (!available(2) || this.chars[this.pos + 1] != '>') {
+                    throw error("expected '>'");
+                }
+                this.pos += 2;
+                this.empty = true;
+                break;
+            } else if (!space) {
+                throw error("expected whitespace");
+            }
+            attribute();
+        }
+
+        this.tagEnd = this.pos;
+        this.endPosition = position(this.pos);
+        this.seenRoot = true;
+        if (this.empty) {
+            this.pendingEnd = true;
+        } else {
+            if (this.depth == this.openNames.length) {
+                this.openNames = Arrays.copyOf(this.openNames, this.depth * 2);
+            }
+            this.openNames[this.depth++] = name();
+        }
+    }
+
+    private void attribute() throws IOException, LexException {
+        final int idx = this.attributeCount;
+        if (idx == this.attributeNameStart.length) {
+            growAttributes();
+        }
+        this.attributeNameStart[idx] = this.pos;
+        this.attributeNamePosition[idx] = position(this.pos);
+        scanName();
+        this.attributeNameEnd[idx] = this.pos;
+
+        skipSpace();
+        expect('=');
+        this.pos++;
+        skipSpace();
+        if (!available(1)) {
+            throw error("unterminated start tag");
+        }
+        final char quote = this.chars[this.pos];
+        if (quote != '"' && quote != '\'') {
+            throw error("expected a quote");
+        }
+        this.pos++;
+        this.attributeValueStart[idx] = this.pos;
+        this.attributeValuePosition[idx] = position(this.pos);
+        this.normalizedStart[idx] = -1;
+
+        while (true) {
+            if (!available(1)) {
+                throw error("unterminated attribute value");
+            }
+            final char c = this.chars[this.pos];
+            if (c == quote) {
+                break;
+            }
+            if (c == '<') {
+                throw error("'<' in an attribute value");
+            }
+            if (c == '&' || c == '\t' || c == '\n' || c == '\r') {
+                if (this.normalizedStart[idx] < 0) {
+                    // copy what's been seen so far, and build the rest of the value in the scratch buffer
+                    this.normalizedStart[idx] = this.scratchLength;
+                    for (int i = this.attributeValueStart[idx]; i < this.pos; i++) {
+                        append(this.chars[i]);
+                    }
+                }
+                if (c == '&') {
+                    final int codePoint = reference();
+                    if (Character.isBmpCodePoint(codePoint)) {
+                        append((char)codePoint);
+                    } else {
+                        append(Character.highSurrogate(codePoint));
+                        append(Character.lowSurrogate(codePoint));
+                    }
+                    continue;
+                }
+                append(' ');
+                if (c == '\r' && available(2) && this.chars[this.pos + 1] == '\n') {
+                    // a CRLF is a single line end
+                    this.pos++;
+                }
+                newline(this.pos + 1);
+            } else {
+                checkChar(c);
+                if (this.normalizedStart[idx] >= 0) {
+                    append(c);
+                }
+            }
+            this.pos++;
+        }
+
+        this.attributeValueEnd[idx] = this.pos;
+        if (this.normalizedStart[idx] >= 0) {
+            this.normalizedLength[idx] = this.scratchLength - this.normalizedStart[idx];
+        }
+        this.pos++;
+
+        for (int i = 0; i < idx; i++) {
+            if (sameChars(this.attributeNameStart[i], this.attributeNameEnd[i],
+                          this.attributeNameStart[idx], this.attributeNameEnd[idx])) {
+                throw error("duplicate attribute");
+            }
+        }
+        this.attributeCount++;
+    }
+
+    private void endTag() throws IOException, LexException {
+        this.tagStart = this.pos;
+        this.startPosition = position(this.pos);
+        this.pos += 2;
+        this.nameStart = this.pos;
+        scanName();
+        this.nameEnd = this.pos;
+        skipSpace();
+        expect('>');
+        this.pos++;
+        this.tagEnd = this.pos;
+        this.endPosition = position(this.pos);
+        this.attributeCount = 0;
+        this.empty = false;
+
+        if (this.depth == 0) {
+            throw error("unexpected end tag");
+        }
+        final String open = this.openNames[--this.depth];
+        if (!sameChars(open, this.nameStart, this.nameEnd)) {
+            throw error("mismatched end tag");
+        }
+    }
+
+    private void text() throws IOException, LexException {
+        final boolean outside = this.depth == 0;
+        // the run of ']' just before the current char, to catch "]]>"
+        int brackets = 0;
+        while (true) {
+            if (this.pos >= this.length) {
+                // nothing before the current char is needed
+                this.mark = this.pos;
+                if (!available(1)) {
+
+                    return;
+                }
+            }
+            final char c = this.chars[this.pos];
+            if (c > '>' && c < '\uFFFE') {
+                if (outside) {
+                    throw error("content outside the root element");
+                }
+                brackets = c == ']' ? brackets + 1 : 0;
+            } else if (c == '<') {
+
+                return;
+            } else if (c == '&') {
+                if (outside) {
+                    throw error("content outside the root element");
+                }
+                this.mark = this.pos;
+                reference();
+                brackets = 0;
+                continue;
+            } else {
+                if (c == '\n') {
+                    newline(this.pos + 1);
+                } else if (c == '\r') {
+                    if (!available(2) || this.chars[this.pos + 1] != '\n') {
+                        newline(this.pos + 1);
+                    }
+                } else if (c != ' ' && c != '\t') {
+                    checkChar(c);
+                    if (outside) {
+                        throw error("content outside the root element");
+                    }
+                    if (c == '>' && brackets >= 2) {
+                        throw error("']]>' in text");
+                    }
+                }
+                brackets = 0;
+            }
+            this.pos++;
+        }
+    }
+
+    /**
+     * Consumes a character or predefined entity reference.
+     *
+     * @return the character it refers to
+     */
+    private int reference() throws IOException, LexException {
+        // offsets are relative to the '&', since reading ahead can move the window
+        int len = 1;
+        while (true) {
+            if (!available(len + 1) || len > 12) {
+                throw error("unterminated reference");
+            }
+            if (this.chars[this.pos + len] == ';') {
+                break;
+            }
+            len++;
+        }
+        if (len == 1) {
+            throw error("empty reference");
+        }
+        final int start = this.pos + 1;
+        final int end = this.pos + len;
+        this.pos = end + 1;
+
+        if (this.chars[start] == '#') {
+            final boolean hex = end > start + 1 && this.chars[start + 1] == 'x';
+            final int digits = hex ? start + 2 : start + 1;
+            if (digits == end) {
+                throw error("empty character reference");
+            }
+            int codePoint = 0;
+            for (int i = digits; i < end; i++) {
+                final int digit = Character.digit(this.chars[i], hex ? 16 : 10);
+                if (digit < 0 || codePoint > Character.MAX_CODE_POINT) {
+                    throw error("invalid character reference");
+                }
+                codePoint = codePoint * (hex ? 16 : 10) + digit;
+            }
+            if (!(codePoint == 0x9 || codePoint == 0xA || codePoint == 0xD ||
+                    (codePoint >= 0x20 && codePoint <= 0xD7FF) ||
+                    (codePoint >= 0xE000 && codePoint <= 0xFFFD) ||
+                    (codePoint >= 0x10000 && codePoint <= Character.MAX_CODE_POINT))) {
+                throw error("invalid character reference");
+            }
+
+            return codePoint;
+        }
+
+        if (sameChars("lt", start, end)) {
+            return '<';
+        } else if (sameChars("gt", start, end)) {
+            return '>';
+        } else if (sameChars("amp", start, end)) {
+            return '&';
+        } else if (sameChars("quot", start, end)) {
+            return '"';
+        } else if (sameChars("apos", start, end)) {
+            return '\'';
+        }
+
+        throw error("undeclared entity");
+    }
+
+    private void processingInstruction() throws IOException, LexException {
+        this.tagStart = this.pos;
+        this.pos += 2;
+        this.nameStart = this.pos;
+        scanName();
+        this.nameEnd = this.pos;
+        if (this.nameEnd - this.nameStart == 3 &&
+                new String(this.chars, this.nameStart, 3).equalsIgnoreCase("xml") &&
+                this.base + this.tagStart != this.documentStart) {
+            throw error("misplaced XML declaration");
+        }
+        skipPast("?>");
+    }
+
+    private void declaration() throws IOException, LexException {
+        if (startsWith("<!--")) {
+            this.pos += 4;
+            skipPast("--");
+            if (!available(1) || this.chars[this.pos] != '>') {
+                throw error("'--' in a comment");
+            }
+            this.pos++;
+        } else if (startsWith("<![CDATA[")) {
+            if (this.depth == 0) {
+                throw error("CDATA outside the root element");
+            }
+            this.pos += 9;
+            skipPast("]]>");
+        } else {
+            // DOCTYPE, with its internal subset and entities, is left to a real parser
+            throw error("unsupported declaration");
+        }
+    }
+
+    /**
+     * Moves past the next occurrence of the terminator, keeping track of lines.
+     */
+    private void skipPast(final String terminator) throws IOException, LexException {
+        final char first = terminator.charAt(0);
+        while (true) {
+            this.mark = this.pos;
+            if (!available(1)) {
+                throw error("expected '" + terminator + "'");
+            }
+            final char c = this.chars[this.pos];
+            if (c == first && startsWith(terminator)) {
+                this.pos += terminator.length();
+
+                return;
+            }
+            if (c == '\n') {
+                newline(this.pos + 1);
+            } else if (c == '\r') {
+                if (!available(2) || this.chars[this.pos + 1] != '\n') {
+                    newline(this.pos + 1);
+                }
+            } else if (c < ' ' && c != '\t') {
+                checkChar(c);
+            }
+            this.pos++;
+        }
+    }
+
+    private boolean startsWith(final String s) throws IOException {
+        if (!available(s.length())) {
+
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (this.chars[this.pos + i] != s.charAt(i)) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void scanName() throws IOException, LexException {
+        if (!available(1) || !isNameStart(this.chars[this.pos])) {
+            throw error("expected a name");
+        }
+        this.pos++;
+        while (available(1) && isNameChar(this.chars[this.pos])) {
+            this.pos++;
+        }
+    }
+
+    private static boolean isNameStart(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':' ||
+                (c >= '\u00C0' && c != '\u00D7' && c != '\u00F7' && c < '\uFFFE');
+    }
+
+    private static boolean isNameChar(final char c) {
+        return isNameStart(c) || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '\u00B7';
+    }
+
+    /**
+     * @return true if any whitespace was skipped
+     */
+    private boolean skipSpace() throws IOException {
+        boolean skipped = false;
+        while (available(1)) {
+            final char c = this.chars[this.pos];
+            if (c == '\n') {
+                newline(this.pos + 1);
+            } else if (c == '\r') {
+                if (!available(2) || this.chars[this.pos + 1] != '\n') {
+                    newline(this.pos + 1);
+                }
+            } else if (c != ' ' && c != '\t') {
+                break;
+            }
+            skipped = true;
+            this.pos++;
+        }
+
+        return skipped;
+    }
+
+    private void expect(final char c) throws IOException, LexException {
+        if (!available(1) || this.chars[this.pos] != c) {
+            throw error("expected '" + c + "'");
+        }
+    }
+
+    private void checkChar(final char c) throws LexException {
+        if ((c < ' ' && c != '\t' && c != '\n' && c != '\r') || c >= '\uFFFE') {
+            throw error("invalid character");
+        }
+    }
+
+    /**
+     * @return true if the window holds at least the given number of chars from the current one, reading
+     * more if it has to
+     */
+    private boolean available(final int count) throws IOException {
+        while (this.pos + count > this.length) {
+            if (!fill()) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads more of the document into the window, first dropping everything before the mark, or growing
+     * the window if there's nothing to drop.
+     */
+    private boolean fill() throws IOException {
+        if (this.eof) {
+
+            return false;
+        }
+
+        final int drop = this.mark;
+        if (drop > 0) {
+            System.arraycopy(this.chars, drop, this.chars, 0, this.length - drop);
+            shift(drop);
+        } else if (this.length == this.chars.length) {
+            this.chars = Arrays.copyOf(this.chars, this.chars.length * 2);
+        }
+
+        final int n = this.reader.read(this.chars, this.length, this.chars.length - this.length);
+        if (n < 0) {
+            this.eof = true;
+
+            return false;
+        }
+        this.length += n;
+
+        return true;
+    }
+
+    private void shift(final int drop) {
+        this.base += drop;
+        this.length -= drop;
+        this.pos -= drop;
+        this.mark -= drop;
+        this.tagStart -= drop;
+        this.tagEnd -= drop;
+        this.nameStart -= drop;
+        this.nameEnd -= drop;
+        // including the attribute being read
+        for (int i = 0; i <= this.attributeCount && i < this.attributeNameStart.length; i++) {
+            this.attributeNameStart[i] -= drop;
+            this.attributeNameEnd[i] -= drop;
+            this.attributeValueStart[i] -= drop;
+            this.attributeValueEnd[i] -= drop;
+        }
+    }
+
+    private void newline(final int nextLineStart) {
+        this.line++;
+        this.lineStart = this.base + nextLineStart;
+    }
+
+    private long position(final int idx) {
+        return CompactDocument.pack(this.line, (int)(this.base + idx - this.lineStart + 1));
+    }
+
+    private boolean sameChars(final int aStart, final int aEnd, final int bStart, final int bEnd) {
+        if (aEnd - aStart != bEnd - bStart) {
+
+            return false;
+        }
+        for (int i = 0; i < aEnd - aStart; i++) {
+            if (this.chars[aStart + i] != this.chars[bStart + i]) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean sameChars(final String s, final int start, final int end) {
+        if (s.length() != end - start) {
+
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) != this.chars[start + i]) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private String name(final int start, final int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + this.chars[i];
+        }
+        final int slot = (hash ^ (hash >>> 16)) & (this.names.length - 1);
+        final String cached = this.names[slot];
+        if (cached != null && sameChars(cached, start, end)) {
+
+            return cached;
+        }
+
+        final String name = new String(this.chars, start, end - start);
+        this.names[slot] = name;
+
+        return name;
+    }
+
+    private void append(final char c) {
+        if (this.scratchLength == this.scratch.length) {
+            this.scratch = Arrays.copyOf(this.scratch, this.scratch.length * 2);
+        }
+        this.scratch[this.scratchLength++] = c;
+    }
+
+    private void growAttributes() {
+        final int size = this.attributeNameStart.length * 2;
+        this.attributeNameStart = Arrays.copyOf(this.attributeNameStart, size);
+        this.attributeNameEnd = Arrays.copyOf(this.attributeNameEnd, size);
+        this.attributeNamePosition = Arrays.copyOf(this.attributeNamePosition, size);
+        this.attributeValueStart = Arrays.copyOf(this.attributeValueStart, size);
+        this.attributeValueEnd = Arrays.copyOf(this.attributeValueEnd, size);
+        this.attributeValuePosition = Arrays.copyOf(this.attributeValuePosition, size);
+        this.normalizedStart = Arrays.copyOf(this.normalizedStart, size);
+        this.normalizedLength = Arrays.copyOf(this.normalizedLength, size);
+    }
+
+    private static <T> T take(final ThreadLocal<T> spare, final Supplier<T> fresh) {
+        final T buffer = spare.get();
+        if (buffer == null) {
+
+            return fresh.get();
+        }
+        // so a second lexer open on this thread doesn't share it
+        spare.set(null);
+
+        return buffer;
+    }
+
+    private LexException error(final String message) {
+        return new LexException(message, position(Math.min(this.pos, this.length)));
+    }
+
+    public static class LexException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        LexException(final String message, final long position) {
+            super(message + " at " + (int)(position >> 32) + ":" + (int)position);
+            this.position = position;
+        }
+
+        public long position() {
+            return this.position;
+        }
+
+        private final long position;
+    }
+
+    private static final int INITIAL_WINDOW = 8192;
+    private static final int INITIAL_ATTRIBUTES = 16;
+    private static final int MAX_SPARE_WINDOW = 65536;
+
+    // buffers left by the last lexer closed on each thread, so walking a document doesn't allocate them
+    // again - only JDK types, so they don't pin this class's loader
+    private static final ThreadLocal<char[]> SPARE_WINDOW = new ThreadLocal<>();
+    private static final ThreadLocal<String[]> SPARE_NAMES = new ThreadLocal<>();
+    private static final ThreadLocal<char[]> SPARE_SCRATCH = new ThreadLocal<>();
+
+    private final Reader reader;
+    private char[] chars;
+    private int length = 0;
+    private boolean eof = false;
+    private boolean closed = false;
+    private boolean started = false;
+    // the document offset of the window's first char
+    private long base = 0;
+    private int pos = 0;
+    // the first char the window has to keep
+    private int mark = 0;
+    private int line = 1;
+    private long lineStart = 0;
+    private long documentStart = 0;
+    private int depth = 0;
+    private boolean seenRoot = false;
+    private boolean pendingEnd = false;
+    private String[] openNames = new String[32];
+    private final String[] names;
+
+    private int tagStart;
+    private int tagEnd;
+    private long startPosition;
+    private long endPosition;
+    private int nameStart;
+    private int nameEnd;
+    private boolean empty;
+
+    private int attributeCount = 0;
+    private int[] attributeNameStart = new int[INITIAL_ATTRIBUTES];
+    private int[] attributeNameEnd = new int[INITIAL_ATTRIBUTES];
+    private long[] attributeNamePosition = new long[INITIAL_ATTRIBUTES];
+    private int[] attributeValueStart = new int[INITIAL_ATTRIBUTES];
+    private int[] attributeValueEnd = new int[INITIAL_ATTRIBUTES];
+    private long[] attributeValuePosition = new long[INITIAL_ATTRIBUTES];
+    private int[] normalizedStart = new int[INITIAL_ATTRIBUTES];
+    private int[] normalizedLength = new int[INITIAL_ATTRIBUTES];
+    private char[] scratch;
+    private int scratchLength = 0;
+}
@@ -20,9 +20,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Deque;
 
-import javax.xml.namespace.QName;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
@@ -39,108 +39,160 @@ import org.xml.sax.helpers.DefaultHandler;
 public class DocWalker {
 
     public DocWalker(final URL document) {
-        this.document = document;
+        this(document, SymbolTable.DEFAULT);
     }
 
-    public Tree<DocElement> walk() {
+    public DocWalker(final URL document, final SymbolTable symbols) {
+        this.url = document;
+        this.symbols = symbols;
+    }
+
+    public synchronized Tree<DocElement> walk() {
         if (this.tree == null) {
-            this.tree = new Tree<>();
-            final Deque<Tree<DocElement>> stack = new ArrayDeque<>();
-            stack.push(tree);
-
-            final ContentHandler handler = new DefaultHandler() {
-                @Override
-                public void setDocumentLocator(Locator locator) {
-                    this.locator = locator;
-                }
+            this.tree = document().toTree();
+        }
 
-                @Override
-                public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
-                    final String namespace = attributes.getValue("xmlns");
-                    if (namespace != null) {
-                        nsStack.push(namespace);
-                    } else {
-                        nsStack.push(nsStack.peek());
-                    }
-                    stack.push(stack.peek().addChild(new DocElement(qname(qName), attributes)
-                                                             .startPosition(lastPosition)));
-                }
+        return this.tree;
+    }
 
-                @Override
-                public void endElement(String uri, String localName, String qName) throws SAXException {
-                    final Position pos = position();
-                    stack.peek().value().endPosition(pos);
-                    storePosition(pos);
-                    stack.pop();
-                    nsStack.pop();
-                }
+    public synchronized CompactDocument document() {
+        if (this.document == null) {
+            try {
+                this.document = lex();
+            } catch (IOException | DocLexer.LexException ignored) {
+                // the lexer only takes well formed documents without a DTD, so let a parser handle (and
+                // report) anything else
+                this.document = parse();
+            }
+        }
 
-                @Override
-                public void characters(char[] ch, int start, int length) throws SAXException {
-                    storePosition(position());
-                }
+        return this.document;
+    }
 
-                @Override
-                public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
-                    storePosition(position());
-                }
+    public synchronized boolean valid() {
+        document();
 
-                private void storePosition(final Position current) {
-                    if (current.line > lastPosition.line ||
-                            (current.line == lastPosition.line &&
-                                    current.col > lastPosition.col)) {
-                        this.lastPosition = current;
-                    }
+        return this.validationFailure == null;
+    }
 
-                }
+    public synchronized SAXParseException validationFailure() {
+        document();
 
-                private QName qname(final String local) {
-                    if (nsStack.peek() != null) {
-                        return new QName(nsStack.peek(), local);
-                    } else {
-                        return QName.valueOf(local);
+        return this.validationFailure;
+    }
+
+    private CompactDocument lex() throws IOException, DocLexer.LexException {
+        final CompactDocument.Builder builder = new CompactDocument.Builder(this.symbols);
+        try (final DocLexer lexer = DocLexer.forDocument(this.url)) {
+            // the default namespace in effect at each depth
+            String[] namespaces = new String[32];
+            int depth = 0;
+            int event;
+            while ((event = lexer.next()) != DocLexer.END_DOCUMENT) {
+                if (event == DocLexer.START_ELEMENT) {
+                    String namespace = depth == 0 ? "" : namespaces[depth - 1];
+                    for (int i = 0; i < lexer.attributeCount(); i++) {
+                        if ("xmlns".equals(lexer.attributeName(i))) {
+                            namespace = lexer.attributeValue(i);
+                        }
                     }
-                }
+                    if (depth == namespaces.length) {
+                        namespaces = Arrays.copyOf(namespaces, depth * 2);
+                    }
+                    namespaces[depth++] = namespace;
 
-                private Position position() {
-                    return new Position(locator.getLineNumber(), locator.getColumnNumber());
+                    builder.startElement(this.symbols.qnameId(namespace, lexer.name()), lexer.start());
+                    for (int i = 0; i < lexer.attributeCount(); i++) {
+                        builder.attribute(this.symbols.nameId(lexer.attributeName(i)), lexer.attributeValueChars(i),
+                                          lexer.attributeValueStart(i), lexer.attributeValueLength(i),
+                                          lexer.attributeNamePosition(i));
+                    }
+                } else {
+                    builder.endElement(lexer.end());
+                    depth--;
                 }
+            }
+        }
 
-                private Locator locator = null;
+        return builder.build();
+    }
 
-                private Position lastPosition = new Position(1, 2);
+    private CompactDocument parse() {
+        final CompactDocument.Builder builder = new CompactDocument.Builder(this.symbols);
 
-                private Deque<String> nsStack = new ArrayDeque<>();
-            };
+        final ContentHandler handler = new DefaultHandler() {
+            @Override
+            public void setDocumentLocator(Locator locator) {
+                this.locator = locator;
+            }
 
-            try (final InputStream in = this.document.openStream()) {
-                final SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+                final String namespace = attributes.getValue("xmlns");
+                if (namespace != null) {
+                    nsStack.push(namespace);
+                } else {
+                    // the deque can't hold null, and the symbol table treats "" as no namespace
+                    nsStack.push(nsStack.isEmpty() ? "" : nsStack.peek());
+                }
+                builder.startElement(symbols.qnameId(nsStack.peek(), qName), attributes,
+                                     CompactDocument.pack(lastLine, lastCol));
+            }
 
-                final XMLReader reader = parser.getXMLReader();
-                reader.setContentHandler(handler);
-                reader.parse(new InputSource(in));
-            } catch (SAXParseException e) {
-                this.validationFailure = e;
-            } catch (IOException | ParserConfigurationException | SAXException ignored) {
+            @Override
+            public void endElement(String uri, String localName, String qName) throws SAXException {
+                final int line = locator.getLineNumber();
+                final int col = locator.getColumnNumber();
+                builder.endElement(CompactDocument.pack(line, col));
+                storePosition(line, col);
+                nsStack.pop();
             }
-        }
 
-        return this.tree;
-    }
+            @Override
+            public void characters(char[] ch, int start, int length) throws SAXException {
+                storePosition(locator.getLineNumber(), locator.getColumnNumber());
+            }
 
-    public boolean valid() {
-        walk();
+            @Override
+            public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+                storePosition(locator.getLineNumber(), locator.getColumnNumber());
+            }
 
-        return this.validationFailure == null;
-    }
+            // kept as primitives, since most callbacks don't advance the position
+            private void storePosition(final int line, final int col) {
+                if (line > lastLine ||
+                        (line == lastLine && col > lastCol)) {
+                    this.lastLine = line;
+                    this.lastCol = col;
+                }
+            }
 
-    public SAXParseException validationFailure() {
-        walk();
+            private Locator locator = null;
 
-        return this.validationFailure;
+            private int lastLine = 1;
+
+            private int lastCol = 2;
+
+            private Deque<String> nsStack = new ArrayDeque<>();
+        };
+
+        try (final InputStream in = this.url.openStream()) {
+            final SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+
+            final XMLReader reader = parser.getXMLReader();
+            reader.setContentHandler(handler);
+            reader.parse(new InputSource(in));
+        } catch (SAXParseException e) {
+            this.validationFailure = e;
+        } catch (IOException | ParserConfigurationException | SAXException ignored) {
+        }
+
+        return builder.build();
     }
 
-    private final URL document;
+    private final URL url;
+    private final SymbolTable symbols;
+    private CompactDocument document = null;
     private Tree<DocElement> tree = null;
     private SAXParseException validationFailure = null;
 
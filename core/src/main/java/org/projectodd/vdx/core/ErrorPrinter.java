@@ -28,8 +28,19 @@ import org.projectodd.vdx.core.schema.SchemaPathGate;
 import org.projectodd.vdx.core.schema.SchemaPathPrefixProvider;
 
 public class ErrorPrinter {
+    /**
+     * When true, each report is followed by a breakdown of what it cost - see {@link TraceMetrics}.
+     */
+    public static final String TRACE_PROPERTY = "org.projectodd.vdx.trace";
+
     public ErrorPrinter(final URL document, final List<URL> schemas) throws IOException {
-        this.context = new ValidationContext(document, schemas);
+        this(document, schemas, MetricsListener.NONE);
+    }
+
+    public ErrorPrinter(final URL document, final List<URL> schemas, final MetricsListener metrics)
+            throws IOException {
+        this.trace = Boolean.getBoolean(TRACE_PROPERTY) ? new TraceMetrics(metrics) : null;
+        this.context = new ValidationContext(document, schemas, this.trace != null ? this.trace : metrics);
         this.docURL = document;
     }
 
@@ -41,9 +52,12 @@ public class ErrorPrinter {
     }
 
     public void print(ValidationError error) {
+        final PhaseEvent event = PhaseEvents.start(PhaseEvent.Type.PRINT);
+        final long printStart = System.nanoTime();
         final ErrorHandler.HandledResult res = this.context.handle(error);
 
         if (res != null) {
+            final long start = System.nanoTime();
             final StringBuilder out = new StringBuilder()
                     .append('\n')
                     .append(divider(I18N.validationErrorIn(Util.documentName(this.docURL))));
@@ -54,6 +68,16 @@ public class ErrorPrinter {
                     .append('\n');
 
             this.printer.printlnErr(Util.withPrefixAfterNth(2, "|", out.toString()));
+            this.context.metrics().phase(MetricsListener.Phase.RENDERING, System.nanoTime() - start);
+
+            if (this.trace != null) {
+                this.printer.printlnErr(this.trace.drain(System.nanoTime() - printStart));
+            }
+        }
+        if (event != PhaseEvent.NONE) {
+            event.document(Util.documentName(this.docURL))
+                    .errorType(error.type())
+                    .finish();
         }
     }
 
@@ -231,6 +255,7 @@ public class ErrorPrinter {
 
     private final URL docURL;
     private final ValidationContext context;
+    private final TraceMetrics trace;
     private Printer printer = Printer.DEFAULT_PRINTER;
 
     private class PrefixedLine {
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A {@link MetricsListener} that keeps a latency histogram per phase and running totals of everything
+ * else, safe to share between reports. {@link #register()} publishes it as a platform MBean.
+ */
+public class HistogramMetrics implements MetricsListener, HistogramMetricsMXBean {
+    public static final String OBJECT_NAME = "org.projectodd.vdx:type=Metrics";
+
+    public HistogramMetrics() {
+        for (Phase each : Phase.values()) {
+            this.phases.put(each, new LatencyHistogram());
+        }
+        for (Cache each : Cache.values()) {
+            this.hits.put(each, new LongAdder());
+            this.misses.put(each, new LongAdder());
+        }
+    }
+
+    /**
+     * Registers this with the platform MBean server as {@value #OBJECT_NAME}, unless something already is.
+     *
+     * @return true if this was registered
+     */
+    public boolean register() throws JMException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(OBJECT_NAME);
+        synchronized (HistogramMetrics.class) {
+            if (server.isRegistered(name)) {
+
+                return false;
+            }
+            server.registerMBean(this, name);
+        }
+
+        return true;
+    }
+
+    public LatencyHistogram histogram(final Phase phase) {
+        return this.phases.get(phase);
+    }
+
+    @Override
+    public void phase(final Phase phase, final long nanos) {
+        this.phases.get(phase).record(nanos);
+    }
+
+    @Override
+    public void bytesRead(final long bytes) {
+        this.bytesRead.add(bytes);
+    }
+
+    @Override
+    public void schemasLoaded(final int schemas) {
+        this.schemasLoaded.add(schemas);
+    }
+
+    @Override
+    public void cacheHit(final Cache cache) {
+        this.hits.get(cache).increment();
+    }
+
+    @Override
+    public void cacheMiss(final Cache cache) {
+        this.misses.get(cache).increment();
+    }
+
+    @Override
+    public void nodesVisited(final long nodes) {
+        this.nodesVisited.add(nodes);
+    }
+
+    @Override
+    public Map<String, PhaseStatistics> getPhases() {
+        final Map<String, PhaseStatistics> ret = new LinkedHashMap<>();
+        for (Map.Entry<Phase, LatencyHistogram> each : this.phases.entrySet()) {
+            final LatencyHistogram histogram = each.getValue();
+            if (histogram.count() > 0) {
+                ret.put(each.getKey().name(),
+                        new PhaseStatistics(histogram.count(),
+                                            micros(histogram.total()),
+                                            micros(histogram.valueAtPercentile(50)),
+                                            micros(histogram.valueAtPercentile(90)),
+                                            micros(histogram.valueAtPercentile(99)),
+                                            micros(histogram.max())));
+            }
+        }
+
+        return ret;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return this.bytesRead.sum();
+    }
+
+    @Override
+    public long getSchemasLoaded() {
+        return this.schemasLoaded.sum();
+    }
+
+    @Override
+    public long getNodesVisited() {
+        return this.nodesVisited.sum();
+    }
+
+    @Override
+    public Map<String, Long> getCacheHits() {
+        return counts(this.hits);
+    }
+
+    @Override
+    public Map<String, Long> getCacheMisses() {
+        return counts(this.misses);
+    }
+
+    @Override
+    public void reset() {
+        this.phases.values().forEach(LatencyHistogram::reset);
+        this.hits.values().forEach(LongAdder::reset);
+        this.misses.values().forEach(LongAdder::reset);
+        this.bytesRead.reset();
+        this.schemasLoaded.reset();
+        this.nodesVisited.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "<HistogramMetrics phases=" + getPhases() + ", bytesRead=" + getBytesRead() +
+                ", schemasLoaded=" + getSchemasLoaded() + ", nodesVisited=" + getNodesVisited() +
+                ", cacheHits=" + getCacheHits() + ", cacheMisses=" + getCacheMisses() + ">";
+    }
+
+    private static Map<String, Long> counts(final Map<Cache, LongAdder> adders) {
+        final Map<String, Long> ret = new LinkedHashMap<>();
+        adders.forEach((cache, adder) -> ret.put(cache.name(), adder.sum()));
+
+        return ret;
+    }
+
+    private static long micros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private final Map<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+    private final Map<Cache, LongAdder> hits = new EnumMap<>(Cache.class);
+    private final Map<Cache, LongAdder> misses = new EnumMap<>(Cache.class);
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder schemasLoaded = new LongAdder();
+    private final LongAdder nodesVisited = new LongAdder();
+}
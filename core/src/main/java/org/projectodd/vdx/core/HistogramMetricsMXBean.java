@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core;
+
+import java.util.Map;
+
+/**
+ * The JMX view of {@link HistogramMetrics}. Durations are in microseconds.
+ */
+public interface HistogramMetricsMXBean {
+    /**
+     * @return the statistics for each phase that has been measured, by phase name
+     */
+    Map<String, PhaseStatistics> getPhases();
+
+    long getBytesRead();
+
+    long getSchemasLoaded();
+
+    long getNodesVisited();
+
+    Map<String, Long> getCacheHits();
+
+    Map<String, Long> getCacheMisses();
+
+    void reset();
+
+    class PhaseStatistics {
+        public PhaseStatistics(final long count, final long totalMicros, final long p50Micros,
+                               final long p90Micros, final long p99Micros, final long maxMicros) {
+            this.count = count;
+            this.totalMicros = totalMicros;
+            this.p50Micros = p50Micros;
+            this.p90Micros = p90Micros;
+            this.p99Micros = p99Micros;
+            this.maxMicros = maxMicros;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public long getTotalMicros() {
+            return this.totalMicros;
+        }
+
+        public long getP50Micros() {
+            return this.p50Micros;
+        }
+
+        public long getP90Micros() {
+            return this.p90Micros;
+        }
+
+        public long getP99Micros() {
+            return this.p99Micros;
+        }
+
+        public long getMaxMicros() {
+            return this.maxMicros;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d total=%dus p50=%dus p90=%dus p99=%dus max=%dus", this.count,
+                                 this.totalMicros, this.p50Micros, this.p90Micros, this.p99Micros, this.maxMicros);
+        }
+
+        private final long count;
+        private final long totalMicros;
+        private final long p50Micros;
+        private final long p90Micros;
+        private final long p99Micros;
+        private final long maxMicros;
+    }
+}
@@ -35,6 +35,8 @@ public class I18N {
         ATTRIBUTE_REQUIRED_MISSING,
         ATTRIBUTE_REQUIRED_MISSING_LIST,
 
+        AVAILABLE_IN_OTHER_VERSIONS,
+
         DID_YOU_MEAN,
         DOCUMENT_HAS_NO_CONTENT,
 
@@ -67,9 +69,7 @@ public class I18N {
     }
 
     public static String lookup(final Key key) {
-        init();
-
-        return bundle.getString(key.toString());
+        return bundle().getString(key.toString());
     }
 
     public static String format(final Key key, Object... args) {
@@ -107,13 +107,18 @@ public class I18N {
 
     private I18N() {}
 
-    private static void init() {
-        if (bundle == null) {
-            bundle = ResourceBundle.getBundle("Messages", activeLocale());
+    private static ResourceBundle bundle() {
+        // read once, since another thread may reset it
+        ResourceBundle ret = bundle;
+        if (ret == null) {
+            ret = ResourceBundle.getBundle("Messages", activeLocale());
+            bundle = ret;
         }
+
+        return ret;
     }
 
-    private static Locale locale;
-    private static ResourceBundle bundle;
+    private static volatile Locale locale;
+    private static volatile ResourceBundle bundle;
 
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in nanoseconds, in the style of HdrHistogram: each power of two is
+ * split into {@value #SUB_BUCKETS} linear buckets, so a recorded value is known to within 1/16th (~6%)
+ * at any magnitude, in a fixed 8 KB.
+ */
+public class LatencyHistogram {
+
+    public void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        this.buckets.incrementAndGet(bucket(value));
+        this.count.increment();
+        this.total.add(value);
+        long max = this.max.get();
+        while (value > max && !this.max.compareAndSet(max, value)) {
+            max = this.max.get();
+        }
+    }
+
+    public long count() {
+        return this.count.sum();
+    }
+
+    public long total() {
+        return this.total.sum();
+    }
+
+    public long max() {
+        return this.max.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the highest value that can be in the bucket holding the given percentile, or 0 if nothing
+     * has been recorded
+     */
+    public long valueAtPercentile(final double percentile) {
+        final long count = count();
+        if (count == 0) {
+
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long)Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < this.buckets.length(); i++) {
+            seen += this.buckets.get(i);
+            if (seen >= rank) {
+
+                return Math.min(highestValue(i), max());
+            }
+        }
+
+        return max();
+    }
+
+    public void reset() {
+        for (int i = 0; i < this.buckets.length(); i++) {
+            this.buckets.set(i, 0);
+        }
+        this.count.reset();
+        this.total.reset();
+        this.max.set(0);
+    }
+
+    static int bucket(final long value) {
+        if (value < SUB_BUCKETS) {
+
+            return (int)value;
+        }
+
+        final int magnitude = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+        return SUB_BUCKETS + magnitude * SUB_BUCKETS + (int)(value >>> magnitude) - SUB_BUCKETS;
+    }
+
+    static long highestValue(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+
+            return bucket;
+        }
+
+        final int magnitude = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        final long lowest = (long)(SUB_BUCKETS + (bucket - SUB_BUCKETS) % SUB_BUCKETS) << magnitude;
+
+        return lowest + (1L << magnitude) - 1;
+    }
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // enough magnitudes for any positive long
+    private static final int BUCKETS = SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+}
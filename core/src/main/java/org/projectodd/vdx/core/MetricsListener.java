@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core;
+
+/**
+ * Receives measurements of producing a report, to find where the time goes when one is slow. Calls are
+ * made on the thread producing the report, so a listener shared between reports has to be thread safe.
+ * {@link HistogramMetrics} aggregates them.
+ */
+public interface MetricsListener {
+    MetricsListener NONE = new MetricsListener() {};
+
+    enum Phase {
+        CHARSET_DETECTION,
+        LINE_READING,
+        DOCUMENT_WALK,
+        SCHEMA_LOAD,
+        /** the handler's own time, not counting the document walk or schema loads it triggers */
+        HANDLER,
+        RENDERING
+    }
+
+    enum Cache {
+        /** schemas already loaded by the same context */
+        SCHEMA,
+        /** compiled schema images in the cache directory */
+        SCHEMA_IMAGE
+    }
+
+    default void phase(Phase phase, long nanos) {}
+
+    default void bytesRead(long bytes) {}
+
+    default void schemasLoaded(int schemas) {}
+
+    default void cacheHit(Cache cache) {}
+
+    default void cacheMiss(Cache cache) {}
+
+    /**
+     * @param nodes the number of schema nodes or document elements in a model that was built
+     */
+    default void nodesVisited(long nodes) {}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core;
+
+/**
+ * A Java Flight Recorder event bracketing a phase of producing a report, so VDX shows up next to the rest
+ * of a slow boot in the same recording. The events are in {@link org.projectodd.vdx.core.jfr}, and are
+ * only loaded when JFR is there to record them; otherwise, and when an event type isn't enabled in any
+ * recording, {@link PhaseEvents#start} returns {@link #NONE}.
+ */
+public interface PhaseEvent {
+    PhaseEvent NONE = new PhaseEvent() {};
+
+    enum Type {
+        SCHEMA_DISCOVERY,
+        SCHEMA_WALK,
+        DOCUMENT_WALK,
+        HANDLER,
+        PRINT
+    }
+
+    default PhaseEvent document(String document) {
+        return this;
+    }
+
+    default PhaseEvent errorType(ErrorType errorType) {
+        return this;
+    }
+
+    default PhaseEvent schemaCount(int schemaCount) {
+        return this;
+    }
+
+    default PhaseEvent nodeCount(long nodeCount) {
+        return this;
+    }
+
+    default PhaseEvent cacheHit(boolean cacheHit) {
+        return this;
+    }
+
+    /**
+     * Ends the event, and commits it if it's still enabled.
+     */
+    default void finish() {}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core;
+
+import java.util.function.Function;
+
+/**
+ * Finds the flight recorder events, if this JVM has JFR. Kept apart from {@link PhaseEvent} so nothing
+ * refers to jdk.jfr until it's known to be there.
+ */
+public class PhaseEvents {
+
+    public static PhaseEvent start(final PhaseEvent.Type type) {
+        return FACTORY.apply(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<PhaseEvent.Type, PhaseEvent> factory() {
+        try {
+            Class.forName("jdk.jfr.Event");
+
+            return (Function<PhaseEvent.Type, PhaseEvent>)Class
+                    .forName("org.projectodd.vdx.core.jfr.FlightRecorderEvents")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException ignored) {
+            // no JFR, or built without the events
+
+            return __ -> PhaseEvent.NONE;
+        }
+    }
+
+    private PhaseEvents() {}
+
+    private static final Function<PhaseEvent.Type, PhaseEvent> FACTORY = factory();
+}
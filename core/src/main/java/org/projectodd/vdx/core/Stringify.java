@@ -16,12 +16,16 @@
 
 package org.projectodd.vdx.core;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Stringify {
     private Stringify() {}
 
+    /**
+     * Registers a stringifier, ahead of the defaults if they haven't been registered yet. Stringifiers are
+     * global, so this should be called once for each, not once per report.
+     */
     public static void registerStringifier(final Stringifier stringifier) {
         stringifiers.add(stringifier);
     }
@@ -37,6 +41,12 @@ public class Stringify {
     }
 
     private static void registerDefaultStringifiers() {
+        if (!defaultsRegistered) {
+            registerDefaults();
+        }
+    }
+
+    private static synchronized void registerDefaults() {
         if (!defaultsRegistered) {
             registerStringifier(new ElementStringifier());
             registerStringifier(new ElementListStringifier());
@@ -46,6 +56,6 @@ public class Stringify {
         }
     }
 
-    private static boolean defaultsRegistered = false;
-    private static final List<Stringifier> stringifiers = new ArrayList<>();
+    private static volatile boolean defaultsRegistered = false;
+    private static final List<Stringifier> stringifiers = new CopyOnWriteArrayList<>();
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Interns namespace URIs, names (element local names and attribute names) and QNames, handing out
+ * canonical instances and dense int ids for each. Ids are never reused, so two ids from the same table
+ * are equal iff the symbols are. Lookups don't lock; interning a new symbol does.
+ */
+public class SymbolTable {
+    /**
+     * A table shared for the life of the process, which only grows. Validation uses a table per schema
+     * set instead - see {@link org.projectodd.vdx.core.schema.SchemaScope}.
+     */
+    public static final SymbolTable DEFAULT = new SymbolTable();
+
+    public int namespaceId(final String uri) {
+        final String key = uri == null ? "" : uri;
+        final Integer id = this.namespaceIds.get(key);
+
+        return id != null ? id : internNamespace(key);
+    }
+
+    public String namespace(final int id) {
+        return this.namespaces[id];
+    }
+
+    public int nameId(final String name) {
+        final Integer id = this.nameIds.get(name);
+
+        return id != null ? id : internName(name);
+    }
+
+    /**
+     * @return the id of the given name, or -1 if it has never been interned
+     */
+    public int findNameId(final String name) {
+        final Integer id = this.nameIds.get(name);
+
+        return id == null ? NONE : id;
+    }
+
+    public String name(final int id) {
+        return this.names[id];
+    }
+
+    public String intern(final String name) {
+        return name(nameId(name));
+    }
+
+    public int qnameId(final String uri, final String localName) {
+        final Map<String, Integer> local = this.qnameIds.get(uri == null ? "" : uri);
+        final Integer id = local == null ? null : local.get(localName);
+
+        return id != null ? id : internQName(uri == null ? "" : uri, localName);
+    }
+
+    public int qnameId(final QName qname) {
+        return qnameId(qname.getNamespaceURI(), qname.getLocalPart());
+    }
+
+    /**
+     * @return the id of the given QName, or -1 if it has never been interned
+     */
+    public int findQNameId(final QName qname) {
+        final Map<String, Integer> local = this.qnameIds.get(qname.getNamespaceURI());
+        final Integer id = local == null ? null : local.get(qname.getLocalPart());
+
+        return id == null ? NONE : id;
+    }
+
+    public QName qname(final int id) {
+        return this.qnames[id];
+    }
+
+    public QName qname(final String uri, final String localName) {
+        return qname(qnameId(uri, localName));
+    }
+
+    public QName intern(final QName qname) {
+        return qname(qnameId(qname));
+    }
+
+    public int namespaceIdOf(final int qnameId) {
+        return this.qnameNamespaces[qnameId];
+    }
+
+    public int nameIdOf(final int qnameId) {
+        return this.qnameNames[qnameId];
+    }
+
+    public int qnameCount() {
+        return this.qnameCount;
+    }
+
+    public int nameCount() {
+        return this.nameCount;
+    }
+
+    @Override
+    public String toString() {
+        return "<SymbolTable namespaces=" + this.namespaceCount +
+                ", names=" + this.nameCount +
+                ", qnames=" + this.qnameCount + ">";
+    }
+
+    // the arrays are replaced (never shrunk) under the lock before the id is published through the
+    // concurrent maps, so a reader that can see an id can also see its entry.
+    private synchronized int internNamespace(final String uri) {
+        Integer id = this.namespaceIds.get(uri);
+        if (id == null) {
+            id = this.namespaceCount;
+            if (id == this.namespaces.length) {
+                this.namespaces = Arrays.copyOf(this.namespaces, id * 2);
+            }
+            this.namespaces[id] = uri;
+            this.namespaceCount++;
+            this.namespaceIds.put(uri, id);
+        }
+
+        return id;
+    }
+
+    private synchronized int internName(final String name) {
+        Integer id = this.nameIds.get(name);
+        if (id == null) {
+            id = this.nameCount;
+            if (id == this.names.length) {
+                this.names = Arrays.copyOf(this.names, id * 2);
+            }
+            this.names[id] = name;
+            this.nameCount++;
+            this.nameIds.put(name, id);
+        }
+
+        return id;
+    }
+
+    private synchronized int internQName(final String uri, final String localName) {
+        final Map<String, Integer> local = this.qnameIds.computeIfAbsent(uri, __ -> new ConcurrentHashMap<>());
+        Integer id = local.get(localName);
+        if (id == null) {
+            final int namespaceId = namespaceId(uri);
+            final int nameId = nameId(localName);
+            id = this.qnameCount;
+            if (id == this.qnames.length) {
+                final int size = id * 2;
+                this.qnameNamespaces = Arrays.copyOf(this.qnameNamespaces, size);
+                this.qnameNames = Arrays.copyOf(this.qnameNames, size);
+                this.qnames = Arrays.copyOf(this.qnames, size);
+            }
+            this.qnameNamespaces[id] = namespaceId;
+            this.qnameNames[id] = nameId;
+            this.qnames[id] = new QName(this.namespaces[namespaceId], this.names[nameId]);
+            this.qnameCount++;
+            local.put(localName, id);
+        }
+
+        return id;
+    }
+
+    public static final int NONE = -1;
+    private static final int INITIAL_SIZE = 256;
+
+    private final Map<String, Integer> namespaceIds = new ConcurrentHashMap<>();
+    private final Map<String, Integer> nameIds = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Integer>> qnameIds = new ConcurrentHashMap<>();
+    private volatile String[] namespaces = new String[INITIAL_SIZE];
+    private volatile String[] names = new String[INITIAL_SIZE];
+    private volatile QName[] qnames = new QName[INITIAL_SIZE];
+    private volatile int[] qnameNamespaces = new int[INITIAL_SIZE];
+    private volatile int[] qnameNames = new int[INITIAL_SIZE];
+    private int namespaceCount = 0;
+    private int nameCount = 0;
+    private int qnameCount = 0;
+}
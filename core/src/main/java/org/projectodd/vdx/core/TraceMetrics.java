@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Collects the measurements for the reports of one {@link ErrorPrinter}, passing them on to another
+ * listener, and renders what each report cost as a few compact lines, for {@link ErrorPrinter#TRACE_PROPERTY}.
+ * A model's size is reported right after the phase that built it, so node counts are attributed to the
+ * last phase seen. Reports printed at the same time by one printer share a breakdown.
+ */
+public class TraceMetrics implements MetricsListener {
+    public TraceMetrics(final MetricsListener delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized void phase(final Phase phase, final long nanos) {
+        this.phaseNanos.merge(phase, nanos, Long::sum);
+        this.lastPhase = phase;
+        this.delegate.phase(phase, nanos);
+    }
+
+    @Override
+    public synchronized void bytesRead(final long bytes) {
+        this.bytesRead += bytes;
+        this.delegate.bytesRead(bytes);
+    }
+
+    @Override
+    public synchronized void schemasLoaded(final int schemas) {
+        this.schemasLoaded += schemas;
+        this.delegate.schemasLoaded(schemas);
+    }
+
+    @Override
+    public synchronized void cacheHit(final Cache cache) {
+        this.hits.merge(cache, 1L, Long::sum);
+        this.delegate.cacheHit(cache);
+    }
+
+    @Override
+    public synchronized void cacheMiss(final Cache cache) {
+        this.misses.merge(cache, 1L, Long::sum);
+        this.delegate.cacheMiss(cache);
+    }
+
+    @Override
+    public synchronized void nodesVisited(final long nodes) {
+        if (this.lastPhase == Phase.DOCUMENT_WALK) {
+            this.documentNodes += nodes;
+        } else {
+            this.schemaNodes += nodes;
+        }
+        this.delegate.nodesVisited(nodes);
+    }
+
+    /**
+     * @param totalNanos the wall time of the report. Phases that ran while the printer was created, before
+     *                   the first report, are listed with it but aren't part of its total.
+     * @return the measurements since the last call, which are then cleared
+     */
+    public synchronized String drain(final long totalNanos) {
+        final StringBuilder phases = new StringBuilder();
+        for (Map.Entry<Phase, Long> each : this.phaseNanos.entrySet()) {
+            phases.append(phases.length() == 0 ? "" : ", ")
+                    .append(name(each.getKey()))
+                    .append(' ')
+                    .append(millis(each.getValue()));
+        }
+
+        final String ret = String.format("vdx trace: %s total | %s%n" +
+                                                 "vdx trace: %d bytes read | %d xsds loaded | %d schema nodes | %d document elements%n" +
+                                                 "vdx trace: cache hits %s | cache misses %s",
+                                         millis(totalNanos), phases, this.bytesRead, this.schemasLoaded,
+                                         this.schemaNodes, this.documentNodes,
+                                         counts(this.hits), counts(this.misses));
+
+        this.phaseNanos.clear();
+        this.hits.clear();
+        this.misses.clear();
+        this.bytesRead = 0;
+        this.schemasLoaded = 0;
+        this.schemaNodes = 0;
+        this.documentNodes = 0;
+
+        return ret;
+    }
+
+    private static String name(final Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    private static String millis(final long nanos) {
+        return String.format(Locale.ROOT, "%.2fms", nanos / 1e6);
+    }
+
+    private static String counts(final Map<Cache, Long> counts) {
+        final StringBuilder sb = new StringBuilder();
+        for (Cache each : Cache.values()) {
+            sb.append(sb.length() == 0 ? "" : ", ")
+                    .append(name(each))
+                    .append(' ')
+                    .append(counts.getOrDefault(each, 0L));
+        }
+
+        return sb.toString();
+    }
+
+    private final MetricsListener delegate;
+    private final Map<Phase, Long> phaseNanos = new EnumMap<>(Phase.class);
+    private final Map<Cache, Long> hits = new EnumMap<>(Cache.class);
+    private final Map<Cache, Long> misses = new EnumMap<>(Cache.class);
+    private Phase lastPhase = null;
+    private long bytesRead = 0;
+    private int schemasLoaded = 0;
+    private long schemaNodes = 0;
+    private long documentNodes = 0;
+}
@@ -16,9 +16,12 @@
 
 package org.projectodd.vdx.core;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.function.BiFunction;
@@ -43,6 +46,16 @@ public class Tree<T> {
         return addChild(new Tree<>(child));
     }
 
+    public void addChildren(final int index, final List<Tree<T>> children) {
+        this.children.addAll(index, children);
+    }
+
+    public Tree<T> setChild(final int index, final Tree<T> child) {
+        this.children.set(index, child);
+
+        return child;
+    }
+
     public T value() {
         return value;
     }
@@ -61,22 +74,39 @@ public class Tree<T> {
 
     public List<List<T>> pathsToValue(final boolean includeValue, final Function<T, Boolean> pred) {
         final List<List<T>> paths = new ArrayList<>();
-        if (!isRoot() && pred.apply(this.value)) {
-            List<T> path = new ArrayList<>();
-            if (includeValue) {
-                path.add(this.value);
+        // the path to the current tree is kept on the way down and copied for each match, instead of
+        // each match being prepended to on the way back up, which is quadratic in the depth. Iterative,
+        // since schema and document trees can be deeper than the stack.
+        final List<T> path = new ArrayList<>();
+        final Deque<Tree<T>> parents = new ArrayDeque<>();
+        final Deque<Iterator<Tree<T>>> pending = new ArrayDeque<>();
+        pending.push(Collections.singletonList(this).iterator());
+        while (!pending.isEmpty()) {
+            final Iterator<Tree<T>> siblings = pending.peek();
+            if (!siblings.hasNext()) {
+                pending.pop();
+                final Tree<T> parent = parents.poll();
+                if (parent != null && !parent.isRoot()) {
+                    path.remove(path.size() - 1);
+                }
+                continue;
             }
-            paths.add(path);
-        }
 
-        this.children().forEach(c -> {
-            final List<List<T>> childPaths = c.pathsToValue(includeValue, pred);
-            if (!childPaths.isEmpty() &&
-                    !isRoot()) {
-                childPaths.forEach(p -> p.add(0, this.value));
+            final Tree<T> tree = siblings.next();
+            if (!tree.isRoot()) {
+                if (pred.apply(tree.value)) {
+                    final List<T> match = new ArrayList<>(path.size() + 1);
+                    match.addAll(path);
+                    if (includeValue) {
+                        match.add(tree.value);
+                    }
+                    paths.add(match);
+                }
+                path.add(tree.value);
             }
-            paths.addAll(childPaths);
-        });
+            parents.push(tree);
+            pending.push(tree.children.iterator());
+        }
 
         return paths;
     }
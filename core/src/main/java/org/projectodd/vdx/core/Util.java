@@ -16,9 +16,9 @@
 
 package org.projectodd.vdx.core;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -34,6 +34,7 @@ import java.util.stream.Collectors;
 
 import javax.xml.namespace.QName;
 
+import org.projectodd.vdx.core.schema.SchemaHeaderScanner;
 import org.projectodd.vdx.core.thirdparty.Levenshtein;
 
 public class Util {
@@ -75,24 +76,27 @@ public class Util {
         return name;
     }
 
-    private static final Pattern TARGET_NS_RE = Pattern.compile("targetNamespace\\s*=\\s*[\"'](.*?)[\"']");
-
     public static boolean providesXMLNS(final Set<String> xmlnses, URL url) throws IOException {
-        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream()))) {
-            String line = reader.readLine();
-            while (line != null) {
-                final Matcher m = TARGET_NS_RE.matcher(line);
-                if (m.find() &&
-                        xmlnses.contains(m.group(1))) {
-
-                    return true;
-                }
-                line = reader.readLine();
-            }
+        final String ns = SchemaHeaderScanner.targetNamespace(url);
 
+        return ns != null &&
+                xmlnses.contains(ns);
+    }
+
+    /**
+     * @return the file behind the given url, or null if it isn't a file: url
+     */
+    public static File asFile(final URL url) {
+        if (!"file".equals(url.getProtocol())) {
+
+            return null;
+        }
 
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return new File(url.getPath());
         }
-        return false;
     }
 
     public static String alternateSpelling(final String current, final Collection<String> alternates) {
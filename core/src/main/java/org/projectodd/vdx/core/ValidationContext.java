@@ -17,6 +17,7 @@
 package org.projectodd.vdx.core;
 
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -24,41 +25,74 @@ import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
-import java.util.ArrayDeque;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.function.IntPredicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import javax.xml.namespace.QName;
 
+import org.projectodd.vdx.core.schema.CompactSchema;
 import org.projectodd.vdx.core.schema.SchemaElement;
+import org.projectodd.vdx.core.schema.SchemaImage;
+import org.projectodd.vdx.core.schema.SchemaNamespaceIndex;
+import org.projectodd.vdx.core.schema.SchemaNodePool;
 import org.projectodd.vdx.core.schema.SchemaPathGate;
 import org.projectodd.vdx.core.schema.SchemaPathPrefixProvider;
+import org.projectodd.vdx.core.schema.SchemaScope;
+import org.projectodd.vdx.core.schema.SchemaVersionIndex;
 import org.projectodd.vdx.core.schema.SchemaWalker;
 import org.xml.sax.SAXParseException;
 
 public class ValidationContext {
     public ValidationContext(final URL document, final List<URL> schemas) throws IOException {
+        this(document, schemas, MetricsListener.NONE);
+    }
+
+    public ValidationContext(final URL document, final List<URL> schemas, final MetricsListener metrics)
+            throws IOException {
         this.document = document;
-        this.docWalker = new DocWalker(document);
-        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(document.openStream(), detectCharset(document)))) {
+        this.metrics = metrics;
+        this.scope = SchemaScope.forSchemas(schemas);
+        this.symbols = this.scope.symbols();
+        this.schemaNodes = this.scope.pool();
+        this.docWalker = new DocWalker(document, this.symbols);
+
+        long start = System.nanoTime();
+        final Charset charset = detectCharset(document);
+        metrics.phase(MetricsListener.Phase.CHARSET_DETECTION, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        final CountingInputStream in = new CountingInputStream(document.openStream());
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset))) {
             this.lines = reader.lines().collect(Collectors.toList());
         }
-
-        final Set<String> xmlnses = Util.extractXMLNS(this.lines);
-        for (URL url : schemas) {
-            if (Util.providesXMLNS(xmlnses, url)) {
-                this.schemas.add(url);
-            }
+        metrics.phase(MetricsListener.Phase.LINE_READING, System.nanoTime() - start);
+        metrics.bytesRead(in.count);
+
+        this.allSchemas = schemas;
+        final PhaseEvent event = PhaseEvents.start(PhaseEvent.Type.SCHEMA_DISCOVERY);
+        final SchemaNamespaceIndex index = SchemaNamespaceIndex.DEFAULT;
+        final List<URL> providing = index.schemasProviding(Util.extractXMLNS(this.lines), schemas);
+        for (URL url : providing) {
+            this.schemas.computeIfAbsent(index.namespace(url), __ -> new ArrayList<>()).add(url);
+        }
+        // the event's fields are only worked out if it's being recorded
+        if (event != PhaseEvent.NONE) {
+            event.document(Util.documentName(document))
+                    .schemaCount(providing.size())
+                    .finish();
         }
     }
 
@@ -74,6 +108,14 @@ public class ValidationContext {
         return this;
     }
 
+    /**
+     * @return the namespaces whose schemas have been loaded so far - schemas are only loaded when a
+     * query needs them
+     */
+    public synchronized Set<String> loadedNamespaces() {
+        return Collections.unmodifiableSet(new HashSet<>(this.loadedSchemas.keySet()));
+    }
+
     public int documentLineCount() {
         return this.lines.size();
     }
@@ -91,11 +133,31 @@ public class ValidationContext {
         return ret;
     }
 
+    public MetricsListener metrics() {
+        return this.metrics;
+    }
+
     public ErrorHandler.HandledResult handle(ValidationError error) {
+        final PhaseEvent event = PhaseEvents.start(PhaseEvent.Type.HANDLER);
+        final long[] nested = NESTED_PHASE_NANOS.get();
+        final long nestedBefore = nested[0];
+        final long start = System.nanoTime();
+        final ErrorHandler.HandledResult result = handleError(error);
+        this.metrics.phase(MetricsListener.Phase.HANDLER, System.nanoTime() - start - (nested[0] - nestedBefore));
+        if (event != PhaseEvent.NONE) {
+            event.document(Util.documentName(this.document))
+                    .errorType(error.type())
+                    .finish();
+        }
+
+        return result;
+    }
+
+    private ErrorHandler.HandledResult handleError(final ValidationError error) {
         final ErrorHandler.HandledResult result = error.type().handler().handle(this, error);
 
         if (result.isPossiblyMalformed() &&
-                !this.docWalker.valid()) {
+                !documentValid()) {
             @SuppressWarnings("ThrowableResultOfMethodCallIgnored")
             final SAXParseException ex = this.docWalker.validationFailure();
             final ErrorHandler.HandledResult validationResult =
@@ -109,15 +171,85 @@ public class ValidationContext {
     }
 
     public List<List<SchemaElement>> alternateElementsForAttribute(final String attribute) {
-        return alternateElements(true, el -> el.attributes().contains(attribute));
+        final List<CompactSchema> schemas = loadedSchemas(this.schemas.keySet());
+        final int attributeId = this.symbols.findNameId(attribute);
+
+        return alternateElements(schemas, true, schema -> n -> schema.hasAttribute(n, attributeId));
     }
 
     public List<List<SchemaElement>> alternateElementsForElement(final QName element) {
-        return alternateElements(false, el -> el.qname().equals(element));
+        // an element can only be declared by a schema for its own namespace
+        final List<CompactSchema> schemas = loadedSchemas(Collections.singleton(element.getNamespaceURI()));
+        final int nameId = this.symbols.findQNameId(element);
+
+        return alternateElements(schemas, false, schema -> n -> schema.nameIdOf(n) == nameId);
+    }
+
+    /**
+     * @return the namespaces of other versions of the element's schema that declare it, or an empty list
+     * if the element's own version declares it
+     */
+    public List<String> otherVersionsDefiningElement(final QName element) {
+        return otherVersions(element.getNamespaceURI(),
+                             index -> index.versionsDefiningElement(element.getNamespaceURI(),
+                                                                    element.getLocalPart()));
+    }
+
+    /**
+     * @return the namespaces of other versions of the element's schema that declare the attribute on an
+     * element with the same name, or an empty list if the element's own version declares it there
+     */
+    public List<String> otherVersionsDefiningAttribute(final QName element, final String attribute) {
+        return otherVersions(element.getNamespaceURI(),
+                             index -> index.versionsDefiningAttribute(element.getNamespaceURI(),
+                                                                      element.getLocalPart(), attribute));
     }
 
-    private List<List<SchemaElement>> alternateElements(final boolean includeValue, final Function<SchemaElement, Boolean> pred) {
-        return schemaTree().pathsToValue(includeValue, pred)
+    private List<String> otherVersions(final String namespace,
+                                       final Function<SchemaVersionIndex, List<String>> lookup) {
+        final String family = SchemaVersionIndex.family(namespace);
+        if (family == null) {
+
+            return Collections.emptyList();
+        }
+
+        final List<String> versions;
+        try {
+            versions = lookup.apply(versionIndex(family));
+        } catch (IOException e) {
+
+            return Collections.emptyList();
+        }
+
+        return versions.contains(namespace) ? Collections.emptyList() : versions;
+    }
+
+    // only the family's schemas are indexed - the header index already knows each schema's namespace, so
+    // a report doesn't have to parse every installed schema
+    private synchronized SchemaVersionIndex versionIndex(final String family) throws IOException {
+        SchemaVersionIndex index = this.versionIndexes.get(family);
+        if (index == null) {
+            final SchemaNamespaceIndex namespaces = SchemaNamespaceIndex.DEFAULT;
+            final List<URL> members = new ArrayList<>();
+            for (URL url : this.allSchemas) {
+                try {
+                    if (family.equals(SchemaVersionIndex.family(namespaces.namespace(url)))) {
+                        members.add(url);
+                    }
+                } catch (IOException ignored) {
+                    // left out, as the index would skip it anyway
+                }
+            }
+            index = SchemaVersionIndex.forSchemas(members);
+            this.versionIndexes.put(family, index);
+        }
+
+        return index;
+    }
+
+    private List<List<SchemaElement>> alternateElements(final List<CompactSchema> schemas, final boolean includeValue,
+                                                        final Function<CompactSchema, IntPredicate> pred) {
+        return schemaPaths(schemas, includeValue, pred)
                 .stream()
                 .filter(this::allowPath)
                 .map(this::schemaPathWithPrefix)
@@ -134,10 +266,12 @@ public class ValidationContext {
     public List<SchemaElement> schemaPathWithPrefix(final List<SchemaElement> path) {
         if (this.prefixProvider == null) {
             this.prefixProvider = (p, __) -> {
-                final List<List<DocElement>> prefixPaths = documentTree().pathsToValue(e -> e.name().equals(p.get(0).getLocalPart()));
+                final CompactDocument doc = document();
+                final String localName = p.get(0).getLocalPart();
+                final int node = doc.find(n -> doc.qname(n).getLocalPart().equals(localName));
 
-                if (!prefixPaths.isEmpty()) {
-                    return prefixPaths.get(0)
+                if (node != CompactDocument.NONE) {
+                    return doc.path(node, false)
                             .stream()
                             .map(e -> QName.valueOf(e.name()))
                             .collect(Collectors.toList());
@@ -165,47 +299,45 @@ public class ValidationContext {
     }
 
     public Set<String> attributesForElement(final List<SchemaElement> path) {
-        Tree<SchemaElement> tree = schemaTree();
-        final Deque<SchemaElement> pathStack = new ArrayDeque<>(path);
-
-        while (tree != null && !pathStack.isEmpty()) {
-            final SchemaElement cur = pathStack.pop();
-            tree = tree.children().stream()
-                    .filter(t -> t.value().qname().equals(cur.qname()))
-                    .findFirst()
-                    .orElse(null);
-        }
-
         final Set<String> ret = new HashSet<>();
-        if (tree != null && !tree.isRoot()) {
-            ret.addAll(tree.value().attributes());
+        final CompactSchema schema = schemaForPath(path);
+        if (schema != null) {
+            final int node = schema.find(path);
+            if (node != CompactSchema.NONE) {
+                ret.addAll(schema.attributes(node));
+            }
         }
 
         return ret;
     }
 
     public Set<SchemaElement> elementsForElement(final List<SchemaElement> path) {
-        Tree<SchemaElement> tree = schemaTree();
-        final Deque<SchemaElement> pathStack = new ArrayDeque<>(path);
-
-        while (tree != null && !pathStack.isEmpty()) {
-            final SchemaElement cur = pathStack.pop();
-            tree = tree.children().stream()
-                    .filter(t -> t.value().qname().equals(cur.qname()))
-                    .findFirst()
-                    .orElse(null);
-        }
-
         final Set<SchemaElement> ret = new HashSet<>();
-        if (tree != null && !tree.isRoot()) {
-            ret.addAll(tree.children().stream()
-                               .map(Tree::value)
-                               .collect(Collectors.toList()));
+        final CompactSchema schema = schemaForPath(path);
+        if (schema != null) {
+            final int node = schema.find(path);
+            if (node != CompactSchema.NONE) {
+                for (int i = 0; i < schema.childCount(node); i++) {
+                    ret.add(schema.element(schema.childAt(node, i)));
+                }
+            }
         }
 
         return ret;
     }
 
+    // a path starts at a top-level element, so only the schema for that element's namespace can hold it
+    private CompactSchema schemaForPath(final List<SchemaElement> path) {
+        if (path.isEmpty()) {
+
+            return null;
+        }
+
+        final List<CompactSchema> schemas = loadedSchemas(Collections.singleton(path.get(0).qname().getNamespaceURI()));
+
+        return schemas.isEmpty() ? null : schemas.get(0);
+    }
+
     public Position searchForward(final int startLine, final int startCol, final Pattern regex) {
         int loopStartLine = startLine;
         int loopStartCol = startCol;
@@ -254,26 +386,56 @@ public class ValidationContext {
     }
 
     public List<List<DocElement>> pathsToDocElement(final Function<DocElement, Boolean> pred) {
-        return documentTree().pathsToValue(true, pred);
+        final CompactDocument doc = document();
+
+        return doc.pathsTo(true, n -> pred.apply(doc.element(n)));
     }
 
 
     public List<DocElement> pathToDocElement(final Function<DocElement, Boolean> pred) {
-        List<List<DocElement>> paths = pathsToDocElement(pred);
-        if (!paths.isEmpty()) {
+        final CompactDocument doc = document();
 
-            return paths.get(0);
+        return docPath(doc, doc.find(n -> pred.apply(doc.element(n))));
+    }
+
+    public List<DocElement> pathToDocElement(final QName elementName, final Position position) {
+        final CompactDocument doc = document();
+        final int nameId = doc.nameId(elementName);
+        final long pos = CompactDocument.pack(position);
+
+        return docPath(doc, doc.find(n -> doc.nameIdOf(n) == nameId && doc.encloses(n, pos)));
+    }
+
+    /**
+     * @return where the given attribute's name starts on the innermost element with the given name that
+     * encloses the given position, or null if there's no such attribute, or its position isn't known
+     */
+    public Position attributePosition(final QName elementName, final Position position, final String attribute) {
+        final CompactDocument doc = document();
+        final int nameId = doc.nameId(elementName);
+        final long pos = CompactDocument.pack(position);
+        int node = CompactDocument.NONE;
+        for (int n = doc.root() + 1; n < doc.nodeCount(); n++) {
+            if (doc.nameIdOf(n) == nameId && doc.encloses(n, pos)) {
+                node = n;
+            }
         }
 
-        return Collections.emptyList();
+        return node == CompactDocument.NONE ? null : doc.attributePosition(node, attribute);
     }
 
-    public List<DocElement> pathToDocElement(final QName elementName, final Position position) {
-        return pathToDocElement(e -> e.qname().equals(elementName) && e.encloses(position));
+    private static List<DocElement> docPath(final CompactDocument doc, final int node) {
+        if (node == CompactDocument.NONE) {
+
+            return Collections.emptyList();
+        }
+
+        return doc.path(node, true);
     }
 
     public List<List<SchemaElement>> pathsToSchemaElement(final Function<SchemaElement, Boolean> pred) {
-        return schemaTree().pathsToValue(true, pred);
+        return schemaPaths(loadedSchemas(this.schemas.keySet()), true,
+                           schema -> n -> pred.apply(schema.element(n)));
     }
 
 
@@ -291,9 +453,11 @@ public class ValidationContext {
         final List<QName> pathQnames = path.stream()
                 .map(DocElement::qname)
                 .collect(Collectors.toList());
-        final QName elementName = pathQnames.get(pathQnames.size() - 1);
+        final QName last = pathQnames.get(pathQnames.size() - 1);
+        final List<CompactSchema> schemas = loadedSchemas(Collections.singleton(last.getNamespaceURI()));
+        final int nameId = this.symbols.findQNameId(last);
 
-        return pathsToSchemaElement(e -> e.qname().equals(elementName)).stream()
+        return schemaPaths(schemas, true, schema -> n -> schema.nameIdOf(n) == nameId).stream()
                 .filter(p -> schemaPathWithPrefix(p).stream()
                         .map(SchemaElement::qname)
                         .collect(Collectors.toList())
@@ -307,12 +471,27 @@ public class ValidationContext {
     }
 
     public List<List<DocElement>> docElementSiblings(final List<DocElement> element, final Function<DocElement, Boolean> pred) {
-        final List<DocElement> parentPath = element.subList(0, element.size() - 1);
+        final CompactDocument doc = document();
+        final int node = doc.nodeFor(element.get(element.size() - 1));
 
-        return pathsToDocElement(pred).stream()
-                .filter(p -> !p.equals(element))
-                .filter(p -> p.subList(0, p.size() - 1).equals(parentPath))
-                .collect(Collectors.toList());
+        if (node == CompactDocument.NONE) {
+            final List<DocElement> parentPath = element.subList(0, element.size() - 1);
+
+            return pathsToDocElement(pred).stream()
+                    .filter(p -> !p.equals(element))
+                    .filter(p -> p.subList(0, p.size() - 1).equals(parentPath))
+                    .collect(Collectors.toList());
+        }
+
+        final List<List<DocElement>> ret = new ArrayList<>();
+        for (int sibling = doc.firstChild(doc.parent(node)); sibling != CompactDocument.NONE; sibling = doc.nextSibling(sibling)) {
+            if (sibling != node &&
+                    pred.apply(doc.element(sibling))) {
+                ret.add(doc.path(sibling, true));
+            }
+        }
+
+        return ret;
     }
 
     public List<List<SchemaElement>> schemaElementSiblings(final List<SchemaElement> element) {
@@ -329,16 +508,131 @@ public class ValidationContext {
                 .collect(Collectors.toList());
     }
 
-    private Tree<DocElement> documentTree() {
-        return this.docWalker.walk();
+    private boolean documentValid() {
+        // walks the document, if no handler has yet
+        document();
+
+        return this.docWalker.valid();
+    }
+
+    private synchronized CompactDocument document() {
+        if (this.walkedDocument == null) {
+            final PhaseEvent event = PhaseEvents.start(PhaseEvent.Type.DOCUMENT_WALK);
+            final long start = System.nanoTime();
+            this.walkedDocument = this.docWalker.document();
+            nestedPhase(MetricsListener.Phase.DOCUMENT_WALK, System.nanoTime() - start);
+            this.metrics.nodesVisited(this.walkedDocument.nodeCount());
+            if (event != PhaseEvent.NONE) {
+                event.document(Util.documentName(this.document))
+                        .nodeCount(this.walkedDocument.nodeCount())
+                        .finish();
+            }
+        }
+
+        return this.walkedDocument;
+    }
+
+    // the document walk and schema loads are usually triggered by a handler, so their time is noted
+    // for handle() to take out of the handler's own
+    private void nestedPhase(final MetricsListener.Phase phase, final long nanos) {
+        NESTED_PHASE_NANOS.get()[0] += nanos;
+        this.metrics.phase(phase, nanos);
+    }
+
+    private static List<List<SchemaElement>> schemaPaths(final List<CompactSchema> schemas, final boolean includeValue,
+                                                         final Function<CompactSchema, IntPredicate> pred) {
+        final List<List<SchemaElement>> paths = new ArrayList<>();
+        for (CompactSchema schema : schemas) {
+            paths.addAll(schema.pathsTo(includeValue, pred.apply(schema)));
+        }
+
+        return paths;
     }
 
-    private Tree<SchemaElement> schemaTree() {
-        if (this.walkedSchemas == null) {
-            this.walkedSchemas = new SchemaWalker(this.schemas).walk();
+    /**
+     * Returns the schemas for the given namespaces, in the order their namespaces were first seen in the
+     * schema list, loading any that haven't been yet. Namespaces with no schema are skipped.
+     */
+    private synchronized List<CompactSchema> loadedSchemas(final Collection<String> namespaces) {
+        final List<CompactSchema> ret = new ArrayList<>();
+        for (Map.Entry<String, List<URL>> each : this.schemas.entrySet()) {
+            final String ns = each.getKey();
+            if (namespaces.contains(ns)) {
+                CompactSchema schema = this.loadedSchemas.get(ns);
+                if (schema != null) {
+                    this.metrics.cacheHit(MetricsListener.Cache.SCHEMA);
+                } else {
+                    this.metrics.cacheMiss(MetricsListener.Cache.SCHEMA);
+                    final PhaseEvent event = PhaseEvents.start(PhaseEvent.Type.SCHEMA_WALK);
+                    final long start = System.nanoTime();
+                    schema = loadSchemas(each.getValue(), event);
+                    nestedPhase(MetricsListener.Phase.SCHEMA_LOAD, System.nanoTime() - start);
+                    this.metrics.schemasLoaded(each.getValue().size());
+                    this.metrics.nodesVisited(schema.nodeCount());
+                    event.schemaCount(each.getValue().size())
+                            .nodeCount(schema.nodeCount())
+                            .finish();
+                    this.loadedSchemas.put(ns, schema);
+                }
+                ret.add(schema);
+            }
         }
 
-        return this.walkedSchemas;
+        return ret;
+    }
+
+    private CompactSchema loadSchemas(final List<URL> urls, final PhaseEvent event) {
+        final Path cacheDir = Caches.directory();
+        if (cacheDir != null) {
+            // only pay for noting image hits on the event if it's being recorded
+            final MetricsListener metrics = event == PhaseEvent.NONE ? this.metrics : new MetricsListener() {
+                @Override
+                public void cacheHit(final Cache cache) {
+                    event.cacheHit(true);
+                    ValidationContext.this.metrics.cacheHit(cache);
+                }
+
+                @Override
+                public void cacheMiss(final Cache cache) {
+                    ValidationContext.this.metrics.cacheMiss(cache);
+                }
+            };
+            try {
+                return SchemaImage.forSchemas(urls, cacheDir, this.symbols, this.schemaNodes, metrics);
+            } catch (IOException ignored) {
+                // walk them below
+            }
+        }
+
+        return CompactSchema.freeze(new SchemaWalker(urls, this.symbols).walk(), this.symbols, this.schemaNodes);
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                this.count++;
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                this.count += n;
+            }
+
+            return n;
+        }
+
+        long count = 0;
     }
 
     private static final Map<Charset, byte[]> BOMS = new HashMap<Charset, byte[]>() {{
@@ -389,7 +683,9 @@ public class ValidationContext {
     public static Charset detectCharset(final URL document) {
         Charset charset = detectBom(document);
         if (charset == null) {
-            try (final BufferedReader reader = new BufferedReader(new InputStreamReader(document.openStream(), StandardCharsets.UTF_8))) {
+            // only the XML declaration is wanted, so don't buffer more of the document than it
+            try (final BufferedReader reader = new BufferedReader(new InputStreamReader(document.openStream(), StandardCharsets.UTF_8),
+                                                                  DECL_BUFFER_SIZE)) {
                 final String firstLine = reader.readLine();
 
                 charset = detectCharsetFromDecl(firstLine);
@@ -414,11 +710,25 @@ public class ValidationContext {
         return null;
     }
 
+    // per thread, since a context can be shared by reports printed at the same time
+    private static final int DECL_BUFFER_SIZE = 128;
+    private static final ThreadLocal<long[]> NESTED_PHASE_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    // held for as long as the context is, so contexts open at the same time share it
+    private final SchemaScope scope;
+    private final SymbolTable symbols;
+    private final SchemaNodePool schemaNodes;
     private final URL document;
     private final List<String> lines;
-    private final List<URL> schemas = new ArrayList<>();
+    // the schemas that provide a namespace used by the document, by namespace, in the order given
+    private final List<URL> allSchemas;
+    private final Map<String, List<URL>> schemas = new LinkedHashMap<>();
+    private final Map<String, CompactSchema> loadedSchemas = new HashMap<>();
+    // held for as long as the context is, like the scope
+    private final Map<String, SchemaVersionIndex> versionIndexes = new HashMap<>();
     private final DocWalker docWalker;
-    private Tree<SchemaElement> walkedSchemas = null;
+    private final MetricsListener metrics;
+    private CompactDocument walkedDocument = null;
     private SchemaPathPrefixProvider prefixProvider = null;
     private SchemaPathGate pathGate = SchemaPathGate.DEFAULT;
 }
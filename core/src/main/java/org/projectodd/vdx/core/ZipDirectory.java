@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Reads the central directory of a zip file (and the local header of each entry it returns), without
+ * touching anything else in the archive. ZIP64 archives aren't supported.
+ */
+public class ZipDirectory {
+
+    public static List<ArchiveEntry> entries(final File zip, final Predicate<String> nameFilter) throws IOException {
+        try (final FileChannel channel = FileChannel.open(zip.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final int tailSize = (int)Math.min(size, EOCD_SIZE + MAX_COMMENT);
+            final ByteBuffer tail = read(channel, size - tailSize, tailSize);
+
+            int eocd = -1;
+            for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+                if (tail.getInt(i) == EOCD_SIG) {
+                    eocd = i;
+                    break;
+                }
+            }
+            if (eocd < 0) {
+                throw new IOException(zip + " is not a zip file");
+            }
+
+            final int count = tail.getShort(eocd + 10) & 0xFFFF;
+            final long directorySize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+            final long directoryOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+            if (count == 0xFFFF ||
+                    directoryOffset == 0xFFFFFFFFL) {
+                throw new IOException(zip + " is a ZIP64 archive");
+            }
+
+            final ByteBuffer directory = read(channel, directoryOffset, (int)directorySize);
+            final List<ArchiveEntry> entries = new ArrayList<>();
+            int pos = 0;
+            for (int i = 0; i < count; i++) {
+                if (directory.getInt(pos) != CEN_SIG) {
+                    throw new IOException(zip + " has a damaged central directory");
+                }
+                final int method = directory.getShort(pos + 10) & 0xFFFF;
+                final long compressedSize = directory.getInt(pos + 20) & 0xFFFFFFFFL;
+                final long entrySize = directory.getInt(pos + 24) & 0xFFFFFFFFL;
+                final int nameLength = directory.getShort(pos + 28) & 0xFFFF;
+                final int extraLength = directory.getShort(pos + 30) & 0xFFFF;
+                final int commentLength = directory.getShort(pos + 32) & 0xFFFF;
+                final long localOffset = directory.getInt(pos + 42) & 0xFFFFFFFFL;
+
+                final byte[] nameBytes = new byte[nameLength];
+                final ByteBuffer nameBuf = directory.duplicate();
+                ((Buffer)nameBuf).position(pos + CEN_SIZE);
+                nameBuf.get(nameBytes);
+                final String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+                if (nameFilter.test(name)) {
+                    entries.add(new ArchiveEntry(zip, name, dataOffset(channel, localOffset), method,
+                                                 compressedSize, entrySize));
+                }
+                pos += CEN_SIZE + nameLength + extraLength + commentLength;
+            }
+
+            return entries;
+        }
+    }
+
+    // the local header's name and extra fields can differ from the central directory's
+    private static long dataOffset(final FileChannel channel, final long localOffset) throws IOException {
+        final ByteBuffer header = read(channel, localOffset, LOC_SIZE);
+        if (header.getInt(0) != LOC_SIG) {
+            throw new IOException("Bad local header at " + localOffset);
+        }
+
+        return localOffset + LOC_SIZE + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+    }
+
+    private static ByteBuffer read(final FileChannel channel, final long position, final int length) throws IOException {
+        final ByteBuffer buf = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+
+        return buf;
+    }
+
+    private static final int EOCD_SIG = 0x06054b50;
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int LOC_SIG = 0x04034b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int CEN_SIZE = 46;
+    private static final int LOC_SIZE = 30;
+    private static final int MAX_COMMENT = 0xFFFF;
+}
@@ -31,8 +31,10 @@ public class InvalidAttributeValueHandler implements ErrorHandler {
     public HandledResult handle(ValidationContext ctx, ValidationError error) {
         final Location loc = error.location();
         final String attr = error.attribute().getLocalPart();
-        final Position pos = ctx.searchForward(loc.getLineNumber() - 1, loc.getColumnNumber(),
-                                               Pattern.compile(attr + "\\s*="));
+        final Position exact = error.element() == null ? null :
+                ctx.attributePosition(error.element(), error.position(), attr);
+        final Position pos = exact != null ? exact :
+                ctx.searchForward(loc.getLineNumber() - 1, loc.getColumnNumber(), Pattern.compile(attr + "\\s*="));
         final HandledResult result = HandledResult.from(error)
                 .addPrimaryMessage(I18N.Key.ATTRIBUTE_INVALID_VALUE, error.attributeValue(), attr);
 
@@ -38,8 +38,9 @@ public class UnexpectedAttributeHandler implements ErrorHandler {
         final Location loc = error.location();
         final String attr = error.attribute().getLocalPart();
         final String el = error.element().getLocalPart();
-        final Position pos = ctx.searchForward(loc.getLineNumber() - 1, loc.getColumnNumber(),
-                                               Pattern.compile(attr + "\\s*="));
+        final Position exact = ctx.attributePosition(error.element(), error.position(), attr);
+        final Position pos = exact != null ? exact :
+                ctx.searchForward(loc.getLineNumber() - 1, loc.getColumnNumber(), Pattern.compile(attr + "\\s*="));
         final List<List<SchemaElement>> altElements = ctx.alternateElementsForAttribute(attr);
         final HandledResult result = HandledResult.from(error)
                 .addPrimaryMessage(I18N.Key.ATTRIBUTE_NOT_ALLOWED, attr, el);
@@ -65,6 +66,11 @@ public class UnexpectedAttributeHandler implements ErrorHandler {
             result.addSecondaryMessage(I18N.Key.ATTRIBUTE_IS_ALLOWED_ON, attr, altElements);
         }
 
+        final List<String> otherVersions = ctx.otherVersionsDefiningAttribute(error.element(), attr);
+        if (!otherVersions.isEmpty()) {
+            result.addSecondaryMessage(I18N.Key.AVAILABLE_IN_OTHER_VERSIONS, attr, String.join(", ", otherVersions));
+        }
+
         if (otherAttributes.isEmpty()) {
             result.addPrimaryMessage(I18N.Key.ELEMENT_HAS_NO_ATTRIBUTES, el);
         } else {
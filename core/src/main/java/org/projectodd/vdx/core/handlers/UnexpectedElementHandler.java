@@ -40,8 +40,7 @@ public class UnexpectedElementHandler implements ErrorHandler {
 
         // check to see if this is really a duplicate element by getting the ctx.pathToDocElement() that
         // encloses the location. Then, if any siblings with the same name exist, punt to DuplicateElementHandler
-        final List<DocElement> path =
-                ctx.pathToDocElement(e -> e.qname().equals(el) && e.encloses(error.position()));
+        final List<DocElement> path = ctx.pathToDocElement(el, error.position());
 
         if (!path.isEmpty()) {
             if (!ctx.docElementSiblings(path, e -> e.qname().equals(el)).isEmpty()) {
@@ -83,6 +82,12 @@ public class UnexpectedElementHandler implements ErrorHandler {
                                       altElements);
         }
 
+        final List<String> otherVersions = ctx.otherVersionsDefiningElement(el);
+        if (!otherVersions.isEmpty()) {
+            response.addSecondaryMessage(I18N.Key.AVAILABLE_IN_OTHER_VERSIONS, elName,
+                                         String.join(", ", otherVersions));
+        }
+
         if (!otherElements.isEmpty()) {
             final String altSpelling = Util.alternateSpelling(elName, otherElements);
 
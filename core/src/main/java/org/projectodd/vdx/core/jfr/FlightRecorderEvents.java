@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core.jfr;
+
+import java.util.function.Function;
+
+import jdk.jfr.EventType;
+
+import org.projectodd.vdx.core.PhaseEvent;
+
+/**
+ * Creates an event for a phase only when its type is enabled in a running recording, so nothing is
+ * allocated or timed otherwise.
+ */
+public class FlightRecorderEvents implements Function<PhaseEvent.Type, PhaseEvent> {
+
+    @Override
+    public PhaseEvent apply(final PhaseEvent.Type type) {
+        final VDXEvent event;
+        switch (type) {
+            case SCHEMA_DISCOVERY:
+                event = SCHEMA_DISCOVERY.isEnabled() ? new SchemaDiscoveryEvent() : null;
+                break;
+            case SCHEMA_WALK:
+                event = SCHEMA_WALK.isEnabled() ? new SchemaWalkEvent() : null;
+                break;
+            case DOCUMENT_WALK:
+                event = DOCUMENT_WALK.isEnabled() ? new DocumentWalkEvent() : null;
+                break;
+            case HANDLER:
+                event = HANDLER.isEnabled() ? new ErrorHandlerEvent() : null;
+                break;
+            case PRINT:
+                event = PRINT.isEnabled() ? new ErrorPrintEvent() : null;
+                break;
+            default:
+                event = null;
+        }
+
+        if (event == null) {
+
+            return PhaseEvent.NONE;
+        }
+        event.begin();
+
+        return event;
+    }
+
+    private static final EventType SCHEMA_DISCOVERY = EventType.getEventType(SchemaDiscoveryEvent.class);
+    private static final EventType SCHEMA_WALK = EventType.getEventType(SchemaWalkEvent.class);
+    private static final EventType DOCUMENT_WALK = EventType.getEventType(DocumentWalkEvent.class);
+    private static final EventType HANDLER = EventType.getEventType(ErrorHandlerEvent.class);
+    private static final EventType PRINT = EventType.getEventType(ErrorPrintEvent.class);
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+import org.projectodd.vdx.core.ErrorType;
+import org.projectodd.vdx.core.PhaseEvent;
+
+/**
+ * The fields every VDX event can carry; each event sets the ones that apply to its phase.
+ */
+@Category("VDX")
+public abstract class VDXEvent extends Event implements PhaseEvent {
+
+    @Override
+    public PhaseEvent document(final String document) {
+        this.document = document;
+
+        return this;
+    }
+
+    @Override
+    public PhaseEvent errorType(final ErrorType errorType) {
+        this.errorType = errorType == null ? null : errorType.name();
+
+        return this;
+    }
+
+    @Override
+    public PhaseEvent schemaCount(final int schemaCount) {
+        this.schemaCount = schemaCount;
+
+        return this;
+    }
+
+    @Override
+    public PhaseEvent nodeCount(final long nodeCount) {
+        this.nodeCount = nodeCount;
+
+        return this;
+    }
+
+    @Override
+    public PhaseEvent cacheHit(final boolean cacheHit) {
+        this.cacheHit = cacheHit;
+
+        return this;
+    }
+
+    @Override
+    public void finish() {
+        commit();
+    }
+
+    @Label("Document")
+    String document;
+
+    @Label("Error Type")
+    String errorType;
+
+    @Label("Schema Count")
+    int schemaCount;
+
+    @Label("Node Count")
+    long nodeCount;
+
+    @Label("Cache Hit")
+    boolean cacheHit;
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core.schema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+
+import javax.xml.namespace.QName;
+
+import org.projectodd.vdx.core.SymbolTable;
+import org.projectodd.vdx.core.Tree;
+
+/**
+ * A frozen, array-backed copy of a walked schema tree. Nodes live in a {@link SchemaNodePool}, which
+ * stores structurally identical subtrees once, so the schema is a DAG: a node id can appear under
+ * many parents, and has no parent of its own. Queries that need the path to a node walk down from the
+ * root, visiting nodes in the same order as {@link Tree#pathsToValue}. Names are {@link SymbolTable}
+ * ids, and attribute sets are sorted arrays of attribute name ids.
+ *
+ * The pool has to be paired with a single symbol table, since it compares name ids.
+ */
+public class CompactSchema {
+
+    public static CompactSchema freeze(final Tree<SchemaElement> tree) {
+        return freeze(tree, SymbolTable.DEFAULT);
+    }
+
+    public static CompactSchema freeze(final Tree<SchemaElement> tree, final SymbolTable symbols) {
+        return freeze(tree, symbols, new SchemaNodePool());
+    }
+
+    public static CompactSchema freeze(final Tree<SchemaElement> tree, final SymbolTable symbols,
+                                       final SchemaNodePool pool) {
+        return new Builder(tree, symbols, pool).build();
+    }
+
+    public SymbolTable symbols() {
+        return this.symbols;
+    }
+
+    public int root() {
+        return this.root;
+    }
+
+    /**
+     * @return the number of nodes in the expanded tree, including the root
+     */
+    public int nodeCount() {
+        return this.nodeCount;
+    }
+
+    /**
+     * @return the number of distinct pool nodes this schema is made of, including the root
+     */
+    public int storedNodeCount() {
+        return this.storedNodeCount;
+    }
+
+    public int childCount(final int node) {
+        return this.nodes.childCount(node);
+    }
+
+    public int childAt(final int node, final int index) {
+        return this.nodes.childAt(node, index);
+    }
+
+    public QName qname(final int node) {
+        return this.symbols.qname(this.nodes.name(node));
+    }
+
+    /**
+     * @return the symbol id of the given name, or -1 if it isn't known
+     */
+    public int nameId(final QName name) {
+        return this.symbols.findQNameId(name);
+    }
+
+    public int nameIdOf(final int node) {
+        return this.nodes.name(node);
+    }
+
+    /**
+     * @return the symbol id of the given attribute name, or -1 if it isn't known
+     */
+    public int attributeId(final String attribute) {
+        return this.symbols.findNameId(attribute);
+    }
+
+    public boolean hasAttribute(final int node, final int attributeId) {
+        return attributeId >= 0 &&
+                Arrays.binarySearch(this.nodes.attributeIds(this.nodes.attributeSet(node)), attributeId) >= 0;
+    }
+
+    public Set<String> attributes(final int node) {
+        final Set<String> ret = new TreeSet<>();
+        if (node != this.root) {
+            for (int id : this.nodes.attributeIds(this.nodes.attributeSet(node))) {
+                ret.add(this.symbols.name(id));
+            }
+        }
+
+        return ret;
+    }
+
+    public List<Integer> children(final int node) {
+        final int count = childCount(node);
+        final List<Integer> ret = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ret.add(childAt(node, i));
+        }
+
+        return ret;
+    }
+
+    public int childNamed(final int node, final int nameId) {
+        final int count = childCount(node);
+        for (int i = 0; i < count; i++) {
+            final int child = childAt(node, i);
+            if (this.nodes.name(child) == nameId) {
+
+                return child;
+            }
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Follows the given path down from the root, matching each step by name.
+     *
+     * @return the node at the end of the path, or -1 if the path doesn't exist in this schema
+     */
+    public int find(final List<SchemaElement> path) {
+        int node = this.root;
+        for (SchemaElement each : path) {
+            final int id = nameId(each.qname());
+            if (id < 0) {
+
+                return NONE;
+            }
+            node = childNamed(node, id);
+            if (node == NONE) {
+
+                return NONE;
+            }
+        }
+
+        return node;
+    }
+
+    /**
+     * Returns a (shared) element view of the given node. Views are equal to the {@link SchemaElement}s
+     * the schema was frozen from, but shouldn't be mutated.
+     */
+    public SchemaElement element(final int node) {
+        final long key = ((long)this.nodes.name(node) << 32) | this.nodes.attributeSet(node);
+        return this.views.computeIfAbsent(key, __ -> {
+            final SchemaElement el = new SchemaElement(qname(node));
+            el.addAttributes(attributes(node));
+
+            return el;
+        });
+    }
+
+    /**
+     * Equivalent to {@link Tree#pathsToValue(boolean, java.util.function.Function)}, with the predicate
+     * applied to node ids instead of values. Since nodes are shared, the predicate may see the same id
+     * more than once, once for each path that leads to it.
+     */
+    public List<List<SchemaElement>> pathsTo(final boolean includeValue, final IntPredicate pred) {
+        final List<List<SchemaElement>> paths = new ArrayList<>();
+        int[] pathNodes = new int[16];
+        int[] nextChild = new int[16];
+        int depth = 0;
+        pathNodes[0] = this.root;
+        nextChild[0] = 0;
+        while (depth >= 0) {
+            final int node = pathNodes[depth];
+            final int idx = nextChild[depth];
+            if (idx == childCount(node)) {
+                depth--;
+                continue;
+            }
+            nextChild[depth]++;
+
+            final int child = childAt(node, idx);
+            depth++;
+            if (depth == pathNodes.length) {
+                pathNodes = Arrays.copyOf(pathNodes, depth * 2);
+                nextChild = Arrays.copyOf(nextChild, depth * 2);
+            }
+            pathNodes[depth] = child;
+            nextChild[depth] = 0;
+
+            if (pred.test(child)) {
+                final int length = includeValue ? depth : depth - 1;
+                final List<SchemaElement> path = new ArrayList<>(length);
+                for (int i = 1; i <= length; i++) {
+                    path.add(element(pathNodes[i]));
+                }
+                paths.add(path);
+            }
+        }
+
+        return paths;
+    }
+
+    @Override
+    public String toString() {
+        return "<CompactSchema nodes=" + (this.nodeCount - 1) +
+                ", stored=" + (this.storedNodeCount - 1) + ">";
+    }
+
+    CompactSchema(final SymbolTable symbols, final SchemaNodes nodes, final int root,
+                  final int nodeCount, final int storedNodeCount) {
+        this.symbols = symbols;
+        this.nodes = nodes;
+        this.root = root;
+        this.nodeCount = nodeCount;
+        this.storedNodeCount = storedNodeCount;
+    }
+
+    private static class Builder {
+        Builder(final Tree<SchemaElement> tree, final SymbolTable symbols, final SchemaNodePool pool) {
+            this.tree = tree;
+            this.symbols = symbols;
+            this.pool = pool;
+        }
+
+        CompactSchema build() {
+            final int root = addNode(this.tree, Collections.newSetFromMap(new IdentityHashMap<>()));
+            final SchemaNodePool.Snapshot snapshot = this.pool.snapshot();
+            final Map<Integer, Long> sizes = new HashMap<>();
+            final long nodeCount = expandedSize(snapshot, root, sizes);
+            this.pool.frozen(nodeCount);
+
+            return new CompactSchema(this.symbols, snapshot, root, (int)nodeCount, sizes.size());
+        }
+
+        // children are interned before their parent, so a node's id covers its whole subtree. The set
+        // holds the trees on the current path, and guards against cyclic trees that weren't walked (the
+        // walker cuts its own); a subtree that had a cycle cut depends on the path it was reached by, so
+        // isn't memoized.
+        private int addNode(final Tree<SchemaElement> tree, final Set<Tree<SchemaElement>> onPath) {
+            final Integer memoized = this.memo.get(tree);
+            if (memoized != null) {
+
+                return memoized;
+            }
+
+            final int cutsBefore = this.cuts;
+            onPath.add(tree);
+            final List<Tree<SchemaElement>> treeChildren = tree.children();
+            final int[] children = new int[treeChildren.size()];
+            int count = 0;
+            for (Tree<SchemaElement> child : treeChildren) {
+                if (onPath.contains(child)) {
+                    this.cuts++;
+                    continue;
+                }
+                children[count++] = addNode(child, onPath);
+            }
+            onPath.remove(tree);
+
+            final SchemaElement el = tree.value();
+            final int node = el == null ?
+                    this.pool.node(NONE, this.pool.attributeSet(NO_ATTRIBUTES), children, count) :
+                    this.pool.node(this.symbols.qnameId(el.qname()), attributeSetId(el), children, count);
+            if (this.cuts == cutsBefore) {
+                this.memo.put(tree, node);
+            }
+
+            return node;
+        }
+
+        private int attributeSetId(final SchemaElement el) {
+            Integer id = this.elementAttributeSets.get(el);
+            if (id == null) {
+                final Set<String> attrs = el.attributes();
+                final int[] ids = new int[attrs.size()];
+                int idx = 0;
+                for (String each : attrs) {
+                    ids[idx++] = this.symbols.nameId(each);
+                }
+                Arrays.sort(ids);
+                id = this.pool.attributeSet(ids);
+                this.elementAttributeSets.put(el, id);
+            }
+
+            return id;
+        }
+
+        private static long expandedSize(final SchemaNodes nodes, final int node, final Map<Integer, Long> sizes) {
+            Long size = sizes.get(node);
+            if (size == null) {
+                long sum = 1;
+                for (int i = 0; i < nodes.childCount(node); i++) {
+                    sum += expandedSize(nodes, nodes.childAt(node, i), sizes);
+                }
+                size = sum;
+                sizes.put(node, size);
+            }
+
+            return size;
+        }
+
+        private final Tree<SchemaElement> tree;
+        private final SymbolTable symbols;
+        private final SchemaNodePool pool;
+        private int cuts = 0;
+        private final Map<Tree<SchemaElement>, Integer> memo = new IdentityHashMap<>();
+        private final Map<SchemaElement, Integer> elementAttributeSets = new IdentityHashMap<>();
+
+        private static final int[] NO_ATTRIBUTES = new int[0];
+    }
+
+    public static final int NONE = -1;
+
+    private final SymbolTable symbols;
+    final SchemaNodes nodes;
+    private final int root;
+    private final int nodeCount;
+    private final int storedNodeCount;
+    private final Map<Long, SchemaElement> views = new ConcurrentHashMap<>();
+}
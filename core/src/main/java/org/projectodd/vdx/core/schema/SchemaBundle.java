@@ -0,0 +1,230 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core.schema;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.projectodd.vdx.core.ArchiveEntry;
+import org.projectodd.vdx.core.Caches;
+
+/**
+ * A directory of schemas packed into a single file, so a whole schema set is served by one open (and
+ * one mapping) instead of one per schema. The file is a table of contents followed by each schema's
+ * bytes, stored as-is or raw deflated:
+ * <pre>
+ *   MAGIC VERSION count
+ *   (name, targetNamespace or "", offset, method, compressedSize, size) per schema
+ *   data
+ * </pre>
+ * with offsets relative to the end of the table of contents.
+ *
+ * Bundles are built with {@link #write} or from the command line, usually next to the directory they
+ * pack (docs/schema becomes docs/schema.vdxb):
+ * <pre>
+ *   java -cp vdx-core.jar org.projectodd.vdx.core.schema.SchemaBundle docs/schema [bundle-file] [--compress]
+ * </pre>
+ */
+public class SchemaBundle {
+    public static final String EXTENSION = ".vdxb";
+
+    public static void main(final String[] args) throws IOException {
+        final List<String> argList = new ArrayList<>(Arrays.asList(args));
+        final boolean compress = argList.remove("--compress");
+        if (argList.isEmpty() ||
+                argList.size() > 2) {
+            System.err.println("Usage: SchemaBundle <schema-dir> [bundle-file] [--compress]");
+            System.exit(1);
+        }
+
+        final File dir = new File(argList.get(0));
+        final File bundle = argList.size() > 1 ? new File(argList.get(1)) : defaultBundleFile(dir);
+        final int count = write(dir, bundle.toPath(), compress);
+        System.out.println("Wrote " + count + " schemas to " + bundle);
+    }
+
+    public static File defaultBundleFile(final File schemaDir) {
+        return new File(schemaDir.getAbsoluteFile().getParentFile(), schemaDir.getName() + EXTENSION);
+    }
+
+    /**
+     * Packs the .xsd files in the given directory (in name order) into a bundle.
+     *
+     * @return the number of schemas written
+     */
+    public static int write(final File schemaDir, final Path bundle, final boolean compress) throws IOException {
+        final File[] files = schemaDir.listFiles((__, name) -> name.endsWith(".xsd"));
+        if (files == null) {
+            throw new IOException(schemaDir + " is not a directory");
+        }
+        Arrays.sort(files);
+
+        final Map<URL, String> namespaces = SchemaHeaderScanner.targetNamespaces(
+                Arrays.stream(files).map(SchemaBundle::url).collect(Collectors.toList()));
+
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        final ByteArrayOutputStream toc = new ByteArrayOutputStream();
+        final DataOutputStream tocOut = new DataOutputStream(toc);
+        tocOut.writeInt(MAGIC);
+        tocOut.writeInt(VERSION);
+        tocOut.writeInt(files.length);
+        for (File file : files) {
+            final byte[] bytes = Files.readAllBytes(file.toPath());
+            final int offset = data.size();
+            if (compress) {
+                final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+                try (final OutputStream out = new DeflaterOutputStream(data, deflater)) {
+                    out.write(bytes);
+                } finally {
+                    deflater.end();
+                }
+            } else {
+                data.write(bytes);
+            }
+            final String ns = namespaces.get(url(file));
+            tocOut.writeUTF(file.getName());
+            tocOut.writeUTF(ns == null ? "" : ns);
+            tocOut.writeLong(offset);
+            tocOut.writeByte(compress ? ArchiveEntry.DEFLATED : ArchiveEntry.STORED);
+            tocOut.writeLong(data.size() - offset);
+            tocOut.writeLong(bytes.length);
+        }
+        tocOut.flush();
+
+        Caches.writeAtomically(bundle, out -> {
+            toc.writeTo(out);
+            data.writeTo(out);
+        });
+
+        return files.length;
+    }
+
+    /**
+     * Reads the table of contents of the given bundle, and maps it so its schemas are read from memory.
+     */
+    public static SchemaBundle read(final File bundle) throws IOException {
+        final List<ArchiveEntry> entries = new ArrayList<>();
+        final List<String> namespaces = new ArrayList<>();
+        try (final DataInputStream in = new DataInputStream(new FileInputStream(bundle))) {
+            if (in.readInt() != MAGIC ||
+                    in.readInt() != VERSION) {
+                throw new IOException(bundle + " is not a schema bundle, or is from another version");
+            }
+
+            final int count = in.readInt();
+            final List<long[]> positions = new ArrayList<>();
+            final List<String> names = new ArrayList<>();
+            long tocSize = 12;
+            for (int i = 0; i < count; i++) {
+                final String name = in.readUTF();
+                final String ns = in.readUTF();
+                final long[] position = {in.readLong(), in.readByte(), in.readLong(), in.readLong()};
+                names.add(name);
+                namespaces.add(ns.isEmpty() ? null : ns);
+                positions.add(position);
+                tocSize += utfLength(name) + utfLength(ns) + 25;
+            }
+
+            for (int i = 0; i < count; i++) {
+                final long[] position = positions.get(i);
+                entries.add(new ArchiveEntry(bundle, names.get(i), tocSize + position[0], (int)position[1],
+                                             position[2], position[3]));
+            }
+        }
+        ArchiveEntry.map(bundle);
+
+        return new SchemaBundle(entries, namespaces);
+    }
+
+    public List<ArchiveEntry> entries() {
+        return Collections.unmodifiableList(this.entries);
+    }
+
+    public List<URL> urls() {
+        return this.entries.stream()
+                .map(ArchiveEntry::toURL)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the targetNamespace of each schema, keyed by its url, with no entry for schemas that don't
+     * declare one
+     */
+    public Map<URL, String> namespaces() {
+        final Map<URL, String> ret = new LinkedHashMap<>();
+        for (int i = 0; i < this.entries.size(); i++) {
+            if (this.namespaces.get(i) != null) {
+                ret.put(this.entries.get(i).toURL(), this.namespaces.get(i));
+            }
+        }
+
+        return ret;
+    }
+
+    private SchemaBundle(final List<ArchiveEntry> entries, final List<String> namespaces) {
+        this.entries = entries;
+        this.namespaces = namespaces;
+    }
+
+    private static URL url(final File file) {
+        try {
+            return file.toURI().toURL();
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    // the length DataOutputStream.writeUTF writes, including its two byte length prefix
+    private static int utfLength(final String s) {
+        int length = 2;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length++;
+            } else if (c > 0x07FF) {
+                length += 3;
+            } else {
+                length += 2;
+            }
+        }
+
+        return length;
+    }
+
+    private static final int MAGIC = 0x56445842; // VDXB
+    private static final int VERSION = 1;
+
+    private final List<ArchiveEntry> entries;
+    private final List<String> namespaces;
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core.schema;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.projectodd.vdx.core.Util;
+
+/**
+ * Finds the targetNamespace of a schema by reading only as far as the end of its root start tag,
+ * searching the raw bytes instead of decoding the file. Attribute values are decoded as UTF-8; schemas
+ * in other ASCII-compatible encodings are handled as long as the namespace itself is ASCII.
+ */
+public class SchemaHeaderScanner {
+
+    /**
+     * @return the targetNamespace of the given schema, or null if its root element doesn't declare one
+     */
+    public static String targetNamespace(final URL url) throws IOException {
+        final File file = Util.asFile(url);
+
+        return file != null ? scanFile(file) : scanStream(url);
+    }
+
+    /**
+     * Scans the given schemas in parallel.
+     *
+     * @return the targetNamespace of each schema, with no entry for those that don't declare one
+     */
+    public static Map<URL, String> targetNamespaces(final Collection<URL> urls) throws IOException {
+        final Map<URL, String> ret = new ConcurrentHashMap<>();
+        try {
+            urls.parallelStream().forEach(url -> {
+                try {
+                    final String ns = targetNamespace(url);
+                    if (ns != null) {
+                        ret.put(url, ns);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return new HashMap<>(ret);
+    }
+
+    private static String scanFile(final File file) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = BUFFER.get();
+            // called through Buffer, since JDK 9+ compiles these to ByteBuffer overloads Java 8 doesn't have
+            ((Buffer)buf).clear();
+            while (true) {
+                final int read = channel.read(buf);
+                final Result result = scan(buf, buf.position());
+                if (result != Result.INCOMPLETE) {
+
+                    return result.namespace;
+                }
+                if (read < 0 ||
+                        buf.capacity() >= MAX_HEADER) {
+
+                    return null;
+                }
+                if (!buf.hasRemaining()) {
+                    final ByteBuffer bigger = ByteBuffer.allocate(buf.capacity() * 2);
+                    ((Buffer)buf).flip();
+                    bigger.put(buf);
+                    buf = bigger;
+                }
+            }
+        }
+    }
+
+    private static String scanStream(final URL url) throws IOException {
+        try (final InputStream in = url.openStream()) {
+            byte[] bytes = new byte[CHUNK_SIZE];
+            int length = 0;
+            while (true) {
+                final int read = in.read(bytes, length, bytes.length - length);
+                if (read > 0) {
+                    length += read;
+                }
+                final Result result = scan(ByteBuffer.wrap(bytes), length);
+                if (result != Result.INCOMPLETE) {
+
+                    return result.namespace;
+                }
+                if (read < 0 ||
+                        bytes.length >= MAX_HEADER) {
+
+                    return null;
+                }
+                if (length == bytes.length) {
+                    final byte[] bigger = new byte[bytes.length * 2];
+                    System.arraycopy(bytes, 0, bigger, 0, length);
+                    bytes = bigger;
+                }
+            }
+        }
+    }
+
+    // skips the prolog (declaration, comments, processing instructions and doctype), then reads the
+    // attributes of the first start tag
+    static Result scan(final ByteBuffer buf, final int limit) {
+        int i = 0;
+        while (true) {
+            i = indexOf(buf, '<', i, limit);
+            if (i < 0 ||
+                    i + 1 >= limit) {
+
+                return Result.INCOMPLETE;
+            }
+
+            final byte next = buf.get(i + 1);
+            if (next == '?') {
+                i = indexOf(buf, "?>", i + 2, limit);
+            } else if (next == '!') {
+                if (startsWith(buf, "<!--", i, limit)) {
+                    i = indexOf(buf, "-->", i + 4, limit);
+                } else {
+                    i = indexOf(buf, '>', i + 2, limit);
+                }
+            } else {
+
+                return attributes(buf, i + 1, limit);
+            }
+
+            if (i < 0) {
+
+                return Result.INCOMPLETE;
+            }
+        }
+    }
+
+    private static Result attributes(final ByteBuffer buf, final int start, final int limit) {
+        // the element name
+        int i = start;
+        while (i < limit && !isSpace(buf.get(i)) && buf.get(i) != '>' && buf.get(i) != '/') {
+            i++;
+        }
+        if (i == limit) {
+
+            return Result.INCOMPLETE;
+        }
+
+        while (true) {
+            while (i < limit && isSpace(buf.get(i))) {
+                i++;
+            }
+            if (i == limit) {
+
+                return Result.INCOMPLETE;
+            }
+            final byte b = buf.get(i);
+            if (b == '>' || b == '/') {
+
+                return Result.NONE;
+            }
+
+            final int nameStart = i;
+            while (i < limit && buf.get(i) != '=' && !isSpace(buf.get(i)) && buf.get(i) != '>') {
+                i++;
+            }
+            final int nameEnd = i;
+            while (i < limit && (isSpace(buf.get(i)) || buf.get(i) == '=')) {
+                i++;
+            }
+            if (i == limit) {
+
+                return Result.INCOMPLETE;
+            }
+
+            final byte quote = buf.get(i);
+            if (quote != '"' && quote != '\'') {
+                // malformed - give up rather than guess
+                return Result.NONE;
+            }
+            final int valueStart = i + 1;
+            final int valueEnd = indexOf(buf, quote, valueStart, limit);
+            if (valueEnd < 0) {
+
+                return Result.INCOMPLETE;
+            }
+            if (regionEquals(buf, nameStart, nameEnd, TARGET_NAMESPACE)) {
+
+                return new Result(decode(buf, valueStart, valueEnd));
+            }
+            i = valueEnd + 1;
+        }
+    }
+
+    private static String decode(final ByteBuffer buf, final int start, final int end) {
+        final byte[] bytes = new byte[end - start];
+        for (int i = start; i < end; i++) {
+            bytes[i - start] = buf.get(i);
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int indexOf(final ByteBuffer buf, final char c, final int from, final int limit) {
+        return indexOf(buf, (byte)c, from, limit);
+    }
+
+    private static int indexOf(final ByteBuffer buf, final byte b, final int from, final int limit) {
+        for (int i = from; i < limit; i++) {
+            if (buf.get(i) == b) {
+
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int indexOf(final ByteBuffer buf, final String s, final int from, final int limit) {
+        for (int i = from; i + s.length() <= limit; i++) {
+            if (startsWith(buf, s, i, limit)) {
+
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean startsWith(final ByteBuffer buf, final String s, final int at, final int limit) {
+        if (at + s.length() > limit) {
+
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (buf.get(at + i) != s.charAt(i)) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean regionEquals(final ByteBuffer buf, final int start, final int end, final byte[] bytes) {
+        if (end - start != bytes.length) {
+
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (buf.get(start + i) != bytes[i]) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isSpace(final byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    static class Result {
+        Result(final String namespace) {
+            this.namespace = namespace;
+        }
+
+        static final Result INCOMPLETE = new Result(null);
+        static final Result NONE = new Result(null);
+
+        final String namespace;
+    }
+
+    private static final byte[] TARGET_NAMESPACE = "targetNamespace".getBytes(StandardCharsets.US_ASCII);
+    private static final int CHUNK_SIZE = 4096;
+    private static final int MAX_HEADER = 1 << 20;
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(CHUNK_SIZE));
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core.schema;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.projectodd.vdx.core.Caches;
+import org.projectodd.vdx.core.MetricsListener;
+import org.projectodd.vdx.core.SymbolTable;
+
+/**
+ * A compiled schema written as a flat binary image, and read back through a memory mapping instead of
+ * being deserialized. Nodes and edges stay in the mapping (and so in the page cache, shared by every
+ * process that maps the same file); only the string table and attribute sets are read onto the heap,
+ * since their ids have to be translated into the reader's {@link SymbolTable}.
+ *
+ * The image is a header followed by big-endian int sections and a UTF-8 string section:
+ * <pre>
+ *   header     MAGIC VERSION root nodes edges expandedNodes strings qnames attributeSets attributeIds stringBytes 0
+ *   nodes      (qname, attributeSet, childStart, childCount) per node
+ *   edges      child node ids
+ *   qnames     (namespace string, local name string) per qname
+ *   attrStart  attributeSets + 1 offsets into attrIds
+ *   attrIds    attribute name strings, per set
+ *   strStart   strings + 1 offsets into the string bytes
+ * </pre>
+ * Images are never modified in place - a new one is written beside it and renamed over it - so a
+ * mapping stays valid while another process replaces the file.
+ */
+public class SchemaImage {
+
+    /**
+     * Maps the image for the given schema set from the given directory, compiling and writing it first
+     * if it doesn't exist (or can't be read). If the image can't be written, the schema is returned
+     * from the heap.
+     */
+    public static CompactSchema forSchemas(final List<URL> schemas, final Path dir, final SymbolTable symbols,
+                                           final SchemaNodePool pool) throws IOException {
+        return forSchemas(schemas, dir, symbols, pool, MetricsListener.NONE);
+    }
+
+    public static CompactSchema forSchemas(final List<URL> schemas, final Path dir, final SymbolTable symbols,
+                                           final SchemaNodePool pool, final MetricsListener metrics)
+            throws IOException {
+        final Path file = dir.resolve("schemas-" + Caches.key(schemas) + ".vdxs");
+        if (Files.isRegularFile(file)) {
+            try {
+                final CompactSchema schema = map(file, symbols);
+                metrics.cacheHit(MetricsListener.Cache.SCHEMA_IMAGE);
+
+                return schema;
+            } catch (IOException ignored) {
+                // rewrite it below
+            }
+        }
+        metrics.cacheMiss(MetricsListener.Cache.SCHEMA_IMAGE);
+
+        final CompactSchema schema = CompactSchema.freeze(new SchemaWalker(schemas, symbols).walk(), symbols, pool);
+        try {
+            write(schema, file);
+
+            return map(file, symbols);
+        } catch (IOException ignored) {
+            return schema;
+        }
+    }
+
+    public static void write(final CompactSchema schema, final Path file) throws IOException {
+        final SchemaNodes nodes = schema.nodes;
+        final SymbolTable symbols = schema.symbols();
+
+        // renumber the reachable nodes densely, in breadth-first order
+        final Map<Integer, Integer> ids = new HashMap<>();
+        final List<Integer> order = new ArrayList<>();
+        final Deque<Integer> queue = new ArrayDeque<>();
+        ids.put(schema.root(), 0);
+        order.add(schema.root());
+        queue.add(schema.root());
+        int edgeCount = 0;
+        while (!queue.isEmpty()) {
+            final int node = queue.remove();
+            final int count = nodes.childCount(node);
+            edgeCount += count;
+            for (int i = 0; i < count; i++) {
+                final int child = nodes.childAt(node, i);
+                if (!ids.containsKey(child)) {
+                    ids.put(child, order.size());
+                    order.add(child);
+                    queue.add(child);
+                }
+            }
+        }
+
+        final Map<String, Integer> strings = new LinkedHashMap<>();
+        final Map<Integer, Integer> qnames = new LinkedHashMap<>();
+        final Map<Integer, Integer> attributeSets = new LinkedHashMap<>();
+        final int[] nodeData = new int[order.size() * 4];
+        final int[] edges = new int[edgeCount];
+        int edge = 0;
+        for (int idx = 0; idx < order.size(); idx++) {
+            final int node = order.get(idx);
+            final int count = nodes.childCount(node);
+            nodeData[idx * 4] = nodes.name(node) < 0 ? NONE : index(qnames, nodes.name(node));
+            nodeData[idx * 4 + 1] = index(attributeSets, nodes.attributeSet(node));
+            nodeData[idx * 4 + 2] = edge;
+            nodeData[idx * 4 + 3] = count;
+            for (int i = 0; i < count; i++) {
+                edges[edge++] = ids.get(nodes.childAt(node, i));
+            }
+        }
+
+        final int[] qnameData = new int[qnames.size() * 2];
+        int q = 0;
+        for (int qnameId : qnames.keySet()) {
+            qnameData[q++] = index(strings, symbols.namespace(symbols.namespaceIdOf(qnameId)));
+            qnameData[q++] = index(strings, symbols.name(symbols.nameIdOf(qnameId)));
+        }
+
+        final int[] attrStart = new int[attributeSets.size() + 1];
+        final List<Integer> attrIds = new ArrayList<>();
+        int a = 0;
+        for (int set : attributeSets.keySet()) {
+            attrStart[a++] = attrIds.size();
+            for (int id : nodes.attributeIds(set)) {
+                attrIds.add(index(strings, symbols.name(id)));
+            }
+        }
+        attrStart[a] = attrIds.size();
+
+        final int[] strStart = new int[strings.size() + 1];
+        final List<byte[]> stringBytes = new ArrayList<>();
+        int byteCount = 0;
+        int s = 0;
+        for (String each : strings.keySet()) {
+            final byte[] bytes = each.getBytes(StandardCharsets.UTF_8);
+            strStart[s++] = byteCount;
+            stringBytes.add(bytes);
+            byteCount += bytes.length;
+        }
+        strStart[s] = byteCount;
+
+        final int intCount = HEADER_SIZE + nodeData.length + edges.length + qnameData.length +
+                attrStart.length + attrIds.size() + strStart.length;
+        final ByteBuffer buf = ByteBuffer.allocate(intCount * 4 + byteCount);
+        buf.putInt(MAGIC).putInt(VERSION)
+                .putInt(0).putInt(order.size()).putInt(edgeCount).putInt(schema.nodeCount())
+                .putInt(strings.size()).putInt(qnames.size()).putInt(attributeSets.size()).putInt(attrIds.size())
+                .putInt(byteCount).putInt(0);
+        putInts(buf, nodeData);
+        putInts(buf, edges);
+        putInts(buf, qnameData);
+        putInts(buf, attrStart);
+        for (int id : attrIds) {
+            buf.putInt(id);
+        }
+        putInts(buf, strStart);
+        for (byte[] bytes : stringBytes) {
+            buf.put(bytes);
+        }
+        ((Buffer)buf).flip();
+
+        Caches.writeAtomically(file, out -> out.write(buf.array(), buf.arrayOffset(), buf.limit()));
+    }
+
+    public static CompactSchema map(final Path file, final SymbolTable symbols) throws IOException {
+        final MappedByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        return new MappedNodes(buf, symbols).schema(symbols);
+    }
+
+    private static class MappedNodes extends SchemaNodes {
+        MappedNodes(final ByteBuffer buf, final SymbolTable symbols) throws IOException {
+            if (buf.capacity() < HEADER_SIZE * 4) {
+                throw new IOException("Truncated schema image");
+            }
+            this.ints = buf.asIntBuffer();
+            if (this.ints.get(0) != MAGIC ||
+                    this.ints.get(1) != VERSION) {
+                throw new IOException("Not a schema image, or an image from another version");
+            }
+
+            this.root = this.ints.get(2);
+            this.nodeCount = this.ints.get(3);
+            final int edgeCount = this.ints.get(4);
+            this.expandedNodes = this.ints.get(5);
+            final int stringCount = this.ints.get(6);
+            final int qnameCount = this.ints.get(7);
+            final int attributeSetCount = this.ints.get(8);
+            final int attributeIdCount = this.ints.get(9);
+            final int byteCount = this.ints.get(10);
+
+            this.nodeBase = HEADER_SIZE;
+            this.edgeBase = this.nodeBase + this.nodeCount * 4;
+            final int qnameBase = this.edgeBase + edgeCount;
+            final int attrStartBase = qnameBase + qnameCount * 2;
+            final int attrIdBase = attrStartBase + attributeSetCount + 1;
+            final int strStartBase = attrIdBase + attributeIdCount;
+            final int byteBase = (strStartBase + stringCount + 1) * 4;
+            if ((long)byteBase + byteCount != buf.capacity()) {
+                throw new IOException("Truncated schema image");
+            }
+
+            final String[] strings = new String[stringCount];
+            final byte[] bytes = new byte[byteCount];
+            final ByteBuffer stringBuf = buf.duplicate();
+            ((Buffer)stringBuf).position(byteBase);
+            stringBuf.get(bytes);
+            for (int i = 0; i < stringCount; i++) {
+                final int start = this.ints.get(strStartBase + i);
+                strings[i] = new String(bytes, start, this.ints.get(strStartBase + i + 1) - start,
+                                        StandardCharsets.UTF_8);
+            }
+
+            this.qnameIds = new int[qnameCount];
+            for (int i = 0; i < qnameCount; i++) {
+                this.qnameIds[i] = symbols.qnameId(strings[this.ints.get(qnameBase + i * 2)],
+                                                   strings[this.ints.get(qnameBase + i * 2 + 1)]);
+            }
+
+            this.attributeSets = new int[attributeSetCount][];
+            for (int i = 0; i < attributeSetCount; i++) {
+                final int start = this.ints.get(attrStartBase + i);
+                final int[] set = new int[this.ints.get(attrStartBase + i + 1) - start];
+                for (int j = 0; j < set.length; j++) {
+                    set[j] = symbols.nameId(strings[this.ints.get(attrIdBase + start + j)]);
+                }
+                Arrays.sort(set);
+                this.attributeSets[i] = set;
+            }
+        }
+
+        CompactSchema schema(final SymbolTable symbols) {
+            return new CompactSchema(symbols, this, this.root, this.expandedNodes, this.nodeCount);
+        }
+
+        @Override
+        int name(final int node) {
+            final int qname = this.ints.get(this.nodeBase + node * 4);
+
+            return qname < 0 ? NONE : this.qnameIds[qname];
+        }
+
+        @Override
+        int attributeSet(final int node) {
+            return this.ints.get(this.nodeBase + node * 4 + 1);
+        }
+
+        @Override
+        int[] attributeIds(final int attributeSet) {
+            return this.attributeSets[attributeSet];
+        }
+
+        @Override
+        int childCount(final int node) {
+            return this.ints.get(this.nodeBase + node * 4 + 3);
+        }
+
+        @Override
+        int childAt(final int node, final int index) {
+            return this.ints.get(this.edgeBase + this.ints.get(this.nodeBase + node * 4 + 2) + index);
+        }
+
+        private final IntBuffer ints;
+        private final int root;
+        private final int nodeCount;
+        private final int expandedNodes;
+        private final int nodeBase;
+        private final int edgeBase;
+        private final int[] qnameIds;
+        private final int[][] attributeSets;
+    }
+
+    private static <T> int index(final Map<T, Integer> indexes, final T value) {
+        return indexes.computeIfAbsent(value, __ -> indexes.size());
+    }
+
+    private static void putInts(final ByteBuffer buf, final int[] ints) {
+        for (int each : ints) {
+            buf.putInt(each);
+        }
+    }
+
+    private static final int MAGIC = 0x56445853; // VDXS
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int NONE = -1;
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core.schema;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.projectodd.vdx.core.Caches;
+
+/**
+ * Maps schema urls to their targetNamespace, so picking the schemas a document needs is a lookup per
+ * schema instead of a scan of each one. Entries are keyed by {@link Caches#stamp(URL)}, so a schema
+ * is only scanned again when it changes. The index lives in memory, and is also persisted to the
+ * cache directory when there is one.
+ */
+public class SchemaNamespaceIndex {
+    public static final SchemaNamespaceIndex DEFAULT = new SchemaNamespaceIndex(Caches.directory());
+
+    public SchemaNamespaceIndex(final Path cacheDir) {
+        this.file = cacheDir == null ? null : cacheDir.resolve(FILE_NAME);
+    }
+
+    /**
+     * @return the schemas (in the given order) whose targetNamespace is one of the given namespaces
+     */
+    public List<URL> schemasProviding(final Set<String> xmlnses, final List<URL> schemas) throws IOException {
+        load();
+
+        final Map<URL, Long> stale = new HashMap<>();
+        for (URL url : schemas) {
+            final long stamp = Caches.stamp(url);
+            final Entry entry = this.entries.get(url.toExternalForm());
+            if (entry == null ||
+                    entry.stamp != stamp) {
+                stale.put(url, stamp);
+            }
+        }
+
+        if (!stale.isEmpty()) {
+            final Map<URL, String> scanned = SchemaHeaderScanner.targetNamespaces(stale.keySet());
+            stale.forEach((url, stamp) -> this.entries.put(url.toExternalForm(), new Entry(stamp, scanned.get(url))));
+            store();
+        }
+
+        final List<URL> ret = new ArrayList<>();
+        for (URL url : schemas) {
+            final Entry entry = this.entries.get(url.toExternalForm());
+            if (entry.namespace != null &&
+                    xmlnses.contains(entry.namespace)) {
+                ret.add(url);
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * @return the targetNamespace of the given schema, or null if it doesn't declare one
+     */
+    public String namespace(final URL url) throws IOException {
+        final String key = url.toExternalForm();
+        final long stamp = Caches.stamp(url);
+        final Entry entry = this.entries.get(key);
+        if (entry != null &&
+                entry.stamp == stamp) {
+
+            return entry.namespace;
+        }
+
+        final String namespace = SchemaHeaderScanner.targetNamespace(url);
+        this.entries.put(key, new Entry(stamp, namespace));
+
+        return namespace;
+    }
+
+    /**
+     * Records a namespace that's already known (from another index, say), so the schema doesn't have
+     * to be scanned.
+     */
+    public void record(final URL url, final String namespace) throws IOException {
+        load();
+        this.entries.put(url.toExternalForm(), new Entry(Caches.stamp(url), namespace));
+    }
+
+    private synchronized void load() {
+        if (this.loaded) {
+
+            return;
+        }
+        this.loaded = true;
+
+        if (this.file == null ||
+                !Files.isRegularFile(this.file)) {
+
+            return;
+        }
+
+        try (final BufferedReader reader = Files.newBufferedReader(this.file, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine())) {
+
+                return;
+            }
+            String line = reader.readLine();
+            while (line != null) {
+                final String[] parts = line.split("\t", 4);
+                if (parts.length == 4) {
+                    this.entries.putIfAbsent(parts[3],
+                                             new Entry(Long.parseLong(parts[0]),
+                                                       "1".equals(parts[1]) ? parts[2] : null));
+                }
+                line = reader.readLine();
+            }
+        } catch (IOException | NumberFormatException ignored) {
+            // a damaged index is rebuilt as schemas are seen
+        }
+    }
+
+    private synchronized void store() {
+        if (this.file == null) {
+
+            return;
+        }
+
+        try {
+            Caches.writeAtomically(this.file, out -> {
+                final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                writer.write(HEADER);
+                writer.newLine();
+                for (Map.Entry<String, Entry> each : this.entries.entrySet()) {
+                    final Entry entry = each.getValue();
+                    writer.write(entry.stamp + "\t" +
+                                         (entry.namespace == null ? "0\t" : "1\t" + entry.namespace) + "\t" +
+                                         each.getKey());
+                    writer.newLine();
+                }
+                writer.flush();
+            });
+        } catch (IOException ignored) {
+            // the in-memory index still works
+        }
+    }
+
+    private static class Entry {
+        Entry(final long stamp, final String namespace) {
+            this.stamp = stamp;
+            this.namespace = namespace;
+        }
+
+        final long stamp;
+        final String namespace;
+    }
+
+    private static final String FILE_NAME = "schema-namespaces.idx";
+    private static final String HEADER = "# vdx schema namespace index 1";
+
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private boolean loaded = false;
+}
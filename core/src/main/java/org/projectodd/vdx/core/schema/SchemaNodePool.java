@@ -0,0 +1,281 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core.schema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash-consed storage for frozen schema nodes. A node is its name (a symbol id), its attribute set and
+ * the ids of its children, and structurally identical nodes - and therefore identical subtrees - are
+ * stored once, no matter how many schemas (or versions of a schema) contain them.
+ *
+ * Nodes are never removed or modified once interned, so a pool only shrinks by being collected.
+ * {@link Snapshot}s taken under the pool's lock are safe to read from any thread.
+ */
+public class SchemaNodePool {
+    /**
+     * A pool shared for the life of the process, for callers that opt into it. It is never released, so
+     * validation uses a pool per schema set instead - see {@link SchemaScope}.
+     */
+    public static final SchemaNodePool DEFAULT = new SchemaNodePool();
+
+    public synchronized int attributeSet(final int[] sortedIds) {
+        final IntSet key = new IntSet(sortedIds);
+        Integer id = this.attributeSetIds.get(key);
+        if (id == null) {
+            id = this.attributeSets.size();
+            this.attributeSets.add(sortedIds);
+            this.attributeSetIds.put(key, id);
+        }
+
+        return id;
+    }
+
+    public synchronized int node(final int name, final int attributeSet, final int[] children, final int childCount) {
+        final int hash = hash(name, attributeSet, children, childCount);
+        int slot = hash & (this.table.length - 1);
+        while (this.table[slot] != 0) {
+            final int candidate = this.table[slot] - 1;
+            if (matches(candidate, name, attributeSet, children, childCount)) {
+
+                return candidate;
+            }
+            slot = (slot + 1) & (this.table.length - 1);
+        }
+
+        final int node = addNode(name, attributeSet, children, childCount);
+        this.table[slot] = node + 1;
+        if (this.nodeCount * 2 > this.table.length) {
+            rehash();
+        }
+
+        return node;
+    }
+
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(this.name, this.attributes, this.childStart, this.childCount, this.edges,
+                            this.attributeSets.toArray(new int[this.attributeSets.size()][]));
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(this.frozenSchemas, this.frozenNodes, this.nodeCount, this.edgeCount,
+                         this.attributeSets.size());
+    }
+
+    synchronized void frozen(final long expandedNodes) {
+        this.frozenSchemas++;
+        this.frozenNodes += expandedNodes;
+    }
+
+    private boolean matches(final int node, final int name, final int attributeSet, final int[] children,
+                            final int childCount) {
+        if (this.name[node] != name ||
+                this.attributes[node] != attributeSet ||
+                this.childCount[node] != childCount) {
+
+            return false;
+        }
+
+        final int start = this.childStart[node];
+        for (int i = 0; i < childCount; i++) {
+            if (this.edges[start + i] != children[i]) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int addNode(final int name, final int attributeSet, final int[] children, final int childCount) {
+        if (this.nodeCount == this.name.length) {
+            final int size = this.name.length * 2;
+            this.name = Arrays.copyOf(this.name, size);
+            this.attributes = Arrays.copyOf(this.attributes, size);
+            this.childStart = Arrays.copyOf(this.childStart, size);
+            this.childCount = Arrays.copyOf(this.childCount, size);
+        }
+        if (this.edgeCount + childCount > this.edges.length) {
+            this.edges = Arrays.copyOf(this.edges, Math.max(this.edges.length * 2, this.edgeCount + childCount));
+        }
+
+        final int node = this.nodeCount++;
+        this.name[node] = name;
+        this.attributes[node] = attributeSet;
+        this.childStart[node] = this.edgeCount;
+        this.childCount[node] = childCount;
+        System.arraycopy(children, 0, this.edges, this.edgeCount, childCount);
+        this.edgeCount += childCount;
+
+        return node;
+    }
+
+    private void rehash() {
+        this.table = new int[this.table.length * 2];
+        final int mask = this.table.length - 1;
+        for (int node = 0; node < this.nodeCount; node++) {
+            final int[] children = Arrays.copyOfRange(this.edges, this.childStart[node],
+                                                      this.childStart[node] + this.childCount[node]);
+            int slot = hash(this.name[node], this.attributes[node], children, children.length) & mask;
+            while (this.table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            this.table[slot] = node + 1;
+        }
+    }
+
+    private static int hash(final int name, final int attributeSet, final int[] children, final int childCount) {
+        int h = 31 * name + attributeSet;
+        for (int i = 0; i < childCount; i++) {
+            h = 31 * h + children[i];
+        }
+
+        // spread the bits, since we mask off the high ones
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * A consistent view of the nodes that existed when it was taken.
+     */
+    public static class Snapshot extends SchemaNodes {
+        Snapshot(final int[] name, final int[] attributes, final int[] childStart, final int[] childCount,
+                 final int[] edges, final int[][] attributeSets) {
+            this.name = name;
+            this.attributes = attributes;
+            this.childStart = childStart;
+            this.childCount = childCount;
+            this.edges = edges;
+            this.attributeSets = attributeSets;
+        }
+
+        @Override
+        int name(final int node) {
+            return this.name[node];
+        }
+
+        @Override
+        int attributeSet(final int node) {
+            return this.attributes[node];
+        }
+
+        @Override
+        int[] attributeIds(final int attributeSet) {
+            return this.attributeSets[attributeSet];
+        }
+
+        @Override
+        int childCount(final int node) {
+            return this.childCount[node];
+        }
+
+        @Override
+        int childAt(final int node, final int index) {
+            return this.edges[this.childStart[node] + index];
+        }
+
+        private final int[] name;
+        private final int[] attributes;
+        private final int[] childStart;
+        private final int[] childCount;
+        private final int[] edges;
+        private final int[][] attributeSets;
+    }
+
+    /**
+     * How much was shared: the "expanded" counts are what the frozen schemas would take as plain trees
+     * (one node and one edge per element), the "stored" counts are what the pool actually holds.
+     */
+    public static class Stats {
+        Stats(final int schemas, final long expandedNodes, final int storedNodes, final int storedEdges,
+              final int attributeSets) {
+            this.schemas = schemas;
+            this.expandedNodes = expandedNodes;
+            this.storedNodes = storedNodes;
+            this.storedEdges = storedEdges;
+            this.attributeSets = attributeSets;
+        }
+
+        public long expandedBytes() {
+            return this.expandedNodes * (BYTES_PER_NODE + BYTES_PER_EDGE);
+        }
+
+        public long storedBytes() {
+            return (long)this.storedNodes * BYTES_PER_NODE + (long)this.storedEdges * BYTES_PER_EDGE;
+        }
+
+        public double sharedRatio() {
+            return this.expandedNodes == 0 ? 0 : 1.0 - (double)this.storedNodes / this.expandedNodes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d schemas, %d nodes expanded, %d stored (%.1f%% shared), %d edges stored, " +
+                                         "%d attribute sets; ~%d KB instead of ~%d KB",
+                                 this.schemas, this.expandedNodes, this.storedNodes, sharedRatio() * 100,
+                                 this.storedEdges, this.attributeSets,
+                                 storedBytes() / 1024, expandedBytes() / 1024);
+        }
+
+        public final int schemas;
+        public final long expandedNodes;
+        public final int storedNodes;
+        public final int storedEdges;
+        public final int attributeSets;
+
+        // name, attribute set, child start and child count
+        private static final int BYTES_PER_NODE = 16;
+        private static final int BYTES_PER_EDGE = 4;
+    }
+
+    private static class IntSet {
+        IntSet(final int[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof IntSet &&
+                    Arrays.equals(this.ids, ((IntSet)obj).ids);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(this.ids);
+        }
+
+        final int[] ids;
+    }
+
+    private static final int INITIAL_SIZE = 256;
+
+    private int nodeCount = 0;
+    private int edgeCount = 0;
+    private int frozenSchemas = 0;
+    private long frozenNodes = 0;
+    private int[] name = new int[INITIAL_SIZE];
+    private int[] attributes = new int[INITIAL_SIZE];
+    private int[] childStart = new int[INITIAL_SIZE];
+    private int[] childCount = new int[INITIAL_SIZE];
+    private int[] edges = new int[INITIAL_SIZE];
+    private int[] table = new int[INITIAL_SIZE * 2];
+    private final List<int[]> attributeSets = new ArrayList<>();
+    private final Map<IntSet, Integer> attributeSetIds = new HashMap<>();
+}
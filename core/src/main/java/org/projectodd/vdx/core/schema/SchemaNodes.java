@@ -0,0 +1,33 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core.schema;
+
+/**
+ * Read access to frozen schema nodes, wherever they are stored. Names and attribute ids are
+ * {@link org.projectodd.vdx.core.SymbolTable} ids, and attribute id arrays are sorted.
+ */
+abstract class SchemaNodes {
+    abstract int name(int node);
+
+    abstract int attributeSet(int node);
+
+    abstract int[] attributeIds(int attributeSet);
+
+    abstract int childCount(int node);
+
+    abstract int childAt(int node, int index);
+}
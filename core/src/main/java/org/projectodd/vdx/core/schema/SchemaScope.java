@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core.schema;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.projectodd.vdx.core.SymbolTable;
+
+/**
+ * The symbol table and node pool shared by everything validating against one set of schemas, so the
+ * schemas in the set (and the versions of each) share names and subtrees, as do contexts that are open
+ * at the same time. Scopes are only weakly held here: a scope lives as long as something using it, and
+ * its symbols and nodes are collected with the last user, so validating against many schema sets over
+ * the life of a process doesn't grow the heap without bound.
+ */
+public class SchemaScope {
+    public SchemaScope() {
+        this(new SymbolTable(), new SchemaNodePool());
+    }
+
+    public SchemaScope(final SymbolTable symbols, final SchemaNodePool pool) {
+        this.symbols = symbols;
+        this.pool = pool;
+    }
+
+    /**
+     * @return the scope for the given schema set, which is created if nothing still holds one
+     */
+    public static synchronized SchemaScope forSchemas(final List<URL> schemas) {
+        final StringBuilder sb = new StringBuilder();
+        schemas.forEach(url -> sb.append(url.toExternalForm()).append('\n'));
+        final String key = sb.toString();
+        final WeakReference<SchemaScope> ref = SCOPES.get(key);
+        SchemaScope scope = ref == null ? null : ref.get();
+        if (scope == null) {
+            final Iterator<WeakReference<SchemaScope>> refs = SCOPES.values().iterator();
+            while (refs.hasNext()) {
+                if (refs.next().get() == null) {
+                    refs.remove();
+                }
+            }
+            scope = new SchemaScope();
+            SCOPES.put(key, new WeakReference<>(scope));
+        }
+
+        return scope;
+    }
+
+    public SymbolTable symbols() {
+        return this.symbols;
+    }
+
+    public SchemaNodePool pool() {
+        return this.pool;
+    }
+
+    private static final Map<String, WeakReference<SchemaScope>> SCOPES = new HashMap<>();
+
+    private final SymbolTable symbols;
+    private final SchemaNodePool pool;
+}
@@ -0,0 +1,397 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.core.schema;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.projectodd.vdx.core.Caches;
+
+/**
+ * Maps (schema family, element name) and (schema family, element name, attribute name) to the versions of
+ * the family that declare it, where a family is a versioned namespace with its version removed -
+ * urn:jboss:domain:messaging:2.0 and urn:jboss:domain:messaging:3.0 are both in urn:jboss:domain:messaging.
+ * Answers whether something that isn't allowed in one version of a schema exists in another with a lookup,
+ * instead of a walk of every version. Attributes declared on named complex types and attribute groups are
+ * credited to the elements that use them, through element types, extension bases and attribute group refs.
+ *
+ * Building an index scans every schema it's given once, so callers index one family at a time. Indexes
+ * are shared per set of schemas, but only weakly held, like {@link SchemaScope}s: an index lives as long
+ * as something using it. They're also persisted to the cache directory when there is one.
+ */
+public class SchemaVersionIndex {
+
+    public static SchemaVersionIndex forSchemas(final List<URL> schemas) throws IOException {
+        final String key = Caches.key(schemas);
+        SchemaVersionIndex index = cached(key);
+        if (index == null) {
+            final Path dir = Caches.directory();
+            final Path file = dir == null ? null : dir.resolve("versions-" + key + ".idx");
+            index = file == null ? null : read(file);
+            if (index == null) {
+                index = build(schemas);
+                if (file != null) {
+                    index.write(file);
+                }
+            }
+            index = cache(key, index);
+        }
+
+        return index;
+    }
+
+    public static SchemaVersionIndex build(final List<URL> schemas) {
+        final SchemaVersionIndex index = new SchemaVersionIndex();
+        schemas.parallelStream().forEach(url -> {
+            try {
+                index.scan(url);
+            } catch (IOException ignored) {
+                // a schema that can't be read can't be recommended, and shouldn't stop the rest being indexed
+            }
+        });
+
+        return index;
+    }
+
+    /**
+     * @return the given namespace without its trailing version, or null if it doesn't end with one
+     */
+    public static String family(final String namespace) {
+        if (namespace == null) {
+
+            return null;
+        }
+        final Matcher m = VERSIONED.matcher(namespace);
+
+        return m.matches() ? m.group(1) : null;
+    }
+
+    /**
+     * @return the namespaces in the given namespace's family that declare an element with the given name,
+     * oldest version first
+     */
+    public List<String> versionsDefiningElement(final String namespace, final String name) {
+        return lookup(ELEMENT, namespace, name);
+    }
+
+    /**
+     * @return the namespaces in the given namespace's family that declare an attribute with the given name
+     * on an element with the given name, oldest version first
+     */
+    public List<String> versionsDefiningAttribute(final String namespace, final String element,
+                                                  final String attribute) {
+        return lookup(ATTRIBUTE, namespace, attributeName(element, attribute));
+    }
+
+    @Override
+    public String toString() {
+        return "<SchemaVersionIndex names=" + this.entries.size() + ">";
+    }
+
+    private List<String> lookup(final char kind, final String namespace, final String name) {
+        final String family = family(namespace);
+        final Set<String> versions = family == null ? null : this.entries.get(key(kind, family, name));
+        if (versions == null) {
+
+            return Collections.emptyList();
+        }
+
+        synchronized (versions) {
+            return new ArrayList<>(versions);
+        }
+    }
+
+    // each schema construct that can declare attributes (an element, a named complex type or a named
+    // attribute group) is an owner. Owners are kept on a stack that mirrors the schema's nesting, and
+    // collect the attributes they declare and the owners they include, which are resolved per element at
+    // the end of the schema.
+    private void scan(final URL url) throws IOException {
+        XMLStreamReader reader = null;
+        try (final InputStream in = url.openStream()) {
+            reader = SchemaWalker.FACTORY.get().createXMLStreamReader(url.toExternalForm(), in);
+            String family = null;
+            String namespace = null;
+            final List<String> owners = new ArrayList<>();
+            final Map<String, Set<String>> attributes = new HashMap<>();
+            final Map<String, List<String>> includes = new HashMap<>();
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if ((event != XMLStreamConstants.START_ELEMENT && event != XMLStreamConstants.END_ELEMENT) ||
+                        !XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(reader.getNamespaceURI())) {
+                    continue;
+                }
+
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    owners.remove(owners.size() - 1);
+                    continue;
+                }
+
+                final String localName = reader.getLocalName();
+                final String owner = owners.isEmpty() ? null : owners.get(owners.size() - 1);
+                String nextOwner = owner;
+                if ("schema".equals(localName)) {
+                    namespace = reader.getAttributeValue(null, "targetNamespace");
+                    family = family(namespace);
+                    if (family == null) {
+
+                        return;
+                    }
+                } else if (family != null) {
+                    final String name = reader.getAttributeValue(null, "name");
+                    switch (localName) {
+                        case "element":
+                            if (name != null) {
+                                add(key(ELEMENT, family, name), namespace);
+                                nextOwner = ELEMENT_OWNER + name;
+                                include(includes, nextOwner, TYPE_OWNER, reader.getAttributeValue(null, "type"));
+                            } else {
+                                // a ref's attributes are declared by the element it refers to
+                                nextOwner = null;
+                            }
+                            break;
+
+                        case "complexType":
+                            if (name != null) {
+                                nextOwner = TYPE_OWNER + name;
+                            }
+                            break;
+
+                        case "attributeGroup":
+                            if (name != null) {
+                                nextOwner = GROUP_OWNER + name;
+                            } else {
+                                include(includes, owner, GROUP_OWNER, reader.getAttributeValue(null, "ref"));
+                            }
+                            break;
+
+                        case "extension":
+                            include(includes, owner, TYPE_OWNER, reader.getAttributeValue(null, "base"));
+                            break;
+
+                        case "attribute":
+                            final String attr = name != null ? name : localPart(reader.getAttributeValue(null, "ref"));
+                            if (owner != null && attr != null) {
+                                attributes.computeIfAbsent(owner, __ -> new HashSet<>()).add(attr);
+                            }
+                            break;
+                    }
+                }
+                owners.add(nextOwner);
+            }
+
+            final Set<String> declaring = new HashSet<>(attributes.keySet());
+            declaring.addAll(includes.keySet());
+            final Map<String, Set<String>> resolved = new HashMap<>();
+            for (String owner : declaring) {
+                if (owner.startsWith(ELEMENT_OWNER)) {
+                    final String element = owner.substring(ELEMENT_OWNER.length());
+                    for (String attr : ownerAttributes(owner, attributes, includes, resolved, new HashSet<>())) {
+                        add(key(ATTRIBUTE, family, attributeName(element, attr)), namespace);
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            // a schema that can't be read can't be recommended
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+        }
+    }
+
+    private static void include(final Map<String, List<String>> includes, final String owner, final String kind,
+                                final String ref) {
+        final String local = localPart(ref);
+        if (owner != null && local != null) {
+            includes.computeIfAbsent(owner, __ -> new ArrayList<>()).add(kind + local);
+        }
+    }
+
+    // an owner that (indirectly) includes itself isn't valid, so that include is ignored
+    private static Set<String> ownerAttributes(final String owner, final Map<String, Set<String>> attributes,
+                                               final Map<String, List<String>> includes,
+                                               final Map<String, Set<String>> resolved, final Set<String> resolving) {
+        Set<String> attrs = resolved.get(owner);
+        if (attrs == null) {
+            if (!resolving.add(owner)) {
+
+                return Collections.emptySet();
+            }
+
+            attrs = new HashSet<>(attributes.getOrDefault(owner, Collections.emptySet()));
+            for (String each : includes.getOrDefault(owner, Collections.emptyList())) {
+                attrs.addAll(ownerAttributes(each, attributes, includes, resolved, resolving));
+            }
+            resolving.remove(owner);
+            resolved.put(owner, attrs);
+        }
+
+        return attrs;
+    }
+
+    private void add(final String key, final String namespace) {
+        final Set<String> versions = this.entries.computeIfAbsent(key, __ -> new TreeSet<>(BY_VERSION));
+        synchronized (versions) {
+            versions.add(namespace);
+        }
+    }
+
+    // references to other namespaces (xs:string, say) don't match any owner, so the prefix can be dropped
+    private static String localPart(final String name) {
+        return name == null ? null : name.substring(name.indexOf(':') + 1);
+    }
+
+    private static String attributeName(final String element, final String attribute) {
+        return element + "@" + attribute;
+    }
+
+    private static String key(final char kind, final String family, final String name) {
+        return kind + "\t" + family + "\t" + name;
+    }
+
+    private static SchemaVersionIndex read(final Path file) {
+        if (!Files.isRegularFile(file)) {
+
+            return null;
+        }
+
+        final SchemaVersionIndex index = new SchemaVersionIndex();
+        try (final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine())) {
+
+                return null;
+            }
+            String line = reader.readLine();
+            while (line != null) {
+                // kind, family and name, then the namespaces that declare it
+                final String[] parts = line.split("\t");
+                for (int i = 3; i < parts.length; i++) {
+                    index.add(key(parts[0].charAt(0), parts[1], parts[2]), parts[i]);
+                }
+                line = reader.readLine();
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // rebuild a damaged index
+
+            return null;
+        }
+
+        return index;
+    }
+
+    private void write(final Path file) {
+        try {
+            Caches.writeAtomically(file, out -> {
+                final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                writer.write(HEADER);
+                writer.newLine();
+                for (Map.Entry<String, Set<String>> each : this.entries.entrySet()) {
+                    writer.write(each.getKey());
+                    for (String ns : each.getValue()) {
+                        writer.write("\t" + ns);
+                    }
+                    writer.newLine();
+                }
+                writer.flush();
+            });
+        } catch (IOException ignored) {
+            // the in-memory index still works
+        }
+    }
+
+    private static synchronized SchemaVersionIndex cached(final String key) {
+        final WeakReference<SchemaVersionIndex> ref = INDEXES.get(key);
+
+        return ref == null ? null : ref.get();
+    }
+
+    // built outside the lock, so the first of two racing builds wins
+    private static synchronized SchemaVersionIndex cache(final String key, final SchemaVersionIndex index) {
+        final SchemaVersionIndex existing = cached(key);
+        if (existing != null) {
+
+            return existing;
+        }
+        final Iterator<WeakReference<SchemaVersionIndex>> refs = INDEXES.values().iterator();
+        while (refs.hasNext()) {
+            if (refs.next().get() == null) {
+                refs.remove();
+            }
+        }
+        INDEXES.put(key, new WeakReference<>(index));
+
+        return index;
+    }
+
+    private static int compareVersions(final String a, final String b) {
+        final String[] as = a.substring(a.lastIndexOf(':') + 1).split("\\.");
+        final String[] bs = b.substring(b.lastIndexOf(':') + 1).split("\\.");
+        for (int i = 0; i < Math.max(as.length, bs.length); i++) {
+            final int cmp = Long.compare(i < as.length ? Long.parseLong(as[i]) : 0,
+                                            i < bs.length ? Long.parseLong(bs[i]) : 0);
+            if (cmp != 0) {
+
+                return cmp;
+            }
+        }
+
+        return a.compareTo(b);
+    }
+
+    private SchemaVersionIndex() {}
+
+    private static final Pattern VERSIONED = Pattern.compile("(.+):\\d+(\\.\\d+)*");
+    private static final Comparator<String> BY_VERSION = SchemaVersionIndex::compareVersions;
+    private static final char ELEMENT = 'E';
+    private static final char ATTRIBUTE = 'A';
+    private static final String ELEMENT_OWNER = "element:";
+    private static final String TYPE_OWNER = "type:";
+    private static final String GROUP_OWNER = "group:";
+    private static final String HEADER = "# vdx schema version index 2";
+    private static final Map<String, WeakReference<SchemaVersionIndex>> INDEXES = new HashMap<>();
+
+    private final Map<String, Set<String>> entries = new ConcurrentHashMap<>();
+}
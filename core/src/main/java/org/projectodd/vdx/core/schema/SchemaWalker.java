@@ -21,38 +21,57 @@ import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
+import org.projectodd.vdx.core.SymbolTable;
 import org.projectodd.vdx.core.Tree;
-import org.xml.sax.Attributes;
-import org.xml.sax.ContentHandler;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-import org.xml.sax.XMLReader;
-import org.xml.sax.helpers.DefaultHandler;
 
 public class SchemaWalker {
 
     public SchemaWalker(final List<URL> schemas) {
+        this(schemas, SymbolTable.DEFAULT);
+    }
+
+    public SchemaWalker(final List<URL> schemas, final SymbolTable symbols) {
         this.schemaSources.addAll(schemas);
+        this.symbols = symbols;
     }
 
+    /**
+     * Walks the schemas into a single tree of the elements they allow. Content that contains itself, through
+     * an element ref, a type or a group, is followed until it re-enters an element already on the path; that
+     * element appears once more there, as a leaf, so the returned tree is finite. Subtrees are shared between
+     * the elements that use them, so the tree is a DAG, and shouldn't be mutated.
+     */
     public Tree<SchemaElement> walk() {
         if (this.walkedSchemas.isEmpty()) {
             this.schemaSources.forEach(this::walk);
         }
 
-        resolveElementReferences(this.tree);
+        resolveGroupReferences();
+        resolveAttributeGroupReferences();
+        resolveElementReferences();
         applyBaseToTypes();
-        applyTypesToElement(this.tree);
+        applyTypesToElement(this.tree, Collections.newSetFromMap(new IdentityHashMap<>()));
+        attachReferencedContent();
+        cutRecursion(this.tree, Collections.newSetFromMap(new IdentityHashMap<>()),
+                     Collections.newSetFromMap(new IdentityHashMap<>()));
 
         return this.tree;
     }
@@ -62,177 +81,405 @@ public class SchemaWalker {
             return;
         }
 
-        final Deque<Tree<SchemaElement>> stack = new ArrayDeque<>();
-        stack.push(this.tree);
-
-        final ContentHandler handler = new DefaultHandler() {
-            @Override
-            public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
-                final String nameAttr = attributes.getValue("name");
-                switch (qName) {
-                    case "xs:schema":
-                        final String targetNS = attributes.getValue("targetNamespace");
-                        this.namespaceMappings = extractNamespaceMappings(attributes);
-                        this.namespaceMappings.put("DEFAULT", targetNS);
-                        walkedSchemas.put(targetNS, url);
-                        break;
-
-                    case "xs:element":
-                        final String refAttr = attributes.getValue("ref");
-                        if (refAttr != null) {
-                            currentElement = new SchemaElement(qname(refAttr), true);
-                        } else {
-                            final QName elName = qname(nameAttr);
-                            currentElement = new SchemaElement(elName, qname(attributes.getValue("type")));
-                            elements.put(elName, currentElement);
-                        }
-
-                        activeStack().push(activeStack().peek().addChild(currentElement));
-                        break;
-
-                    case "xs:attribute":
-                        if (currentElement != null) {
-                            currentElement.addAttribute(nameAttr);
-                        } else if (currentType != null) {
-                            currentType.addAttribute(nameAttr);
-                        }
-                        break;
-
-                    case "xs:complexType":
-                        if (nameAttr != null) {
-                            final QName nameQName = qname(nameAttr);
-                            currentType = types.get(nameQName);
-                            if (currentType == null) {
-                                currentType = new ComplexType(nameQName);
-                                types.put(nameQName, currentType);
-                            }
-                            currentTypeElementsStack = new ArrayDeque<>();
-                            currentTypeElementsTree = new Tree<>();
-                            currentTypeElementsStack.push(currentTypeElementsTree);
-                        } else {
-                            innerComplexTypeDepth++;
+        final Handler handler = new Handler(url);
+        XMLStreamReader reader = null;
+        try (final InputStream in = url.openStream()) {
+            reader = FACTORY.get().createXMLStreamReader(url.toExternalForm(), in);
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        if (XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(reader.getNamespaceURI())) {
+                            handler.startElement(reader);
                         }
                         break;
 
-                    case "xs:extension":
-                        final QName base = qname(attributes.getValue("base"));
-                        if (currentElement != null) {
-                            currentElement.base(base);
-                        } else if (currentType != null) {
-                            currentType.base(base);
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(reader.getNamespaceURI())) {
+                            handler.endElement(reader.getLocalName());
                         }
                         break;
                 }
             }
+        } catch (IOException | XMLStreamException e) {
+            e.printStackTrace();
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+        }
+    }
 
-            @Override
-            public void endElement(String uri, String localName, String qName) throws SAXException {
-                switch (qName) {
-                    case "xs:element":
-                        if (activeStack().peek().value() != null &&
-                                currentElement.name().equals(activeStack().peek().value().name())) {
-                            activeStack().pop();
-                            currentElement = activeStack().peek().value();
-                        } else {
-                            currentElement = null;
-                        }
-                        break;
+    /**
+     * Tracks the walk through a single schema. Only elements in the XML Schema namespace are passed in,
+     * so the schema can bind it to any prefix.
+     */
+    private class Handler {
+        Handler(final URL url) {
+            this.url = url;
+            this.stack.push(tree);
+        }
 
-                    case "xs:complexType":
-                        if (innerComplexTypeDepth > 0) {
-                        innerComplexTypeDepth--;
-                        } else if (currentType != null) {
-                            currentType.setElements(currentTypeElementsTree);
-                            currentTypeElementsStack = null;
-                            currentTypeElementsTree = null;
-                            currentType = null;
+        void startElement(final XMLStreamReader reader) {
+            final String nameAttr = name(reader.getAttributeValue(null, "name"));
+            switch (reader.getLocalName()) {
+                case "schema":
+                    this.targetNamespace = reader.getAttributeValue(null, "targetNamespace");
+                    walkedSchemas.put(this.targetNamespace, this.url);
+                    break;
+
+                case "element":
+                    final String refAttr = reader.getAttributeValue(null, "ref");
+                    final Tree<SchemaElement> parent = activeStack().peek();
+                    if (refAttr != null) {
+                        this.currentElement = new SchemaElement(qname(reader, refAttr), true);
+                        activeStack().push(parent.addChild(this.currentElement));
+                        elementReferences.add(activeStack().peek());
+                    } else {
+                        final QName elName = qname(reader, nameAttr);
+                        this.currentElement = new SchemaElement(elName,
+                                                                qname(reader, reader.getAttributeValue(null, "type")));
+                        activeStack().push(parent.addChild(this.currentElement));
+                        if (parent == tree) {
+                            globalElements.put(elName, activeStack().peek());
                         }
-                        break;
-                }
+                    }
+                    break;
+
+                case "group":
+                    if (nameAttr != null) {
+                        this.currentTypeElementsStack = new ArrayDeque<>();
+                        this.currentTypeElementsStack.push(groups.computeIfAbsent(qname(reader, nameAttr),
+                                                                                  __ -> new Tree<>()));
+                        this.inGroup = true;
+                    } else {
+                        this.groupReferenceDepth++;
+                        final QName ref = qname(reader, reader.getAttributeValue(null, "ref"));
+                        if (ref != null) {
+                            final Tree<SchemaElement> refParent = activeStack().peek();
+                            groupReferences.add(new GroupReference(refParent, refParent.children().size(), ref));
+                        }
+                    }
+                    break;
+
+                case "attributeGroup":
+                    if (nameAttr != null) {
+                        this.currentAttributeGroup = qname(reader, nameAttr);
+                        attributeGroups.computeIfAbsent(this.currentAttributeGroup, __ -> new HashSet<>());
+                    } else {
+                        this.attributeGroupReferenceDepth++;
+                        final QName ref = qname(reader, reader.getAttributeValue(null, "ref"));
+                        if (ref != null && this.currentElement != null) {
+                            final SchemaElement target = this.currentElement;
+                            attributeGroupReferences.add(new AttributeGroupReference(ref, target::addAttribute));
+                        } else if (ref != null && this.currentType != null) {
+                            final ComplexType target = this.currentType;
+                            attributeGroupReferences.add(new AttributeGroupReference(ref, target::addAttribute));
+                        } else if (ref != null && this.currentAttributeGroup != null) {
+                            attributeGroupIncludes.computeIfAbsent(this.currentAttributeGroup, __ -> new ArrayList<>())
+                                    .add(ref);
+                        }
+                    }
+                    break;
+
+                case "attribute":
+                    if (this.currentElement != null) {
+                        this.currentElement.addAttribute(nameAttr);
+                    } else if (this.currentType != null) {
+                        this.currentType.addAttribute(nameAttr);
+                    } else if (this.currentAttributeGroup != null && nameAttr != null) {
+                        attributeGroups.get(this.currentAttributeGroup).add(nameAttr);
+                    }
+                    break;
+
+                case "complexType":
+                    if (nameAttr != null) {
+                        final QName nameQName = qname(reader, nameAttr);
+                        this.currentType = types.get(nameQName);
+                        if (this.currentType == null) {
+                            this.currentType = new ComplexType(nameQName);
+                            types.put(nameQName, this.currentType);
+                        }
+                        this.currentTypeElementsStack = new ArrayDeque<>();
+                        this.currentTypeElementsTree = new Tree<>();
+                        this.currentTypeElementsStack.push(this.currentTypeElementsTree);
+                    } else {
+                        this.innerComplexTypeDepth++;
+                    }
+                    break;
+
+                case "extension":
+                    final QName base = qname(reader, reader.getAttributeValue(null, "base"));
+                    if (this.currentElement != null) {
+                        this.currentElement.base(base);
+                    } else if (this.currentType != null) {
+                        this.currentType.base(base);
+                    }
+                    break;
             }
+        }
 
-            private QName qname(final String name) {
-                if (name == null) return null;
-
-                final String uri;
-                final String local;
-                if (name.contains(":")) {
-                    final String[] parts = name.split(":");
-                    uri = this.namespaceMappings.get(parts[0]);
-                    local = parts[1];
-                } else {
-                    uri = this.namespaceMappings.get("DEFAULT");
-                    local = name;
-                }
+        void endElement(final String localName) {
+            switch (localName) {
+                case "element":
+                    if (activeStack().peek().value() != null &&
+                            this.currentElement.name().equals(activeStack().peek().value().name())) {
+                        activeStack().pop();
+                        this.currentElement = activeStack().peek().value();
+                    } else {
+                        this.currentElement = null;
+                    }
+                    break;
+
+                case "complexType":
+                    if (this.innerComplexTypeDepth > 0) {
+                        this.innerComplexTypeDepth--;
+                    } else if (this.currentType != null) {
+                        this.currentType.setElements(this.currentTypeElementsTree);
+                        this.currentTypeElementsStack = null;
+                        this.currentTypeElementsTree = null;
+                        this.currentType = null;
+                    }
+                    break;
+
+                case "group":
+                    if (this.groupReferenceDepth > 0) {
+                        this.groupReferenceDepth--;
+                    } else if (this.inGroup) {
+                        this.currentTypeElementsStack = null;
+                        this.inGroup = false;
+                    }
+                    break;
 
-                return new QName(uri, local);
+                case "attributeGroup":
+                    if (this.attributeGroupReferenceDepth > 0) {
+                        this.attributeGroupReferenceDepth--;
+                    } else {
+                        this.currentAttributeGroup = null;
+                    }
+                    break;
             }
+        }
 
-            private Deque<Tree<SchemaElement>> activeStack() {
-                return currentTypeElementsStack == null ? stack : currentTypeElementsStack;
+        // prefixed names resolve against the namespaces in scope at the current element; unprefixed
+        // ones are taken to be in the target namespace.
+        private QName qname(final XMLStreamReader reader, final String name) {
+            if (name == null) return null;
+
+            final String uri;
+            final String local;
+            final int colon = name.indexOf(':');
+            if (colon >= 0) {
+                uri = reader.getNamespaceURI(name.substring(0, colon));
+                local = name.substring(colon + 1);
+            } else {
+                uri = this.targetNamespace;
+                local = name;
             }
 
-            private Map<String, String> namespaceMappings = null;
-            private SchemaElement currentElement = null;
-            private ComplexType currentType = null;
-            private Deque<Tree<SchemaElement>> currentTypeElementsStack = null;
-            private Tree<SchemaElement> currentTypeElementsTree = null;
-            private int innerComplexTypeDepth = 0;
-        };
+            return symbols.qname(uri, local);
+        }
 
+        private String name(final String name) {
+            return name == null ? null : symbols.intern(name);
+        }
 
-        try (final InputStream in = url.openStream()) {
-            final SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+        private Deque<Tree<SchemaElement>> activeStack() {
+            return this.currentTypeElementsStack == null ? this.stack : this.currentTypeElementsStack;
+        }
 
-            final XMLReader reader = parser.getXMLReader();
-            //reader.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
-            reader.setContentHandler(handler);
-            reader.parse(new InputSource(in));
-        } catch (IOException | ParserConfigurationException | SAXException e) {
-            e.printStackTrace();
+        private final URL url;
+        private final Deque<Tree<SchemaElement>> stack = new ArrayDeque<>();
+        private String targetNamespace = null;
+        private SchemaElement currentElement = null;
+        private ComplexType currentType = null;
+        private Deque<Tree<SchemaElement>> currentTypeElementsStack = null;
+        private Tree<SchemaElement> currentTypeElementsTree = null;
+        private int innerComplexTypeDepth = 0;
+        private boolean inGroup = false;
+        private int groupReferenceDepth = 0;
+        private QName currentAttributeGroup = null;
+        private int attributeGroupReferenceDepth = 0;
+    }
+
+    private static class GroupReference {
+        GroupReference(final Tree<SchemaElement> parent, final int index, final QName group) {
+            this.parent = parent;
+            this.index = index;
+            this.group = group;
         }
+
+        final Tree<SchemaElement> parent;
+        final int index;
+        final QName group;
     }
 
-    private Map<String, String> extractNamespaceMappings(final Attributes attributes) {
-        final Map<String, String> namespaceMappings = new HashMap<>();
-        for (int i = 0; i < attributes.getLength(); i++) {
-            final String attrName = attributes.getQName(i);
-            if (attrName.equals("xmlns")) {
-                namespaceMappings.put("DEFAULT", attributes.getValue(i));
-            } else if (attrName.startsWith("xmlns:")) {
-                final String[] parts = attrName.split(":");
-                namespaceMappings.put(parts[1], attributes.getValue(i));
-            }
+    private static class AttributeGroupReference {
+        AttributeGroupReference(final QName group, final Consumer<String> target) {
+            this.group = group;
+            this.target = target;
         }
 
-        return namespaceMappings;
+        final QName group;
+        final Consumer<String> target;
     }
 
     private void applyBaseToTypes() {
-        // FIXME: this will fail if there are multiple levels of inheritance
-        this.types.values().stream()
-                .filter(type -> type.base() != null)
-                .forEach(type -> {
-                    final ComplexType baseType = this.types.get(type.base());
-                    if (baseType != null) {
-                        baseType.elements().children().forEach(t -> type.elements().addChild(t));
-                        baseType.attributes().forEach(type::addAttribute);
+        final Set<ComplexType> resolved = new HashSet<>();
+        final Set<ComplexType> resolving = new HashSet<>();
+        this.types.values().forEach(type -> applyBaseToType(type, resolved, resolving));
+    }
+
+    // bases are resolved before the types that extend them, so each type is extended exactly once, with
+    // a base that already includes everything it inherits. A base that is still being resolved means the
+    // extension chain is a cycle, which isn't valid; that link is ignored.
+    private void applyBaseToType(final ComplexType type, final Set<ComplexType> resolved,
+                                 final Set<ComplexType> resolving) {
+        if (resolved.contains(type)) {
+            return;
+        }
+
+        resolving.add(type);
+        final ComplexType baseType = type.base() == null ? null : this.types.get(type.base());
+        if (baseType != null &&
+                !resolving.contains(baseType)) {
+            applyBaseToType(baseType, resolved, resolving);
+            baseType.elements().children().forEach(t -> type.elements().addChild(t));
+            baseType.attributes().forEach(type::addAttribute);
+        }
+        resolving.remove(type);
+        resolved.add(type);
+    }
+
+    // a group's content is spliced in where it is referenced, sharing the group's element trees. A group
+    // is expanded (its own references spliced in) before it's used, and only once, since its references are
+    // removed as they are resolved. Each parent's references are spliced last to first, so the recorded
+    // positions of the earlier ones stay valid.
+    private void resolveGroupReferences() {
+        final Map<Tree<SchemaElement>, List<GroupReference>> byParent = new IdentityHashMap<>();
+        this.groupReferences.forEach(ref -> byParent.computeIfAbsent(ref.parent, __ -> new ArrayList<>()).add(ref));
+        final Set<Tree<SchemaElement>> splicing = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.groupReferences.forEach(ref -> spliceGroups(ref.parent, byParent, splicing));
+        this.groupReferences.clear();
+    }
+
+    private void spliceGroups(final Tree<SchemaElement> parent,
+                              final Map<Tree<SchemaElement>, List<GroupReference>> byParent,
+                              final Set<Tree<SchemaElement>> splicing) {
+        final List<GroupReference> refs = byParent.remove(parent);
+        if (refs == null) {
+            return;
+        }
+
+        splicing.add(parent);
+        for (int i = refs.size() - 1; i >= 0; i--) {
+            final GroupReference ref = refs.get(i);
+            final Tree<SchemaElement> group = this.groups.get(ref.group);
+            // a group that (indirectly) contains itself isn't valid, so that reference is dropped
+            if (group != null &&
+                    !splicing.contains(group)) {
+                spliceGroups(group, byParent, splicing);
+                parent.addChildren(ref.index, group.children());
+            }
+        }
+        splicing.remove(parent);
+    }
+
+    private void resolveAttributeGroupReferences() {
+        final Map<QName, Set<String>> resolved = new HashMap<>();
+        final Set<QName> resolving = new HashSet<>();
+        this.attributeGroupReferences.forEach(ref -> attributeGroup(ref.group, resolved, resolving)
+                .forEach(ref.target));
+        this.attributeGroupReferences.clear();
+    }
+
+    private Set<String> attributeGroup(final QName name, final Map<QName, Set<String>> resolved,
+                                       final Set<QName> resolving) {
+        Set<String> attrs = resolved.get(name);
+        if (attrs == null) {
+            final Set<String> own = this.attributeGroups.get(name);
+            if (own == null ||
+                    !resolving.add(name)) {
+
+                return Collections.emptySet();
+            }
+
+            attrs = new HashSet<>(own);
+            for (QName each : this.attributeGroupIncludes.getOrDefault(name, Collections.emptyList())) {
+                attrs.addAll(attributeGroup(each, resolved, resolving));
+            }
+            resolving.remove(name);
+            resolved.put(name, attrs);
+        }
+
+        return attrs;
+    }
+
+    private void resolveElementReferences() {
+        this.elementReferences.forEach(ref -> {
+            final SchemaElement el = ref.value();
+            final Tree<SchemaElement> realEl = this.globalElements.get(el.qname());
+            if (el.isReference() &&
+                    realEl != null) {
+                el.delegate(realEl.value());
+            }
+        });
+    }
+
+    // a reference gets the content of the element it refers to by pointer, once that element has had its
+    // types applied. A referenced element with a named type or base already has that content, since the
+    // delegate's type was applied to the reference too, so only what it's missing (the referenced element's
+    // own content) is added, ahead of it, in the referenced element's order.
+    private void attachReferencedContent() {
+        this.elementReferences.forEach(ref -> {
+            final Tree<SchemaElement> realEl = this.globalElements.get(ref.value().qname());
+            if (realEl != null &&
+                    realEl != ref) {
+                final Set<Tree<SchemaElement>> present = Collections.newSetFromMap(new IdentityHashMap<>());
+                present.addAll(ref.children());
+                final List<Tree<SchemaElement>> missing = new ArrayList<>();
+                realEl.children().forEach(child -> {
+                    if (!present.contains(child)) {
+                        missing.add(child);
                     }
+                });
+                ref.addChildren(0, missing);
+            }
         });
     }
 
-    private void resolveElementReferences(final Tree<SchemaElement> tree) {
-        final SchemaElement el = tree.value();
-        if (el != null && el.isReference()) {
-            final SchemaElement realEl = this.elements.get(el.qname());
-            el.delegate(realEl);
-            //FIXME: what about child elements? we can't capture that currently
+    // shared content that contains itself makes the tree cyclic. Where a child is already on the path, it
+    // is replaced with a leaf holding the same element, so the element is still allowed there but isn't
+    // followed again. Subtrees that are done are acyclic, so each is only visited once.
+    private void cutRecursion(final Tree<SchemaElement> tree, final Set<Tree<SchemaElement>> onPath,
+                              final Set<Tree<SchemaElement>> done) {
+        if (done.contains(tree)) {
+            return;
         }
 
-        tree.children().forEach(this::resolveElementReferences);
+        onPath.add(tree);
+        final List<Tree<SchemaElement>> children = tree.children();
+        for (int i = 0; i < children.size(); i++) {
+            final Tree<SchemaElement> child = children.get(i);
+            if (onPath.contains(child)) {
+                tree.setChild(i, new Tree<>(child.value()));
+            } else {
+                cutRecursion(child, onPath, done);
+            }
+        }
+        onPath.remove(tree);
+        done.add(tree);
     }
 
-    private void applyTypesToElement(final Tree<SchemaElement> tree) {
+    // type and group content is shared between the elements that use it, and can contain itself (a
+    // recursive type), so each subtree is visited once.
+    private void applyTypesToElement(final Tree<SchemaElement> tree, final Set<Tree<SchemaElement>> visited) {
+        if (!visited.add(tree)) {
+            return;
+        }
+
         final SchemaElement el = tree.value();
         if (el != null) {
             if (el.base() != null) {
@@ -244,7 +491,7 @@ public class SchemaWalker {
             }
         }
 
-        tree.children().forEach(this::applyTypesToElement);
+        tree.children().forEach(child -> applyTypesToElement(child, visited));
     }
 
     private void applyTypeToElement(final ComplexType type, final Tree<SchemaElement> tree) {
@@ -256,8 +503,24 @@ public class SchemaWalker {
         }
     }
 
-    private final Map<QName, ComplexType> types = new HashMap<>();
-    private final Map<QName, SchemaElement> elements = new HashMap<>();
+    // factories are expensive to look up and configure, and aren't guaranteed to be thread safe
+    static final ThreadLocal<XMLInputFactory> FACTORY = ThreadLocal.withInitial(() -> {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        return factory;
+    });
+
+    private final SymbolTable symbols;
+    private final Map<QName, ComplexType> types = new LinkedHashMap<>();
+    private final Map<QName, Tree<SchemaElement>> globalElements = new HashMap<>();
+    private final List<Tree<SchemaElement>> elementReferences = new ArrayList<>();
+    private final Map<QName, Tree<SchemaElement>> groups = new HashMap<>();
+    private final List<GroupReference> groupReferences = new ArrayList<>();
+    private final Map<QName, Set<String>> attributeGroups = new HashMap<>();
+    private final Map<QName, List<QName>> attributeGroupIncludes = new HashMap<>();
+    private final List<AttributeGroupReference> attributeGroupReferences = new ArrayList<>();
     private final Map<String, URL> walkedSchemas = new HashMap<>();
     private final List<URL> schemaSources = new ArrayList<>();
     private final Tree<SchemaElement> tree = new Tree<>();
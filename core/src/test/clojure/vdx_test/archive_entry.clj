@@ -0,0 +1,62 @@
+;; Copyright 2016 Red Hat, Inc, and individual contributors.
+;;
+;; Licensed under the Apache License, Version 2.0 (the "License");
+;; you may not use this file except in compliance with the License.
+;; You may obtain a copy of the License at
+;;
+;; http://www.apache.org/licenses/LICENSE-2.0
+;;
+;; Unless required by applicable law or agreed to in writing, software
+;; distributed under the License is distributed on an "AS IS" BASIS,
+;; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+;; See the License for the specific language governing permissions and
+;; limitations under the License.
+
+(ns vdx-test.archive-entry
+  (:require [clojure.test :refer :all]
+            [clojure.java.io :as io])
+  (:import [org.projectodd.vdx.core ArchiveEntry Caches ZipDirectory]
+           [org.projectodd.vdx.core.schema SchemaHeaderScanner]
+           [java.io File FileOutputStream]
+           [java.util.function Predicate]
+           [java.util.zip CRC32 ZipEntry ZipOutputStream]))
+
+(defn write-zip [entries]
+  (let [f (File/createTempFile "vdx archive?" ".jar")]
+    (.deleteOnExit f)
+    (with-open [out (ZipOutputStream. (FileOutputStream. f))]
+      (doseq [[name content stored?] entries]
+        (let [bytes (.getBytes content "UTF-8")
+              e (ZipEntry. name)]
+          (when stored?
+            (.setMethod e ZipEntry/STORED)
+            (.setSize e (count bytes))
+            (.setCrc e (.getValue (doto (CRC32.) (.update bytes)))))
+          (.putNextEntry out e)
+          (.write out bytes)
+          (.closeEntry out))))
+    f))
+
+(def xsd (slurp (io/resource "schemas/handler-test.xsd")))
+
+(deftest reads-the-central-directory
+  (let [zip (write-zip [["META-INF/MANIFEST.MF" "Manifest-Version: 1.0\n" false]
+                        ["schema/deflated.xsd" xsd false]
+                        ["schema/stored.xsd" xsd true]])
+        entries (ZipDirectory/entries zip (reify Predicate (test [_ n] (.endsWith n ".xsd"))))]
+    (is (= ["schema/deflated.xsd" "schema/stored.xsd"] (map #(.name %) entries)))
+    (is (= [ArchiveEntry/DEFLATED ArchiveEntry/STORED] (map #(.method %) entries)))
+    (doseq [e entries]
+      (is (= xsd (slurp (.open e))))
+      (is (= xsd (slurp (.openStream (.toURL e)))))
+      (is (= xsd (slurp (.openStream (ArchiveEntry/url (.toExternalForm (.toURL e))))))))))
+
+(deftest entry-urls-work-with-the-scanners
+  (let [zip (write-zip [["schema/a.xsd" xsd false]])
+        url (.toURL (first (ZipDirectory/entries zip (reify Predicate (test [_ _] true)))))]
+    (is (= "urn:vdx:test" (SchemaHeaderScanner/targetNamespace url)))
+    (is (= (Caches/stamp url) (Caches/stamp (ArchiveEntry/url (.toExternalForm url)))))))
+
+(deftest rejects-non-zips
+  (let [f (doto (File/createTempFile "vdx-not-a-zip" ".jar") (.deleteOnExit) (spit "nope"))]
+    (is (thrown? java.io.IOException (ZipDirectory/entries f (reify Predicate (test [_ _] true)))))))
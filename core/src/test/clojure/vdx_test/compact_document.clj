@@ -0,0 +1,39 @@
+;; Copyright 2016 Red Hat, Inc, and individual contributors.
+;;
+;; Licensed under the Apache License, Version 2.0 (the "License");
+;; you may not use this file except in compliance with the License.
+;; You may obtain a copy of the License at
+;;
+;; http://www.apache.org/licenses/LICENSE-2.0
+;;
+;; Unless required by applicable law or agreed to in writing, software
+;; distributed under the License is distributed on an "AS IS" BASIS,
+;; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+;; See the License for the specific language governing permissions and
+;; limitations under the License.
+
+(ns vdx-test.compact-document
+  (:require [clojure.test :refer :all]
+            [clojure.java.io :as io])
+  (:import [org.projectodd.vdx.core CompactDocument DocWalker Position]
+           [javax.xml.namespace QName]))
+
+(deftest packed-positions-order-like-positions
+  (is (< (CompactDocument/pack 1 80) (CompactDocument/pack 2 1)))
+  (is (< (CompactDocument/pack 2 1) (CompactDocument/pack 2 2)))
+  (is (= (Position. 3 7) (CompactDocument/unpack (CompactDocument/pack 3 7)))))
+
+(deftest document-structure
+  (let [doc (.document (DocWalker. (io/resource "handler-test.xml")))
+        foo (.firstChild doc (.root doc))
+        bars (filter #(= "bar" (.getLocalPart (.qname doc %)))
+                     (take-while #(not= CompactDocument/NONE %)
+                                 (iterate #(.nextSibling doc %) (.firstChild doc foo))))]
+    (is (= 5 (dec (.nodeCount doc))))
+    (is (= (QName. "urn:vdx:test" "foo") (.qname doc foo)))
+    (is (= 2 (count bars)))
+    (is (= "b" (.attribute doc (first bars) "attr2")))
+    (is (nil? (.attribute doc (second bars) "attr2")))
+    (is (= {"attr1" "a"} (into {} (.attributes (.element doc (second bars))))))
+    (is (= (first bars) (.nodeFor doc (.element doc (first bars)))))
+    (is (= (.walk (DocWalker. (io/resource "handler-test.xml"))) (.toTree doc)))))
@@ -0,0 +1,86 @@
+;; Copyright 2016 Red Hat, Inc, and individual contributors.
+;;
+;; Licensed under the Apache License, Version 2.0 (the "License");
+;; you may not use this file except in compliance with the License.
+;; You may obtain a copy of the License at
+;;
+;; http://www.apache.org/licenses/LICENSE-2.0
+;;
+;; Unless required by applicable law or agreed to in writing, software
+;; distributed under the License is distributed on an "AS IS" BASIS,
+;; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+;; See the License for the specific language governing permissions and
+;; limitations under the License.
+
+(ns vdx-test.compact-schema
+  (:require [clojure.test :refer :all]
+            [clojure.java.io :as io])
+  (:import [org.projectodd.vdx.core SymbolTable]
+           [org.projectodd.vdx.core.schema CompactSchema SchemaImage SchemaNodePool SchemaWalker SchemaElement]
+           [java.nio.file Files]
+           [java.nio.file.attribute FileAttribute]
+           [javax.xml.namespace QName]
+           [java.util.function Function IntPredicate]))
+
+(defn walk [resource]
+  (.walk (SchemaWalker. [(io/resource resource)])))
+
+(defn pred [f]
+  (reify Function (apply [_ v] (f v))))
+
+(defn element [name]
+  (SchemaElement. (QName. "urn:vdx:test" name)))
+
+(deftest paths-match-the-tree
+  (let [tree (walk "schemas/walker-test.xsd")
+        schema (CompactSchema/freeze tree)]
+    (is (= (.pathsToValue tree true (pred (constantly true)))
+           (.pathsTo schema true (reify IntPredicate (test [_ _] true)))))
+    (is (= (.pathsToValue tree false (pred #(= "sandwich" (.name %))))
+           (.pathsTo schema false (reify IntPredicate
+                                    (test [_ n] (= "sandwich" (.name (.element schema n))))))))))
+
+(deftest lookups
+  (let [schema (CompactSchema/freeze (walk "schemas/walker-test.xsd"))
+        biscuit (.find schema [(element "foo") (element "biscuit")])]
+    (is (= #{"calories" "flake"} (set (.attributes schema biscuit))))
+    (is (= ["gravy" "sconiness" "filling"]
+           (map #(.name (.element schema %)) (.children schema biscuit))))
+    (is (.hasAttribute schema biscuit (.attributeId schema "flake")))
+    (is (not (.hasAttribute schema biscuit (.attributeId schema "attr1"))))
+    (is (= -1 (.attributeId schema "nope")))
+    (is (= CompactSchema/NONE (.find schema [(element "foo") (element "nope")])))))
+
+(deftest identical-subtrees-are-stored-once
+  (let [pool (SchemaNodePool.)
+        tree (walk "schemas/walker-test.xsd")
+        a (CompactSchema/freeze tree (SymbolTable/DEFAULT) pool)
+        stored (.storedNodes (.stats pool))
+        b (CompactSchema/freeze (walk "schemas/walker-test.xsd") (SymbolTable/DEFAULT) pool)]
+    (is (= (.root a) (.root b)))
+    (is (= stored (.storedNodes (.stats pool))))
+    (is (= 2 (.schemas (.stats pool))))
+    (is (= (* 2 (.nodeCount a)) (.expandedNodes (.stats pool))))
+    (is (<= (.storedNodeCount a) (.nodeCount a)))
+    (is (= (.pathsToValue tree true (pred (constantly true)))
+           (.pathsTo b true (reify IntPredicate (test [_ _] true)))))))
+
+(deftest images-round-trip
+  (let [dir (Files/createTempDirectory "vdx-image" (make-array FileAttribute 0))
+        urls [(io/resource "wildfly-config_4_2.xsd")]
+        tree (.walk (SchemaWalker. urls))
+        written (SchemaImage/forSchemas urls dir (SymbolTable/DEFAULT) (SchemaNodePool.))
+        mapped (SchemaImage/forSchemas urls dir (SymbolTable/DEFAULT) (SchemaNodePool.))
+        all (reify IntPredicate (test [_ _] true))]
+    (is (= 1 (count (.list (.toFile dir)))))
+    (is (= (.pathsToValue tree true (pred (constantly true)))
+           (.pathsTo written true all)
+           (.pathsTo mapped true all)))
+    (is (= (.nodeCount (CompactSchema/freeze tree)) (.nodeCount mapped)))
+    (let [path [(SchemaElement. (QName. "urn:jboss:domain:4.2" "server"))
+                (SchemaElement. (QName. "urn:jboss:domain:4.2" "management"))]
+          names (fn [schema]
+                  (map #(.name (.element schema %)) (.children schema (.find schema path))))]
+      (is (not= CompactSchema/NONE (.find mapped path)))
+      (is (seq (names mapped)))
+      (is (= (names (CompactSchema/freeze tree)) (names mapped))))))
@@ -0,0 +1,129 @@
+;; Copyright 2016 Red Hat, Inc, and individual contributors.
+;;
+;; Licensed under the Apache License, Version 2.0 (the "License");
+;; you may not use this file except in compliance with the License.
+;; You may obtain a copy of the License at
+;;
+;; http://www.apache.org/licenses/LICENSE-2.0
+;;
+;; Unless required by applicable law or agreed to in writing, software
+;; distributed under the License is distributed on an "AS IS" BASIS,
+;; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+;; See the License for the specific language governing permissions and
+;; limitations under the License.
+
+(ns vdx-test.doc-lexer
+  (:require [clojure.test :refer :all]
+            [clojure.java.io :as io])
+  (:import [org.projectodd.vdx.core CompactDocument DocLexer DocLexer$LexException DocWalker Position]
+           [java.io File StringReader]))
+
+(defn lexer [s]
+  (DocLexer. (StringReader. s)))
+
+(defn position [packed]
+  (CompactDocument/unpack packed))
+
+(defn events [s]
+  (let [l (lexer s)]
+    (loop [acc []]
+      (let [e (.next l)]
+        (if (= DocLexer/END_DOCUMENT e)
+          acc
+          (recur (conj acc [(if (= DocLexer/START_ELEMENT e) :start :end) (.name l)])))))))
+
+(defn temp-doc [content]
+  (let [f (File/createTempFile "vdx-lexer" ".xml")]
+    (.deleteOnExit f)
+    (spit f content)
+    (.toURL (.toURI f))))
+
+(deftest tags-and-their-spans
+  (let [l (lexer "<?xml version=\"1.0\"?>\n<a xmlns=\"urn:a\">\n  <b x=\"1\"\n     y='2'/>\n</a>\n")]
+    (is (= DocLexer/START_ELEMENT (.next l)))
+    (is (= "a" (.name l)))
+    (is (= (Position. 2 1) (position (.start l))))
+    (is (= (Position. 2 18) (position (.end l))))
+    (is (= 22 (.startOffset l)))
+    (is (= 39 (.endOffset l)))
+
+    (is (= DocLexer/START_ELEMENT (.next l)))
+    (is (= "b" (.name l)))
+    (is (.isEmptyElement l))
+    (is (= 2 (.attributeCount l)))
+    (is (= ["x" "y"] [(.attributeName l 0) (.attributeName l 1)]))
+    (is (= (Position. 3 6) (position (.attributeNamePosition l 0))))
+    (is (= (Position. 3 9) (position (.attributeValuePosition l 0))))
+    (is (= (Position. 4 6) (position (.attributeNamePosition l 1))))
+    (is (= "2" (.attributeValue l 1)))
+    (is (= (Position. 4 13) (position (.end l))))
+
+    (is (= DocLexer/END_ELEMENT (.next l)))
+    (is (= "b" (.name l)))
+    (is (= DocLexer/END_ELEMENT (.next l)))
+    (is (= (Position. 5 1) (position (.start l))))
+    (is (= DocLexer/END_DOCUMENT (.next l)))))
+
+(deftest skips-text-comments-and-cdata
+  (is (= [[:start "a"] [:start "b"] [:end "b"] [:end "a"]]
+         (events "<!-- <x> --><a>t &amp; &#x41;<![CDATA[<y>]]><?pi <z>?><b></b></a><!-- -->"))))
+
+(deftest normalizes-attribute-values
+  (let [l (lexer "<a v=\"x &lt;&#65;\ty\r\nz\"/>")]
+    (.next l)
+    (is (= "x <A y z" (.attributeValue l 0)))))
+
+(deftest tracks-lines-across-a-small-window
+  ;; long enough to move and grow the window several times
+  (let [padding (apply str (repeat 20000 " "))
+        value (apply str (repeat 20000 "v"))
+        l (lexer (str "<a>" padding "\n<b v=\"" value "\"/>\n</a>"))]
+    (.next l)
+    (.next l)
+    (is (= "b" (.name l)))
+    (is (= (Position. 2 1) (position (.start l))))
+    (is (= value (.attributeValue l 0)))
+    (is (= (+ 4 (count padding)) (.startOffset l)))))
+
+(deftest rejects-what-it-does-not-handle
+  (doseq [s ["<!DOCTYPE a []><a/>"
+             "<a>&ent;</a>"
+             "<a></b>"
+             "<a x='1' x='2'/>"
+             "<a/><b/>"
+             "<a>"
+             "text<a/>"]]
+    (is (thrown? DocLexer$LexException (events s)) s)))
+
+(deftest walker-records-exact-positions
+  (let [doc (.document (DocWalker. (temp-doc "<a>\n  <b x=\"1\"   y=\"2\"/>\n</a>")))
+        b (.firstChild doc (.firstChild doc (.root doc)))]
+    (is (= (Position. 2 3) (.startPosition (.element doc b))))
+    (is (= (Position. 2 14) (.attributePosition doc b "y")))
+    (is (nil? (.attributePosition doc b "z")))))
+
+(deftest walker-falls-back-to-a-parser
+  (let [dtd (DocWalker. (temp-doc "<!DOCTYPE a [<!ENTITY e \"v\">]><a x=\"&e;\"/>"))
+        malformed (DocWalker. (temp-doc "<a><b></a>"))]
+    (is (.valid dtd))
+    (is (= "v" (.attribute (.document dtd) (.firstChild (.document dtd) (.root (.document dtd))) "x")))
+    (is (not (.valid malformed)))
+    (is (some? (.validationFailure malformed)))))
+
+(deftest buffers-are-handed-on-only-once-closed
+  (let [first-lexer (lexer "<a><b/></a>")
+        open-lexer (lexer "<c><d/></c>")]
+    (is (not (identical? (.chars first-lexer) (.chars open-lexer))))
+    (.close first-lexer)
+    (let [next-lexer (lexer "<e><f attr=\"x&amp;y\"/></e>")]
+      (is (identical? (.chars first-lexer) (.chars next-lexer)))
+      (is (= [[:start "c"] [:start "d"] [:end "d"] [:end "c"]]
+             (loop [acc []]
+               (let [e (.next open-lexer)]
+                 (if (= DocLexer/END_DOCUMENT e)
+                   acc
+                   (recur (conj acc [(if (= DocLexer/START_ELEMENT e) :start :end) (.name open-lexer)])))))))
+      (.close next-lexer)
+      (is (= [[:start "e"] [:start "f"] [:end "f"] [:end "e"]]
+             (events "<e><f attr=\"x&amp;y\"/></e>"))))
+    (.close open-lexer)))
@@ -0,0 +1,76 @@
+;; Copyright 2016 Red Hat, Inc, and individual contributors.
+;;
+;; Licensed under the Apache License, Version 2.0 (the "License");
+;; you may not use this file except in compliance with the License.
+;; You may obtain a copy of the License at
+;;
+;; http://www.apache.org/licenses/LICENSE-2.0
+;;
+;; Unless required by applicable law or agreed to in writing, software
+;; distributed under the License is distributed on an "AS IS" BASIS,
+;; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+;; See the License for the specific language governing permissions and
+;; limitations under the License.
+
+;; jdk.jfr is looked up at runtime, so these only run where the events were built and JFR is there.
+
+(ns vdx-test.flight-recorder
+  (:require [clojure.test :refer :all]
+            [clojure.java.io :as io]
+            [vdx-test.metrics :refer [print-error]])
+  (:import [org.projectodd.vdx.core MetricsListener PhaseEvent PhaseEvent$Type PhaseEvents]
+           [clojure.lang Reflector]
+           [java.nio.file Files]
+           [java.nio.file.attribute FileAttribute]))
+
+(defn find-class [name]
+  (try
+    (Class/forName name)
+    (catch ClassNotFoundException _ nil)))
+
+(def jfr? (and (find-class "jdk.jfr.Recording")
+               (find-class "org.projectodd.vdx.core.jfr.FlightRecorderEvents")))
+
+(def event-names
+  ["org.projectodd.vdx.SchemaDiscovery"
+   "org.projectodd.vdx.SchemaWalk"
+   "org.projectodd.vdx.DocumentWalk"
+   "org.projectodd.vdx.ErrorHandler"
+   "org.projectodd.vdx.ErrorPrint"])
+
+(defn record [f]
+  (let [recording (Reflector/invokeConstructor (find-class "jdk.jfr.Recording") (object-array 0))
+        file (Files/createTempFile "vdx" ".jfr" (make-array FileAttribute 0))]
+    (doseq [name event-names]
+      (.enable recording name))
+    (.start recording)
+    (try
+      (f)
+      (.stop recording)
+      (.dump recording file)
+      (finally
+        (.close recording)))
+    (try
+      (group-by #(.getName (.getEventType %))
+                (Reflector/invokeStaticMethod (find-class "jdk.jfr.consumer.RecordingFile") "readAllEvents"
+                                              (object-array [file])))
+      (finally
+        (Files/delete file)))))
+
+(deftest no-events-are-made-when-nothing-is-recording
+  (is (identical? PhaseEvent/NONE (PhaseEvents/start PhaseEvent$Type/PRINT))))
+
+(deftest each-phase-is-recorded
+  (when jfr?
+    (let [events (record #(print-error MetricsListener/NONE))
+          field (fn [name field] (.getValue (first (events name)) field))]
+      (is (= (set event-names) (set (keys events))))
+      (is (= "handler-test.xml" (field "org.projectodd.vdx.SchemaDiscovery" "document")))
+      (is (= 1 (field "org.projectodd.vdx.SchemaDiscovery" "schemaCount")))
+      (is (= 1 (field "org.projectodd.vdx.SchemaWalk" "schemaCount")))
+      (is (pos? (field "org.projectodd.vdx.SchemaWalk" "nodeCount")))
+      (is (false? (field "org.projectodd.vdx.SchemaWalk" "cacheHit")))
+      (is (pos? (field "org.projectodd.vdx.DocumentWalk" "nodeCount")))
+      (is (= "UNEXPECTED_ELEMENT" (field "org.projectodd.vdx.ErrorHandler" "errorType")))
+      (is (= "UNEXPECTED_ELEMENT" (field "org.projectodd.vdx.ErrorPrint" "errorType")))
+      (is (= "handler-test.xml" (field "org.projectodd.vdx.ErrorPrint" "document"))))))
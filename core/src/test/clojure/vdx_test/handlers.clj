@@ -275,3 +275,42 @@
         (assert-message (first (.secondaryMessages res))
           I18N$Key/ELEMENT_DUPLICATED_FIRST_OCCURRENCE "bar")
         (is (empty? (.primaryMessages (first (.secondaryResults res)))))))))
+
+(deftest test-other-versions
+  (let [ctx (ValidationContext. (io/resource "versions-test.xml")
+              (mapv #(io/resource (str "schemas/versions/subsystem_" % ".xsd")) ["1_0" "2_0" "10_0"]))]
+    (testing "an element from a later version"
+      (let [res (.handle ctx
+                  (-> (ValidationError. ErrorType/UNEXPECTED_ELEMENT
+                        ""
+                        (location 5 4))
+                    (.element (QName. "urn:vdx:subsystem:1.0" "pool"))))]
+        (assert-message (last (.secondaryMessages res))
+          I18N$Key/AVAILABLE_IN_OTHER_VERSIONS "pool" "urn:vdx:subsystem:2.0, urn:vdx:subsystem:10.0")))
+
+    (testing "an attribute from a later version"
+      (let [res (.handle ctx
+                  (-> (ValidationError. ErrorType/UNEXPECTED_ATTRIBUTE
+                        ""
+                        (location 3 4))
+                    (.element (QName. "urn:vdx:subsystem:1.0" "subsystem"))
+                    (.attribute (QName. "statistics-enabled"))))]
+        (assert-message (last (.secondaryMessages res))
+          I18N$Key/AVAILABLE_IN_OTHER_VERSIONS "statistics-enabled" "urn:vdx:subsystem:2.0, urn:vdx:subsystem:10.0")))
+
+    (testing "an attribute a later version has only on a different element"
+      (let [res (.handle ctx
+                  (-> (ValidationError. ErrorType/UNEXPECTED_ATTRIBUTE
+                        ""
+                        (location 3 4))
+                    (.element (QName. "urn:vdx:subsystem:1.0" "subsystem"))
+                    (.attribute (QName. "durable"))))]
+        (is (not-any? #(= I18N$Key/AVAILABLE_IN_OTHER_VERSIONS (.template %)) (.secondaryMessages res)))))
+
+    (testing "an element the document's version has"
+      (let [res (.handle ctx
+                  (-> (ValidationError. ErrorType/UNEXPECTED_ELEMENT
+                        ""
+                        (location 4 4))
+                    (.element (QName. "urn:vdx:subsystem:1.0" "queue"))))]
+        (is (not-any? #(= I18N$Key/AVAILABLE_IN_OTHER_VERSIONS (.template %)) (.secondaryMessages res)))))))
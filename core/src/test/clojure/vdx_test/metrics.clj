@@ -0,0 +1,148 @@
+;; Copyright 2016 Red Hat, Inc, and individual contributors.
+;;
+;; Licensed under the Apache License, Version 2.0 (the "License");
+;; you may not use this file except in compliance with the License.
+;; You may obtain a copy of the License at
+;;
+;; http://www.apache.org/licenses/LICENSE-2.0
+;;
+;; Unless required by applicable law or agreed to in writing, software
+;; distributed under the License is distributed on an "AS IS" BASIS,
+;; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+;; See the License for the specific language governing permissions and
+;; limitations under the License.
+
+(ns vdx-test.metrics
+  (:require [clojure.test :refer :all]
+            [clojure.java.io :as io])
+  (:import [org.projectodd.vdx.core ErrorPrinter ErrorType HistogramMetrics LatencyHistogram
+            MetricsListener MetricsListener$Cache MetricsListener$Phase Printer ValidationError]
+           [java.lang.management ManagementFactory]
+           [javax.management ObjectName]
+           [javax.xml.namespace QName]
+           [javax.xml.stream Location]))
+
+(defn location [line col]
+  (reify Location
+    (getLineNumber [_] line)
+    (getColumnNumber [_] col)))
+
+(defn recording-listener [events]
+  (reify MetricsListener
+    (phase [_ phase nanos] (swap! events update :phases conj phase))
+    (bytesRead [_ bytes] (swap! events update :bytes (fnil + 0) bytes))
+    (schemasLoaded [_ n] (swap! events update :schemas (fnil + 0) n))
+    (cacheHit [_ cache] (swap! events update :hits conj cache))
+    (cacheMiss [_ cache] (swap! events update :misses conj cache))
+    (nodesVisited [_ n] (swap! events update :nodes (fnil + 0) n))))
+
+;; maps come out of an MXBean as tables of key and value
+(defn tabular->map [table]
+  (into {} (map (fn [row] [(.get row "key") (.get row "value")]) (.values table))))
+
+(def unexpected-element
+  (-> (ValidationError. ErrorType/UNEXPECTED_ELEMENT "" (location 7 4))
+    (.element (QName. "urn:vdx:test" "bar"))))
+
+(defn print-error [metrics]
+  (-> (ErrorPrinter. (io/resource "handler-test.xml") [(io/resource "schemas/handler-test.xsd")] metrics)
+    (.printer (reify Printer (printlnErr [_ _]) (println [_ _])))
+    (.print unexpected-element)))
+
+(defn printed-errors [trace? n]
+  (let [out (atom [])]
+    (if trace?
+      (System/setProperty ErrorPrinter/TRACE_PROPERTY "true")
+      (System/clearProperty ErrorPrinter/TRACE_PROPERTY))
+    (try
+      (let [printer (-> (ErrorPrinter. (io/resource "handler-test.xml") [(io/resource "schemas/handler-test.xsd")])
+                      (.printer (reify Printer (printlnErr [_ s] (swap! out conj s)) (println [_ _]))))]
+        (dotimes [_ n]
+          (.print printer unexpected-element)))
+      (finally
+        (System/clearProperty ErrorPrinter/TRACE_PROPERTY)))
+    @out))
+
+(deftest the-listener-sees-every-phase
+  (let [events (atom {})]
+    (print-error (recording-listener events))
+    (is (= (set (MetricsListener$Phase/values)) (set (:phases @events))))
+    (is (= (.length (io/file (io/resource "handler-test.xml"))) (:bytes @events)))
+    (is (= 1 (:schemas @events)))
+    (is (some #{MetricsListener$Cache/SCHEMA} (:misses @events)))
+    (is (pos? (:nodes @events)))))
+
+(deftest phases-do-not-overlap
+  (let [nanos (atom {})
+        printer (-> (ErrorPrinter. (io/resource "handler-test.xml") [(io/resource "schemas/handler-test.xsd")]
+                                   (reify MetricsListener
+                                     (phase [_ phase n] (swap! nanos update phase (fnil + 0) n))))
+                  (.printer (reify Printer (printlnErr [_ _]) (println [_ _]))))
+        _ (reset! nanos {})
+        start (System/nanoTime)
+        _ (.print printer unexpected-element)
+        wall (- (System/nanoTime) start)]
+    (is (pos? (get @nanos MetricsListener$Phase/DOCUMENT_WALK)))
+    (is (pos? (get @nanos MetricsListener$Phase/SCHEMA_LOAD)))
+    (is (<= 0 (get @nanos MetricsListener$Phase/HANDLER)))
+    (is (<= (reduce + (vals @nanos)) wall))))
+
+(deftest the-traced-total-is-the-time-print-took
+  (System/setProperty ErrorPrinter/TRACE_PROPERTY "true")
+  (try
+    (let [out (atom [])
+          printer (-> (ErrorPrinter. (io/resource "handler-test.xml") [(io/resource "schemas/handler-test.xsd")])
+                    (.printer (reify Printer (printlnErr [_ s] (swap! out conj s)) (println [_ _]))))
+          start (System/nanoTime)
+          _ (.print printer unexpected-element)
+          wall (/ (- (System/nanoTime) start) 1e6)
+          total (Double/parseDouble (second (re-find #"vdx trace: ([0-9.]+)ms total" (last @out))))]
+      (is (<= total wall)))
+    (finally
+      (System/clearProperty ErrorPrinter/TRACE_PROPERTY))))
+
+(deftest histograms-are-accurate-to-a-sixteenth
+  (let [h (LatencyHistogram.)]
+    (doseq [v (range 1 10001)]
+      (.record h (* 1000 v)))
+    (is (= 10000 (.count h)))
+    (is (= 10000000 (.max h)))
+    (doseq [p [50 90 99]]
+      (let [expected (* p 100000)]
+        (is (<= expected (.valueAtPercentile h p) (* expected 17/16)) (str p))))
+    (.reset h)
+    (is (= 0 (.count h) (.valueAtPercentile h 50)))))
+
+(deftest metrics-are-published-as-an-mbean
+  (let [metrics (HistogramMetrics.)
+        server (ManagementFactory/getPlatformMBeanServer)
+        name (ObjectName. HistogramMetrics/OBJECT_NAME)]
+    (try
+      (is (.register metrics))
+      (is (not (.register (HistogramMetrics.))))
+      (print-error metrics)
+      (print-error metrics)
+      (is (= (* 2 (.length (io/file (io/resource "handler-test.xml"))))
+             (.getAttribute server name "BytesRead")))
+      (is (= 2 (-> (tabular->map (.getAttribute server name "Phases")) (get "HANDLER") (.get "count"))))
+      (is (= 2 (get (tabular->map (.getAttribute server name "CacheMisses")) "SCHEMA")))
+      (.invoke server name "reset" nil nil)
+      (is (= 0 (.getAttribute server name "BytesRead")))
+      (finally
+        (.unregisterMBean server name)))))
+
+(deftest reports-are-traced-only-when-asked
+  (is (not-any? #(.contains % "vdx trace") (printed-errors false 1)))
+  (let [[report trace second-report second-trace] (printed-errors true 2)]
+    (is (not (.contains report "vdx trace")))
+    (is (= second-report report))
+    (is (re-find #"vdx trace: [0-9.]+ms total \| charset-detection [0-9.]+ms, line-reading" trace))
+    (is (re-find #"handler [0-9.]+ms, rendering [0-9.]+ms" trace))
+    (is (.contains trace (format "%d bytes read | 1 xsds loaded"
+                                 (.length (io/file (io/resource "handler-test.xml"))))))
+    (is (re-find #"[1-9][0-9]* schema nodes \| [1-9][0-9]* document elements" trace))
+    (is (.contains trace "cache misses schema 1"))
+    (testing "later reports only show what they cost"
+      (is (not (.contains second-trace "line-reading")))
+      (is (.contains second-trace "0 bytes read | 0 xsds loaded"))
+      (is (.contains second-trace "cache hits schema 1")))))
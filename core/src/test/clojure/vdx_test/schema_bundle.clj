@@ -0,0 +1,53 @@
+;; Copyright 2016 Red Hat, Inc, and individual contributors.
+;;
+;; Licensed under the Apache License, Version 2.0 (the "License");
+;; you may not use this file except in compliance with the License.
+;; You may obtain a copy of the License at
+;;
+;; http://www.apache.org/licenses/LICENSE-2.0
+;;
+;; Unless required by applicable law or agreed to in writing, software
+;; distributed under the License is distributed on an "AS IS" BASIS,
+;; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+;; See the License for the specific language governing permissions and
+;; limitations under the License.
+
+(ns vdx-test.schema-bundle
+  (:require [clojure.test :refer :all]
+            [clojure.java.io :as io])
+  (:import [org.projectodd.vdx.core ValidationContext]
+           [org.projectodd.vdx.core.schema SchemaBundle SchemaElement SchemaWalker]
+           [javax.xml.namespace QName]
+           [java.nio.file Files]
+           [java.nio.file.attribute FileAttribute]))
+
+(defn schema-dir []
+  (let [dir (.toFile (Files/createTempDirectory "vdx-bundle" (make-array FileAttribute 0)))
+        schemas (io/file dir "schema")]
+    (.mkdirs schemas)
+    (io/copy (io/file (io/resource "schemas/handler-test.xsd")) (io/file schemas "handler-test.xsd"))
+    (io/copy (io/file (io/resource "wildfly-config_4_2.xsd")) (io/file schemas "wildfly-config_4_2.xsd"))
+    (spit (io/file schemas "notes.txt") "not a schema")
+    schemas))
+
+(deftest round-trips
+  (doseq [compress? [false true]]
+    (let [dir (schema-dir)
+          bundle (SchemaBundle/defaultBundleFile dir)]
+      (is (= 2 (SchemaBundle/write dir (.toPath bundle) compress?)))
+      (is (= "schema.vdxb" (.getName bundle)))
+      (let [contents (SchemaBundle/read bundle)]
+        (is (= ["handler-test.xsd" "wildfly-config_4_2.xsd"] (map #(.name %) (.entries contents))))
+        (is (= ["urn:vdx:test" "urn:jboss:domain:4.2"] (vals (.namespaces contents))))
+        (is (= (slurp (io/resource "wildfly-config_4_2.xsd"))
+               (slurp (.openStream (second (.urls contents))))))
+        (is (= (.walk (SchemaWalker. [(io/resource "wildfly-config_4_2.xsd")]))
+               (.walk (SchemaWalker. [(second (.urls contents))]))))))))
+
+(deftest bundled-schemas-can-be-validated-against
+  (let [dir (schema-dir)
+        bundle (SchemaBundle/defaultBundleFile dir)]
+    (SchemaBundle/write dir (.toPath bundle) true)
+    (let [ctx (ValidationContext. (io/resource "handler-test.xml") (.urls (SchemaBundle/read bundle)))]
+      (is (= #{"attr1" "some-attr"} (.attributesForElement ctx [(SchemaElement. (QName. "urn:vdx:test" "foo"))
+                                                                (SchemaElement. (QName. "urn:vdx:test" "bar"))]))))))
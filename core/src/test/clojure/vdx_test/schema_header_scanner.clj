@@ -0,0 +1,54 @@
+;; Copyright 2016 Red Hat, Inc, and individual contributors.
+;;
+;; Licensed under the Apache License, Version 2.0 (the "License");
+;; you may not use this file except in compliance with the License.
+;; You may obtain a copy of the License at
+;;
+;; http://www.apache.org/licenses/LICENSE-2.0
+;;
+;; Unless required by applicable law or agreed to in writing, software
+;; distributed under the License is distributed on an "AS IS" BASIS,
+;; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+;; See the License for the specific language governing permissions and
+;; limitations under the License.
+
+(ns vdx-test.schema-header-scanner
+  (:require [clojure.test :refer :all]
+            [clojure.java.io :as io])
+  (:import [org.projectodd.vdx.core.schema SchemaHeaderScanner]
+           [java.io File]))
+
+(defn schema-url [content]
+  (let [f (File/createTempFile "vdx-scanner" ".xsd")]
+    (.deleteOnExit f)
+    (spit f content)
+    (.toURL f)))
+
+(deftest finds-the-target-namespace
+  (is (= "urn:vdx:test" (SchemaHeaderScanner/targetNamespace (io/resource "schemas/handler-test.xsd"))))
+  (is (= "urn:jboss:domain:4.2" (SchemaHeaderScanner/targetNamespace (io/resource "wildfly-config_4_2.xsd")))))
+
+(deftest skips-the-prolog
+  (is (= "urn:a"
+         (SchemaHeaderScanner/targetNamespace
+           (schema-url (str "<?xml version='1.0'?>\n<!-- targetNamespace=\"urn:no\" -->\n"
+                            "<!DOCTYPE schema>\n<?pi targetNamespace='urn:no'?>\n"
+                            "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'\n"
+                            "   elementFormDefault = \"qualified\" targetNamespace = 'urn:a'>"))))))
+
+(deftest only-reads-the-root-start-tag
+  (is (nil? (SchemaHeaderScanner/targetNamespace
+              (schema-url "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n<x targetNamespace='urn:no'/>"))))
+  (is (nil? (SchemaHeaderScanner/targetNamespace (schema-url "<xs:schema targetNam"))))
+  (is (nil? (SchemaHeaderScanner/targetNamespace (schema-url "")))))
+
+(deftest handles-long-headers
+  (let [attrs (apply str (map #(format " a%s='%s'" % %) (range 2000)))]
+    (is (= "urn:long" (SchemaHeaderScanner/targetNamespace
+                        (schema-url (str "<xs:schema" attrs " targetNamespace='urn:long'>")))))))
+
+(deftest scans-in-parallel
+  (let [urls (map #(schema-url (format "<xs:schema targetNamespace='urn:%s'/>" %)) (range 50))
+        none (schema-url "<xs:schema/>")]
+    (is (= (zipmap urls (map #(str "urn:" %) (range 50)))
+           (into {} (SchemaHeaderScanner/targetNamespaces (conj urls none)))))))
@@ -0,0 +1,51 @@
+;; Copyright 2016 Red Hat, Inc, and individual contributors.
+;;
+;; Licensed under the Apache License, Version 2.0 (the "License");
+;; you may not use this file except in compliance with the License.
+;; You may obtain a copy of the License at
+;;
+;; http://www.apache.org/licenses/LICENSE-2.0
+;;
+;; Unless required by applicable law or agreed to in writing, software
+;; distributed under the License is distributed on an "AS IS" BASIS,
+;; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+;; See the License for the specific language governing permissions and
+;; limitations under the License.
+
+(ns vdx-test.schema-namespace-index
+  (:require [clojure.test :refer :all]
+            [clojure.java.io :as io])
+  (:import [org.projectodd.vdx.core.schema SchemaNamespaceIndex]
+           [java.nio.file Files]
+           [java.nio.file.attribute FileAttribute]))
+
+(defn temp-dir []
+  (.toFile (Files/createTempDirectory "vdx-index" (make-array FileAttribute 0))))
+
+(defn schema-file [dir name ns]
+  (let [f (io/file dir name)]
+    (spit f (format "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"\n    targetNamespace=\"%s\">\n</xs:schema>" ns))
+    f))
+
+(deftest selects-schemas-by-namespace
+  (let [dir (temp-dir)
+        a (.toURL (schema-file dir "a.xsd" "urn:a"))
+        b (.toURL (schema-file dir "b.xsd" "urn:b"))
+        c (.toURL (schema-file dir "c.xsd" "urn:c"))
+        index (SchemaNamespaceIndex. nil)]
+    (is (= [a c] (.schemasProviding index #{"urn:a" "urn:c"} [a b c])))
+    (is (= [] (.schemasProviding index #{"urn:d"} [a b c])))
+    (is (= "urn:b" (.namespace index b)))))
+
+(deftest persists-and-notices-changes
+  (let [dir (temp-dir)
+        cache (temp-dir)
+        f (schema-file dir "a.xsd" "urn:a")
+        a (.toURL f)]
+    (is (= [a] (.schemasProviding (SchemaNamespaceIndex. (.toPath cache)) #{"urn:a"} [a])))
+    (is (.exists (io/file cache "schema-namespaces.idx")))
+    (is (= [a] (.schemasProviding (SchemaNamespaceIndex. (.toPath cache)) #{"urn:a"} [a])))
+    (schema-file dir "a.xsd" "urn:other")
+    (.setLastModified f (+ 10000 (.lastModified f)))
+    (is (= [] (.schemasProviding (SchemaNamespaceIndex. (.toPath cache)) #{"urn:a"} [a])))
+    (is (= [a] (.schemasProviding (SchemaNamespaceIndex. (.toPath cache)) #{"urn:other"} [a])))))
@@ -0,0 +1,45 @@
+;; Copyright 2016 Red Hat, Inc, and individual contributors.
+;;
+;; Licensed under the Apache License, Version 2.0 (the "License");
+;; you may not use this file except in compliance with the License.
+;; You may obtain a copy of the License at
+;;
+;; http://www.apache.org/licenses/LICENSE-2.0
+;;
+;; Unless required by applicable law or agreed to in writing, software
+;; distributed under the License is distributed on an "AS IS" BASIS,
+;; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+;; See the License for the specific language governing permissions and
+;; limitations under the License.
+
+(ns vdx-test.schema-scope
+  (:require [clojure.test :refer :all]
+            [clojure.java.io :as io])
+  (:import [org.projectodd.vdx.core ValidationContext]
+           [org.projectodd.vdx.core.schema SchemaScope]
+           [java.lang.ref WeakReference]
+           [java.util.function Function]
+           [javax.xml.namespace QName]))
+
+(def schemas [(io/resource "schemas/handler-test.xsd")])
+
+(deftest scopes-are-shared-by-schema-set
+  (let [scope (SchemaScope/forSchemas schemas)]
+    (is (identical? scope (SchemaScope/forSchemas (vec schemas))))
+    (is (not (identical? scope (SchemaScope/forSchemas [(io/resource "schemas/walker-test.xsd")]))))))
+
+(defn weak-scope [schemas]
+  (WeakReference. (SchemaScope/forSchemas schemas)))
+
+(deftest scopes-are-released-with-their-last-user
+  (let [ref (weak-scope [(io/resource "schemas/components-test.xsd")])]
+    (dotimes [_ 5]
+      (System/gc)
+      (Thread/sleep 10))
+    (is (nil? (.get ref)))))
+
+(deftest contexts-use-their-schema-set's-scope
+  (let [ctx (ValidationContext. (io/resource "handler-test.xml") schemas)
+        scope (SchemaScope/forSchemas schemas)]
+    (.pathsToDocElement ctx (reify Function (apply [_ _] false)))
+    (is (<= 0 (.findQNameId (.symbols scope) (QName. "urn:vdx:test" "foo"))))))
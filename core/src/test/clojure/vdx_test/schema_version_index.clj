@@ -0,0 +1,79 @@
+;; Copyright 2016 Red Hat, Inc, and individual contributors.
+;;
+;; Licensed under the Apache License, Version 2.0 (the "License");
+;; you may not use this file except in compliance with the License.
+;; You may obtain a copy of the License at
+;;
+;; http://www.apache.org/licenses/LICENSE-2.0
+;;
+;; Unless required by applicable law or agreed to in writing, software
+;; distributed under the License is distributed on an "AS IS" BASIS,
+;; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+;; See the License for the specific language governing permissions and
+;; limitations under the License.
+
+(ns vdx-test.schema-version-index
+  (:require [clojure.test :refer :all]
+            [clojure.java.io :as io])
+  (:import [org.projectodd.vdx.core ValidationContext]
+           [org.projectodd.vdx.core.schema SchemaVersionIndex]
+           [java.lang.ref WeakReference]
+           [java.net URL]
+           [javax.xml.namespace QName]))
+
+(def schemas (mapv #(io/resource (str "schemas/versions/subsystem_" % ".xsd")) ["10_0" "1_0" "2_0"]))
+
+(deftest families
+  (is (= "urn:jboss:domain:messaging" (SchemaVersionIndex/family "urn:jboss:domain:messaging:3.0")))
+  (is (= "urn:jboss:domain" (SchemaVersionIndex/family "urn:jboss:domain:4")))
+  (is (nil? (SchemaVersionIndex/family "urn:vdx:test")))
+  (is (nil? (SchemaVersionIndex/family nil))))
+
+(deftest lookups
+  (let [index (SchemaVersionIndex/build schemas)]
+    (is (= ["urn:vdx:subsystem:2.0" "urn:vdx:subsystem:10.0"]
+           (.versionsDefiningElement index "urn:vdx:subsystem:1.0" "pool")))
+    (is (= ["urn:vdx:subsystem:1.0" "urn:vdx:subsystem:2.0" "urn:vdx:subsystem:10.0"]
+           (.versionsDefiningElement index "urn:vdx:subsystem:2.0" "queue")))
+    (is (= ["urn:vdx:subsystem:2.0" "urn:vdx:subsystem:10.0"]
+           (.versionsDefiningAttribute index "urn:vdx:subsystem:3.0" "subsystem" "statistics-enabled")))
+    (is (empty? (.versionsDefiningAttribute index "urn:vdx:subsystem:1.0" "subsystem" "pool")))
+    (testing "attributes belong to the element that declares them"
+      (is (empty? (.versionsDefiningAttribute index "urn:vdx:subsystem:1.0" "queue" "statistics-enabled")))
+      (is (empty? (.versionsDefiningAttribute index "urn:vdx:subsystem:1.0" "subsystem" "durable"))))
+    (testing "attributes from named types and attribute groups belong to the elements that use them"
+      (is (= ["urn:vdx:subsystem:2.0" "urn:vdx:subsystem:10.0"]
+             (.versionsDefiningAttribute index "urn:vdx:subsystem:1.0" "queue" "durable"))))
+    (is (empty? (.versionsDefiningElement index "urn:vdx:other:1.0" "pool")))
+    (is (empty? (.versionsDefiningElement index "urn:vdx:test" "pool")))))
+
+(deftest indexes-are-shared
+  (is (identical? (SchemaVersionIndex/forSchemas schemas) (SchemaVersionIndex/forSchemas schemas))))
+
+(deftest unreadable-schemas-are-skipped
+  (let [index (SchemaVersionIndex/build (conj schemas (URL. "file:/no/such/subsystem_3_0.xsd")))]
+    (is (= ["urn:vdx:subsystem:2.0" "urn:vdx:subsystem:10.0"]
+           (.versionsDefiningElement index "urn:vdx:subsystem:1.0" "pool")))))
+
+(defn weak-index [schemas]
+  (WeakReference. (SchemaVersionIndex/forSchemas schemas)))
+
+(deftest indexes-are-released-with-their-last-user
+  (let [ref (weak-index [(io/resource "schemas/versions/subsystem_1_0.xsd")])]
+    (dotimes [_ 5]
+      (System/gc)
+      (Thread/sleep 10))
+    (is (nil? (.get ref)))))
+
+(deftest contexts-index-only-the-family
+  (let [ctx (ValidationContext. (io/resource "versions-test.xml")
+              (into [(io/resource "schemas/handler-test.xsd")] schemas))]
+    (is (= ["urn:vdx:subsystem:2.0" "urn:vdx:subsystem:10.0"]
+           (.otherVersionsDefiningElement ctx (QName. "urn:vdx:subsystem:1.0" "pool"))))
+    ;; the context holds the index it built, so the index for just the family's schemas outlives a gc
+    (let [ref (weak-index schemas)]
+      (dotimes [_ 5]
+        (System/gc)
+        (Thread/sleep 10))
+      (is (some? (.get ref))))
+    (is (empty? (.otherVersionsDefiningElement ctx (QName. "urn:vdx:subsystem:2.0" "pool"))))))
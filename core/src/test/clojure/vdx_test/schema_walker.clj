@@ -17,7 +17,7 @@
         [clojure.test :refer :all]
         [clojure.java.io :as io])
     (:import
-      [org.projectodd.vdx.core.schema SchemaWalker SchemaElement]
+      [org.projectodd.vdx.core.schema CompactSchema SchemaWalker SchemaElement]
       [org.projectodd.vdx.core Tree]
       [javax.xml.namespace QName]))
 
@@ -95,3 +95,65 @@
 
     (is (= tree output-tree))))
 
+
+(deftest the-schema-namespace-can-use-any-prefix
+  (let [xs (io/resource "schemas/walker-test.xsd")
+        xsd (doto (java.io.File/createTempFile "walker-test" ".xsd") .deleteOnExit)]
+    (spit xsd (-> (slurp xs)
+                  (.replace "xmlns:xs=" "xmlns:xsd=")
+                  (.replace "<xs:" "<xsd:")
+                  (.replace "</xs:" "</xsd:")
+                  (.replace "\"xs:" "\"xsd:")))
+    (is (= (.walk (SchemaWalker. [xs]))
+           (.walk (SchemaWalker. [(.toURL (.toURI xsd))]))))))
+
+(deftest bases-are-applied-through-every-level
+  (let [tree (.walk (SchemaWalker. [(io/resource "schemas/inheritance-test.xsd")]))
+        top (fn [name] (first (filter #(= name (.name (.value %))) (.children tree))))
+        child-names (fn [t] (map #(.name (.value %)) (.children t)))
+        topic (top "topic")]
+    (is (= #{"durable" "entries" "name"} (set (.attributes (.value topic)))))
+    (is (= ["subscriber" "address" "security"] (child-names topic)))
+    (is (= ["a" "b"] (child-names (top "loop"))))))
+
+(deftest groups-and-references-are-resolved
+  (let [tree (.walk (SchemaWalker. [(io/resource "schemas/components-test.xsd")]))
+        child (fn [t name] (first (filter #(= name (.name (.value %))) (.children t))))
+        child-names (fn [t] (map #(.name (.value %)) (.children t)))
+        server (child tree "server")
+        not-el (child server "not")]
+    (is (= ["server" "pool"] (child-names tree)))
+    (is (= ["first" "any-address" "loopback" "not" "pool" "last"] (child-names server)))
+    (is (= #{"name" "value"} (set (.attributes (.value server)))))
+    (is (= #{"value"} (set (.attributes (.value (child server "loopback"))))))
+    (testing "groups in named types"
+      (is (= #{"name" "value"} (set (.attributes (.value not-el)))))
+      (is (= ["any-address" "loopback" "not"] (child-names not-el))))
+    (testing "element references get the referenced element's content"
+      (is (= #{"stats"} (set (.attributes (.value (child server "pool"))))))
+      (is (= ["max-size"] (child-names (child server "pool")))))
+    (testing "group content is shared, not copied"
+      (is (identical? (child server "loopback") (child not-el "loopback"))))
+    (testing "recursive content can be frozen"
+      (let [schema (CompactSchema/freeze tree)
+            path (fn [& names] (map #(SchemaElement. (QName. "urn:vdx:test" %)) names))]
+        (is (not= CompactSchema/NONE (.find schema (path "server" "not" "loopback"))))))))
+
+(deftest recursive-references-are-cut-where-they-re-enter
+  (let [tree (.walk (SchemaWalker. [(io/resource "schemas/recursive-test.xsd")]))
+        child (fn [t name] (first (filter #(= name (.name (.value %))) (.children t))))
+        child-names (fn [t] (map #(.name (.value %)) (.children t)))
+        node (child (child tree "root") "node")
+        path (fn [& names] (map #(SchemaElement. (QName. "urn:vdx:test" %)) names))]
+    (testing "the walked tree is finite"
+      (is (= 4 (count (.pathsToValue tree (reify java.util.function.Function
+                                             (apply [_ el] (= "leaf" (.name el)))))))))
+    (testing "the nested element is still allowed"
+      (is (= ["node" "leaf"] (child-names node)))
+      (is (= #{"name"} (set (.attributes (.value (child node "node")))))))
+    (testing "the frozen schema keeps the nested element"
+      (let [schema (CompactSchema/freeze tree)]
+        (is (not= CompactSchema/NONE (.find schema (path "root" "node" "node" "leaf"))))
+        (is (not= CompactSchema/NONE (.find schema (path "node" "node"))))))
+    (testing "references merge the element's own content with its base's"
+      (is (= ["own" "inherited"] (child-names (child (child tree "root") "extended")))))))
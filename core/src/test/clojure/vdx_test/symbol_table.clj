@@ -0,0 +1,45 @@
+;; Copyright 2016 Red Hat, Inc, and individual contributors.
+;;
+;; Licensed under the Apache License, Version 2.0 (the "License");
+;; you may not use this file except in compliance with the License.
+;; You may obtain a copy of the License at
+;;
+;; http://www.apache.org/licenses/LICENSE-2.0
+;;
+;; Unless required by applicable law or agreed to in writing, software
+;; distributed under the License is distributed on an "AS IS" BASIS,
+;; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+;; See the License for the specific language governing permissions and
+;; limitations under the License.
+
+(ns vdx-test.symbol-table
+  (:require [clojure.test :refer :all])
+  (:import [org.projectodd.vdx.core SymbolTable]
+           [javax.xml.namespace QName]))
+
+(deftest interning
+  (let [symbols (SymbolTable.)
+        id (.qnameId symbols "urn:a" "foo")]
+    (is (= id (.qnameId symbols (QName. "urn:a" "foo"))))
+    (is (not= id (.qnameId symbols "urn:b" "foo")))
+    (is (identical? (.qname symbols id) (.intern symbols (QName. "urn:a" "foo"))))
+    (is (= (.nameIdOf symbols id) (.nameIdOf symbols (.qnameId symbols "urn:b" "foo"))))
+    (is (= "urn:a" (.namespace symbols (.namespaceIdOf symbols id))))
+    (is (identical? (.intern symbols "bar") (.intern symbols (String. "bar"))))))
+
+(deftest lookups-dont-intern
+  (let [symbols (SymbolTable.)]
+    (is (= SymbolTable/NONE (.findQNameId symbols (QName. "urn:a" "foo"))))
+    (is (= SymbolTable/NONE (.findNameId symbols "foo")))
+    (is (= 0 (.qnameCount symbols)))
+    (is (= 0 (.nameCount symbols)))))
+
+(deftest null-namespace-is-empty
+  (let [symbols (SymbolTable.)]
+    (is (= (.qnameId symbols nil "foo") (.qnameId symbols (QName. "foo"))))))
+
+(deftest grows
+  (let [symbols (SymbolTable.)
+        ids (doall (map #(.qnameId symbols "urn:a" (str "n" %)) (range 1000)))]
+    (is (= (range 1000) ids))
+    (is (= "n999" (.getLocalPart (.qname symbols 999))))))
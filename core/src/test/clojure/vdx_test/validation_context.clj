@@ -57,3 +57,20 @@
     "UTF-16"   "encoding-utf-16.xml"
     "UTF-8"    "encoding-utf-8.xml"
     "US-ASCII" "encoding-us-ascii.xml"))
+
+(deftest schemas-are-loaded-per-namespace
+  (let [doc (doto (java.io.File/createTempFile "vdx-namespaces" ".xml")
+              (.deleteOnExit)
+              (spit (str "<foo xmlns=\"urn:vdx:test\">\n"
+                         "  <bar attr1=\"a\"/>\n"
+                         "  <server xmlns=\"urn:jboss:domain:4.2\"/>\n"
+                         "</foo>")))
+        ctx (ValidationContext. (.toURL doc)
+                                [(io/resource "schemas/handler-test.xsd")
+                                 (io/resource "wildfly-config_4_2.xsd")])]
+    (is (empty? (.loadedNamespaces ctx)))
+    (is (= #{"attr1" "some-attr"} (.attributesForElement ctx [(SchemaElement. (QName. "urn:vdx:test" "foo"))
+                                                              (SchemaElement. (QName. "urn:vdx:test" "bar"))])))
+    (is (= #{"urn:vdx:test"} (.loadedNamespaces ctx)))
+    (is (seq (.alternateElementsForAttribute ctx "attr1")))
+    (is (= #{"urn:vdx:test" "urn:jboss:domain:4.2"} (.loadedNamespaces ctx)))))
@@ -17,7 +17,6 @@
 package org.projectodd.vdx.wildfly;
 
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.regex.Matcher;
@@ -29,13 +28,19 @@ import javax.xml.stream.XMLStreamException;
 import org.projectodd.vdx.core.ErrorPrinter;
 import org.projectodd.vdx.core.ErrorType;
 import org.projectodd.vdx.core.I18N;
+import org.projectodd.vdx.core.MetricsListener;
 import org.projectodd.vdx.core.Printer;
-import org.projectodd.vdx.core.Stringifier;
+import org.projectodd.vdx.core.Stringify;
 import org.projectodd.vdx.core.Util;
 import org.projectodd.vdx.core.ValidationError;
 import org.projectodd.vdx.core.XMLStreamValidationException;
 
 public abstract class ErrorReporter {
+    // stringifiers are global, so this is registered once rather than with each report's printer
+    static {
+        Stringify.registerStringifier(new SubsystemStringifier());
+    }
+
     public ErrorReporter(final URL document) {
         this.document = document;
     }
@@ -71,14 +76,10 @@ public abstract class ErrorReporter {
                     }
                 }
 
-                final List<Stringifier> stringifiers = new ArrayList<>();
-                stringifiers.add(new SubsystemStringifier());
-
                 SchemaDocRelationships rel = new SchemaDocRelationships();
 
-               final ErrorPrinter errPrinter = new ErrorPrinter(this.document, schemas)
+               final ErrorPrinter errPrinter = new ErrorPrinter(this.document, schemas, metrics())
                        .printer(printer())
-                       .stringifiers(stringifiers)
                        .pathGate(rel)
                        .prefixProvider(rel);
 
@@ -137,6 +138,10 @@ public abstract class ErrorReporter {
         return schemas;
     }
 
+    protected MetricsListener metrics() {
+        return MetricsListener.NONE;
+    }
+
     protected abstract SchemaProvider schemaProvider();
 
     protected abstract Printer printer();
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.projectodd.vdx.wildfly;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.projectodd.vdx.core.ArchiveEntry;
+import org.projectodd.vdx.core.Caches;
+import org.projectodd.vdx.core.ZipDirectory;
+import org.projectodd.vdx.core.schema.SchemaHeaderScanner;
+import org.projectodd.vdx.core.schema.SchemaNamespaceIndex;
+
+/**
+ * Finds the schemas packaged in the module jars under $JBOSS_HOME/modules, for installs that don't
+ * ship docs/schema (trimmed and bootable jar installs, where the latter's modules are unpacked under its
+ * runtime jboss.home.dir). Only each jar's central directory is read; the schemas themselves are
+ * streamed from the jars when they're used.
+ *
+ * The jars and their schema entries (with each schema's targetNamespace) are indexed once per process,
+ * and reindexed when a listed jar's modification time or size changes. The index is persisted to the
+ * cache directory when there is one, so later runs only read the central directories of jars that have
+ * changed.
+ */
+class ModuleSchemaProvider implements SchemaProvider {
+    ModuleSchemaProvider(final File modulesRoot) {
+        this.modulesRoot = modulesRoot;
+    }
+
+    @Override
+    public List<URL> schemas() {
+        if (this.modulesRoot == null ||
+                !this.modulesRoot.isDirectory()) {
+
+            return Collections.emptyList();
+        }
+
+        Listing listing = cachedListing;
+        if (listing == null ||
+                !listing.root.equals(this.modulesRoot)) {
+            listing = index(this.modulesRoot, null);
+            cachedListing = listing;
+        } else if (!listing.isCurrent()) {
+            // the entries of a replaced jar point into its old central directory, so it has to be reindexed
+            listing = index(this.modulesRoot, listing.jars);
+            cachedListing = listing;
+        }
+
+        return listing.schemas;
+    }
+
+    @Override
+    public String schemaResource() {
+        return this.modulesRoot != null ? this.modulesRoot.getAbsolutePath() : null;
+    }
+
+    private static Listing index(final File modulesRoot, final Map<String, IndexedJar> known) {
+        final Path indexFile = Caches.directory() == null ? null : Caches.directory().resolve(INDEX_FILE);
+        final Map<String, IndexedJar> previous = known != null ? known : load(indexFile);
+        final Map<String, IndexedJar> jars = new LinkedHashMap<>();
+        boolean changed = false;
+
+        final List<File> jarFiles;
+        try (final Stream<Path> paths = Files.walk(modulesRoot.toPath())) {
+            jarFiles = paths.filter(p -> p.toString().endsWith(".jar"))
+                    .map(Path::toFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+
+            return new Listing(modulesRoot, Collections.emptyMap(), Collections.emptyList());
+        }
+
+        for (File jar : jarFiles) {
+            final String path = jar.getAbsolutePath();
+            final IndexedJar indexed = previous.get(path);
+            if (indexed != null &&
+                    indexed.isCurrent(jar)) {
+                jars.put(path, indexed);
+            } else {
+                jars.put(path, indexJar(jar));
+                changed = true;
+            }
+        }
+        if (changed ||
+                jars.size() != previous.size()) {
+            store(indexFile, jars);
+        }
+
+        final List<URL> ret = new ArrayList<>();
+        for (IndexedJar jar : jars.values()) {
+            for (IndexedSchema schema : jar.schemas) {
+                final URL url = schema.entry.toURL();
+                try {
+                    SchemaNamespaceIndex.DEFAULT.record(url, schema.namespace);
+                } catch (IOException ignored) {
+                    // it will be scanned when it's needed
+                }
+                ret.add(url);
+            }
+        }
+
+        return new Listing(modulesRoot, jars, Collections.unmodifiableList(ret));
+    }
+
+    private static IndexedJar indexJar(final File jar) {
+        final List<IndexedSchema> schemas = new ArrayList<>();
+        try {
+            final List<ArchiveEntry> entries = ZipDirectory.entries(jar, name -> name.endsWith(".xsd"));
+            final Map<URL, ArchiveEntry> byURL = new LinkedHashMap<>();
+            entries.forEach(e -> byURL.put(e.toURL(), e));
+            final Map<URL, String> namespaces = SchemaHeaderScanner.targetNamespaces(byURL.keySet());
+            byURL.forEach((url, entry) -> schemas.add(new IndexedSchema(entry, namespaces.get(url))));
+        } catch (IOException ignored) {
+            // not a readable zip - index it as empty, so it isn't retried until it changes
+        }
+
+        return new IndexedJar(jar.lastModified(), jar.length(), schemas);
+    }
+
+    private static Map<String, IndexedJar> load(final Path indexFile) {
+        final Map<String, IndexedJar> jars = new HashMap<>();
+        if (indexFile == null ||
+                !Files.isRegularFile(indexFile)) {
+
+            return jars;
+        }
+
+        try (final BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine())) {
+
+                return jars;
+            }
+            File jar = null;
+            List<IndexedSchema> schemas = null;
+            String line = reader.readLine();
+            while (line != null) {
+                final String[] parts = line.split("\t");
+                if (parts[0].equals("J") && parts.length == 4) {
+                    jar = new File(parts[3]);
+                    schemas = new ArrayList<>();
+                    jars.put(parts[3], new IndexedJar(Long.parseLong(parts[1]), Long.parseLong(parts[2]), schemas));
+                } else if (parts[0].equals("E") && parts.length == 7 && schemas != null) {
+                    schemas.add(new IndexedSchema(new ArchiveEntry(jar, parts[6],
+                                                                   Long.parseLong(parts[1]),
+                                                                   Integer.parseInt(parts[2]),
+                                                                   Long.parseLong(parts[3]),
+                                                                   Long.parseLong(parts[4])),
+                                                  parts[5].isEmpty() ? null : parts[5]));
+                }
+                line = reader.readLine();
+            }
+        } catch (IOException | NumberFormatException ignored) {
+            // rebuild it
+
+            return new HashMap<>();
+        }
+
+        return jars;
+    }
+
+    private static void store(final Path indexFile, final Map<String, IndexedJar> jars) {
+        if (indexFile == null) {
+
+            return;
+        }
+
+        try {
+            Caches.writeAtomically(indexFile, out -> {
+                final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                writer.write(HEADER);
+                writer.newLine();
+                for (Map.Entry<String, IndexedJar> each : jars.entrySet()) {
+                    final IndexedJar jar = each.getValue();
+                    writer.write("J\t" + jar.modified + "\t" + jar.size + "\t" + each.getKey());
+                    writer.newLine();
+                    for (IndexedSchema schema : jar.schemas) {
+                        final ArchiveEntry entry = schema.entry;
+                        writer.write("E\t" + entry.dataOffset() + "\t" + entry.method() + "\t" +
+                                             entry.compressedSize() + "\t" + entry.size() + "\t" +
+                                             (schema.namespace == null ? "" : schema.namespace) + "\t" +
+                                             entry.name());
+                        writer.newLine();
+                    }
+                }
+                writer.flush();
+            });
+        } catch (IOException ignored) {
+            // we still have it in memory
+        }
+    }
+
+    private static class IndexedJar {
+        IndexedJar(final long modified, final long size, final List<IndexedSchema> schemas) {
+            this.modified = modified;
+            this.size = size;
+            this.schemas = schemas;
+        }
+
+        boolean isCurrent(final File jar) {
+            return this.modified == jar.lastModified() &&
+                    this.size == jar.length();
+        }
+
+        final long modified;
+        final long size;
+        final List<IndexedSchema> schemas;
+    }
+
+    private static class IndexedSchema {
+        IndexedSchema(final ArchiveEntry entry, final String namespace) {
+            this.entry = entry;
+            this.namespace = namespace;
+        }
+
+        final ArchiveEntry entry;
+        final String namespace;
+    }
+
+    private static class Listing {
+        Listing(final File root, final Map<String, IndexedJar> jars, final List<URL> schemas) {
+            this.root = root;
+            this.jars = jars;
+            this.schemas = schemas;
+        }
+
+        // only the jars already listed are checked - jars added to the modules tree are found by the next
+        // walk, which happens whenever a listed jar changes
+        boolean isCurrent() {
+            for (Map.Entry<String, IndexedJar> each : this.jars.entrySet()) {
+                if (!each.getValue().isCurrent(new File(each.getKey()))) {
+
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        final File root;
+        final Map<String, IndexedJar> jars;
+        final List<URL> schemas;
+    }
+
+    private static final String INDEX_FILE = "module-schemas.idx";
+    private static final String HEADER = "# vdx module schema index 1";
+
+    private static volatile Listing cachedListing = null;
+
+    private final File modulesRoot;
+}
@@ -20,7 +20,11 @@ import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
 
+import javax.management.JMException;
+
 import org.jboss.logging.BasicLogger;
+import org.projectodd.vdx.core.HistogramMetrics;
+import org.projectodd.vdx.core.MetricsListener;
 import org.projectodd.vdx.core.Printer;
 
 public class WildFlyErrorReporter extends ErrorReporter {
@@ -31,7 +35,7 @@ public class WildFlyErrorReporter extends ErrorReporter {
 
     @Override
     protected SchemaProvider schemaProvider() {
-        return new WildFlySchemaProvider();
+        return this.schemaProvider;
     }
 
     @Override
@@ -39,6 +43,25 @@ public class WildFlyErrorReporter extends ErrorReporter {
         return this.printer;
     }
 
+    /**
+     * Shared by every report, and published as the {@value HistogramMetrics#OBJECT_NAME} MBean.
+     */
+    @Override
+    protected MetricsListener metrics() {
+        return METRICS;
+    }
+
+    private static HistogramMetrics registeredMetrics() {
+        final HistogramMetrics metrics = new HistogramMetrics();
+        try {
+            metrics.register();
+        } catch (JMException | SecurityException ignored) {
+            // still collected, just not visible
+        }
+
+        return metrics;
+    }
+
     private static URL asURL(final File f) {
         try {
             return f.toURI().toURL();
@@ -47,5 +70,8 @@ public class WildFlyErrorReporter extends ErrorReporter {
         }
     }
 
+    private static final HistogramMetrics METRICS = registeredMetrics();
+
     private final Printer printer;
+    private final SchemaProvider schemaProvider = new WildFlySchemaProvider();
 }
@@ -17,48 +17,138 @@
 package org.projectodd.vdx.wildfly;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
+import org.projectodd.vdx.core.schema.SchemaBundle;
+import org.projectodd.vdx.core.schema.SchemaNamespaceIndex;
+
+/**
+ * Lists the schemas in $JBOSS_HOME/docs/schema. The listing is cached (and shared between instances),
+ * and is only rebuilt when the directory's modification time changes, so repeated reports cost a
+ * single stat of the directory. A schema bundle next to the directory (docs/schema.vdxb, see
+ * {@link SchemaBundle}) is used instead when it's at least as new as the directory, and installs
+ * without docs/schema fall back to the schemas in the module jars (see {@link ModuleSchemaProvider}).
+ */
 public class WildFlySchemaProvider implements SchemaProvider {
+    public WildFlySchemaProvider() {
+        final String jbossHome = System.getProperty("jboss.home.dir");
+        this.schemaRoot = jbossHome != null ? new File(jbossHome, "docs/schema") : null;
+        this.bundle = this.schemaRoot != null ? SchemaBundle.defaultBundleFile(this.schemaRoot) : null;
+        this.moduleProvider = new ModuleSchemaProvider(jbossHome != null ? new File(jbossHome, "modules") : null);
+    }
+
     @Override
     public List<URL> schemas() {
-        final File schemaRoot = schemaRoot();
-        if (schemaRoot != null) {
-            final File[] schemaFiles = schemaRoot.listFiles();
-            if (schemaRoot.exists() &&
-                    schemaFiles != null) {
-                return Arrays.stream(schemaFiles)
-                        .filter(f -> f.getName().endsWith(".xsd"))
-                        .map(f -> {
-                            try {
-                                return f.toURI().toURL();
-                            } catch (MalformedURLException ex) {
-                                throw new RuntimeException(ex);
-                            }
-                        })
-                        .collect(Collectors.toList());
-            }
+        if (this.schemaRoot == null) {
+
+            return Collections.emptyList();
         }
 
-        return Collections.emptyList();
+        final long modified = this.schemaRoot.lastModified();
+        final List<URL> bundled = bundledSchemas(modified);
+        if (!bundled.isEmpty()) {
+
+            return bundled;
+        }
+
+        Listing listing = cachedListing;
+        if (listing == null ||
+                !listing.isCurrent(this.schemaRoot, modified)) {
+            listing = new Listing(this.schemaRoot, modified, list(this.schemaRoot));
+            cachedListing = listing;
+        }
+
+        return listing.schemas.isEmpty() ? this.moduleProvider.schemas() : listing.schemas;
     }
 
     @Override
     public String schemaResource() {
-        final File schemaRoot = schemaRoot();
+        return this.schemaRoot != null ? this.schemaRoot.getAbsolutePath() : null;
+    }
+
+    private List<URL> bundledSchemas(final long schemaRootModified) {
+        final long modified = this.bundle.lastModified();
+        if (modified == 0 ||
+                modified < schemaRootModified) {
+
+            return Collections.emptyList();
+        }
 
-        return schemaRoot != null ? schemaRoot.getAbsolutePath() : null;
+        Listing listing = cachedBundle;
+        if (listing == null ||
+                !listing.isCurrent(this.bundle, modified)) {
+            List<URL> schemas;
+            try {
+                final SchemaBundle contents = SchemaBundle.read(this.bundle);
+                for (Map.Entry<URL, String> each : contents.namespaces().entrySet()) {
+                    SchemaNamespaceIndex.DEFAULT.record(each.getKey(), each.getValue());
+                }
+                schemas = Collections.unmodifiableList(contents.urls());
+            } catch (IOException e) {
+                schemas = Collections.emptyList();
+            }
+            listing = new Listing(this.bundle, modified, schemas);
+            cachedBundle = listing;
+        }
+
+        return listing.schemas;
     }
 
-    private File schemaRoot() {
-        final String jbossHome = System.getProperty("jboss.home.dir");
+    private static List<URL> list(final File schemaRoot) {
+        final File[] schemaFiles = schemaRoot.listFiles();
+        if (schemaRoot.exists() &&
+                schemaFiles != null) {
+            return Collections.unmodifiableList(Arrays.stream(schemaFiles)
+                    .filter(f -> f.getName().endsWith(".xsd"))
+                    .map(f -> {
+                        try {
+                            return f.toURI().toURL();
+                        } catch (MalformedURLException ex) {
+                            throw new RuntimeException(ex);
+                        }
+                    })
+                    .collect(Collectors.toList()));
+        }
 
-        return jbossHome != null ? new File(jbossHome, "docs/schema") : null;
+        return Collections.emptyList();
     }
-}
 
+    private static class Listing {
+        Listing(final File root, final long modified, final List<URL> schemas) {
+            this.root = root;
+            this.modified = modified;
+            this.listedAt = System.currentTimeMillis();
+            this.schemas = schemas;
+        }
+
+        // filesystems with coarse timestamps can give a change made right after the listing the same
+        // mtime, so a listing taken that close to a change isn't trusted
+        boolean isCurrent(final File root, final long modified) {
+            return this.root.equals(root) &&
+                    this.modified == modified &&
+                    modified != 0 &&
+                    this.listedAt - modified > MTIME_GRANULARITY;
+        }
+
+        final File root;
+        final long modified;
+        final long listedAt;
+        final List<URL> schemas;
+    }
+
+    private static final long MTIME_GRANULARITY = 2000;
+
+    private static volatile Listing cachedListing = null;
+    private static volatile Listing cachedBundle = null;
+
+    private final File schemaRoot;
+    private final File bundle;
+    private final ModuleSchemaProvider moduleProvider;
+}
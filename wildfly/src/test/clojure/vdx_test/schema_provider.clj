@@ -0,0 +1,87 @@
+(ns vdx-test.schema-provider
+  (:require [clojure.test :refer :all]
+            [clojure.java.io :as io])
+  (:import org.projectodd.vdx.wildfly.WildFlySchemaProvider
+           [java.nio.file Files]
+           [java.nio.file.attribute FileAttribute]))
+
+(defn with-jboss-home [f]
+  (let [home (.toFile (Files/createTempDirectory "vdx-home" (make-array FileAttribute 0)))
+        prev (System/getProperty "jboss.home.dir")]
+    (.mkdirs (io/file home "docs/schema"))
+    (System/setProperty "jboss.home.dir" (.getAbsolutePath home))
+    (try
+      (f (io/file home "docs/schema"))
+      (finally
+        (if prev
+          (System/setProperty "jboss.home.dir" prev)
+          (System/clearProperty "jboss.home.dir"))))))
+
+(defn names [urls]
+  (set (map #(.getName (io/file (.getPath %))) urls)))
+
+(deftest listing-is-cached-until-the-directory-changes
+  (with-jboss-home
+    (fn [dir]
+      (spit (io/file dir "a.xsd") "")
+      (spit (io/file dir "notes.txt") "")
+      (.setLastModified dir (- (System/currentTimeMillis) 60000))
+      (let [provider (WildFlySchemaProvider.)
+            schemas (.schemas provider)]
+        (is (= #{"a.xsd"} (names schemas)))
+        (is (identical? schemas (.schemas provider)))
+        (is (identical? schemas (.schemas (WildFlySchemaProvider.))))
+        (spit (io/file dir "b.xsd") "")
+        (.setLastModified dir (- (System/currentTimeMillis) 30000))
+        (is (= #{"a.xsd" "b.xsd"} (names (.schemas provider))))))))
+
+(deftest no-jboss-home
+  (let [prev (System/getProperty "jboss.home.dir")]
+    (System/clearProperty "jboss.home.dir")
+    (try
+      (is (empty? (.schemas (WildFlySchemaProvider.))))
+      (is (nil? (.schemaResource (WildFlySchemaProvider.))))
+      (finally
+        (when prev (System/setProperty "jboss.home.dir" prev))))))
+
+(deftest falls-back-to-module-jars
+  (with-jboss-home
+    (fn [dir]
+      (.delete dir)
+      (let [jar (io/file (.getParentFile (.getParentFile dir)) "modules/system/layers/base/org/foo/main/foo.jar")]
+        (.mkdirs (.getParentFile jar))
+        (with-open [out (java.util.zip.ZipOutputStream. (io/output-stream jar))]
+          (.putNextEntry out (java.util.zip.ZipEntry. "schema/foo_1_0.xsd"))
+          (.write out (.getBytes "<xs:schema targetNamespace='urn:foo:1.0'/>" "UTF-8"))
+          (.closeEntry out)
+          (.putNextEntry out (java.util.zip.ZipEntry. "org/foo/Foo.class"))
+          (.closeEntry out))
+        (let [schemas (.schemas (WildFlySchemaProvider.))]
+          (is (= 1 (count schemas)))
+          (is (= "<xs:schema targetNamespace='urn:foo:1.0'/>" (slurp (.openStream (first schemas))))))
+        (testing "a replaced jar is reindexed"
+          (with-open [out (java.util.zip.ZipOutputStream. (io/output-stream jar))]
+            (.putNextEntry out (java.util.zip.ZipEntry. "META-INF/MANIFEST.MF"))
+            (.write out (.getBytes "Manifest-Version: 1.0\n" "UTF-8"))
+            (.closeEntry out)
+            (.putNextEntry out (java.util.zip.ZipEntry. "schema/foo_1_0.xsd"))
+            (.write out (.getBytes "<xs:schema targetNamespace='urn:foo:1.1'/>" "UTF-8"))
+            (.closeEntry out))
+          (.setLastModified jar (- (System/currentTimeMillis) 60000))
+          (let [schemas (.schemas (WildFlySchemaProvider.))]
+            (is (= 1 (count schemas)))
+            (is (= "<xs:schema targetNamespace='urn:foo:1.1'/>" (slurp (.openStream (first schemas)))))))))))
+
+(deftest prefers-a-current-bundle
+  (with-jboss-home
+    (fn [dir]
+      (spit (io/file dir "a.xsd") "<xs:schema targetNamespace='urn:a'/>")
+      (.setLastModified dir (- (System/currentTimeMillis) 60000))
+      (let [bundle (org.projectodd.vdx.core.schema.SchemaBundle/defaultBundleFile dir)]
+        (org.projectodd.vdx.core.schema.SchemaBundle/write dir (.toPath bundle) false)
+        (.setLastModified bundle (- (System/currentTimeMillis) 30000))
+        (let [schemas (.schemas (WildFlySchemaProvider.))]
+          (is (= ["vdx-archive"] (map #(.getProtocol %) schemas)))
+          (is (= "<xs:schema targetNamespace='urn:a'/>" (slurp (.openStream (first schemas))))))
+        (.setLastModified dir (- (System/currentTimeMillis) 10000))
+        (is (= ["file"] (map #(.getProtocol %) (.schemas (WildFlySchemaProvider.)))))))))